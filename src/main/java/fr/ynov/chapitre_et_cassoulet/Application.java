@@ -1,10 +1,15 @@
 package main.java.fr.ynov.chapitre_et_cassoulet;
 
+import main.java.fr.ynov.chapitre_et_cassoulet.cli.CommandLine;
 import main.java.fr.ynov.chapitre_et_cassoulet.service.ApplicationLauncher;
 
 public class Application {
     public static void main(String[] args) {
+        if (args.length > 0 && CommandLine.isCommand(args[0])) {
+            CommandLine.main(args);
+            return;
+        }
         ApplicationLauncher launcher = new ApplicationLauncher();
         launcher.start();
     }
-}
\ No newline at end of file
+}
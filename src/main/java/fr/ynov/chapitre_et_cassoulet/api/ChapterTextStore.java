@@ -0,0 +1,115 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.api;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.model.TextChapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps the text of each chapter as a UTF-8 file so it can be streamed from disk instead of being
+ * encoded again for every reader.
+ * <p>
+ * Files are named after the SHA-256 digest of their content, so a file is written once per distinct
+ * text, survives restarts and doubles as a strong validator for HTTP caching and range requests.
+ * The text of a chapter is encoded and hashed the first time it is requested; later requests
+ * only look up the stored file, as long as the chapter still holds the same text.
+ */
+public class ChapterTextStore {
+    private static final Logger LOG = Logger.getLogger(ChapterTextStore.class);
+    private static final String CACHE_DIRECTORY = "cache" + File.separator + "chapters";
+
+    private final Path directory;
+    private final Map<TextChapter, StoredText> stored = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Stored copy of a chapter text
+     *
+     * @param text The text the file was written from, compared by identity to detect changes
+     * @param file The UTF-8 file
+     * @param length Size of the file in bytes
+     * @param digest Hexadecimal SHA-256 digest of the file content
+     */
+    public record StoredText(String text, Path file, long length, String digest) {
+    }
+
+    /**
+     * Creates a store in the default cache directory
+     */
+    public ChapterTextStore() {
+        this(Paths.get(CACHE_DIRECTORY));
+    }
+
+    /**
+     * Creates a store in the given directory
+     *
+     * @param directory Where the text files are kept; created on first use
+     */
+    public ChapterTextStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the stored copy of a chapter text, writing it on first use
+     *
+     * @param chapter The chapter
+     * @return The stored text, or null if the chapter has no text
+     * @throws IOException If the file cannot be written
+     */
+    public StoredText get(TextChapter chapter) throws IOException {
+        String text = chapter.getContentText();
+        if (text == null) {
+            return null;
+        }
+        StoredText current = stored.get(chapter);
+        if (current != null && current.text() == text && Files.isRegularFile(current.file())) {
+            return current;
+        }
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        String digest = sha256(bytes);
+        Path file = directory.resolve(digest + ".txt");
+        if (!Files.isRegularFile(file) || Files.size(file) != bytes.length) {
+            write(file, bytes);
+        }
+        StoredText created = new StoredText(text, file, bytes.length, digest);
+        stored.put(chapter, created);
+        return created;
+    }
+
+    private void write(Path file, byte[] bytes) throws IOException {
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, "chapter", ".tmp");
+        try {
+            Files.write(temporary, bytes);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        LOG.debug("Stored " + bytes.length + " bytes of chapter text in " + file);
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,622 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import main.java.fr.ynov.chapitre_et_cassoulet.exception.BookNotFoundException;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.Counter;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Chapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.TextChapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.Library;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.Search;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.BookJson;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.JsonWriter;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Read-only JSON API over a {@link Library}, served by the JDK HTTP server with one virtual thread per request.
+ * <ul>
+ *     <li>{@code GET /books?offset=0&limit=100}: book summaries</li>
+ *     <li>{@code GET /books/{id}}: one book with its chapter list</li>
+ *     <li>{@code GET /books/{id}/chapters/{n}}: chapter number {@code n} of a book, with its text</li>
+ *     <li>{@code GET /books/{id}/chapters/{n}/text}: the text alone as UTF-8, streamed from a
+ *     {@link ChapterTextStore} file with single byte-range support</li>
+ *     <li>{@code GET /search?keyword=&genre=&status=&type=&limit=}: book summaries matching the criteria;
+ *     {@code genre} and {@code status} may be repeated</li>
+ * </ul>
+ * Every successful response carries a weak ETag derived from the library version, and a request whose
+ * {@code If-None-Match} matches it gets {@code 304 Not Modified} once the resource is known to exist.
+ * Rendered responses are cached per URL until the library changes, and the least recently used are evicted
+ * once the cache holds more than 32 MB; chapters with their text are rendered on each request instead.
+ * Bodies of at least {@value #GZIP_MIN_BYTES} bytes are sent gzip-compressed to clients that accept it.
+ * Chapter text is validated by a strong ETag, the digest of its content, so a partial download
+ * can be resumed with {@code Range} and {@code If-Range}.
+ */
+public class LibraryHttpServer {
+    private static final Logger LOG = Logger.getLogger(LibraryHttpServer.class);
+    private static final int BACKLOG = 1024;
+    private static final int GZIP_MIN_BYTES = 1024;
+    private static final long MAX_CACHED_BYTES = 32L * 1024 * 1024;
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final String TEXT_CONTENT_TYPE = "text/plain; charset=utf-8";
+    /** Latency per endpoint, keyed by the names {@link #routeName} returns plus {@code error} */
+    private static final Map<String, LatencyHistogram> ROUTE_TIME = routeHistograms(
+            "books", "book", "chapter", "chapterText", "search", "notFound", "error");
+
+    private final Library library;
+    private final ChapterTextStore textStore;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String etagPrefix = Long.toHexString(System.currentTimeMillis());
+    private final LinkedHashMap<String, CachedResponse> responseCache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+    private final Counter requests = MetricsRegistry.getInstance().counter("http.requests");
+    private final Counter notModified = MetricsRegistry.getInstance().counter("http.notModified");
+    private final Counter bytesStreamed = MetricsRegistry.getInstance().counter("http.bytesStreamed");
+
+    /**
+     * Rendered body of a successful response, with its compressed form when worth sending
+     *
+     * @param version Library version the body was rendered from
+     * @param body The JSON body
+     * @param gzipped The compressed body, or null when the body is too small to compress
+     */
+    private record CachedResponse(long version, byte[] body, byte[] gzipped) {
+        long size() {
+            return body.length + (gzipped == null ? 0 : gzipped.length);
+        }
+    }
+
+    /**
+     * Thrown by request handlers to answer with an error status and message
+     */
+    private static final class RequestException extends Exception {
+        private final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Creates a server for a library, bound but not started, keeping chapter text in the default cache directory
+     *
+     * @param library The library to serve
+     * @param address The address and port to listen on; port 0 picks a free port
+     * @throws IOException If the address cannot be bound
+     */
+    public LibraryHttpServer(Library library, InetSocketAddress address) throws IOException {
+        this(library, address, new ChapterTextStore());
+    }
+
+    /**
+     * Creates a server for a library, bound but not started
+     *
+     * @param library The library to serve
+     * @param address The address and port to listen on; port 0 picks a free port
+     * @param textStore Where chapter text is kept for streaming
+     * @throws IOException If the address cannot be bound
+     */
+    public LibraryHttpServer(Library library, InetSocketAddress address, ChapterTextStore textStore)
+            throws IOException {
+        this.library = library;
+        this.textStore = textStore;
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts accepting requests
+     */
+    public void start() {
+        server.start();
+        LOG.info("Serving the library on http://" + server.getAddress().getHostString() + ":" + getPort() + "/");
+    }
+
+    /**
+     * Stops the server, letting requests in progress finish for up to a second
+     */
+    public void stop() {
+        server.stop(1);
+        executor.close();
+    }
+
+    /**
+     * Gets the port the server listens on
+     *
+     * @return The port, useful when the server was created with port 0
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        requests.increment();
+        String route = "error";
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                sendError(exchange, 405, "Method " + method + " is not allowed");
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            String[] segments = path.replaceAll("^/+|/+$", "").split("/+");
+            route = routeName(segments);
+            if (route.equals("chapterText")) {
+                streamChapterText(exchange, segments);
+                return;
+            }
+
+            // The version is read before rendering, so a body may be newer than its tag but never older
+            long version = library.getVersion();
+            String etag = "W/\"" + etagPrefix + "-" + version + "\"";
+            boolean notModifiedRequested = matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag);
+
+            // Only a cached or freshly rendered body proves the resource exists, so missing ones still get a 404
+            String key = exchange.getRequestURI().toString();
+            CachedResponse cached = cachedResponse(key, version);
+            if (cached == null) {
+                byte[] body;
+                try {
+                    body = render(segments, parseQuery(exchange.getRequestURI().getRawQuery()));
+                } catch (RequestException e) {
+                    sendError(exchange, e.status, e.getMessage());
+                    return;
+                }
+                if (!notModifiedRequested) {
+                    cached = new CachedResponse(version, body, body.length >= GZIP_MIN_BYTES ? gzip(body) : null);
+                    // Chapter bodies hold the whole text, which would crowd every listing out of the cache
+                    if (!route.equals("chapter")) {
+                        cacheResponse(key, cached);
+                    }
+                }
+            }
+
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (notModifiedRequested) {
+                notModified.increment();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            send(exchange, 200, cached.body(), cached.gzipped());
+        } catch (IOException e) {
+            LOG.debug("Request failed: " + e.getMessage());
+        } catch (RuntimeException e) {
+            LOG.error("Request " + exchange.getRequestURI() + " failed", e);
+        } finally {
+            ROUTE_TIME.get(route).recordSince(start);
+        }
+    }
+
+    /**
+     * Gets the cached response for a URL, dropping it when the library has changed since it was rendered
+     *
+     * @param key The request URL
+     * @param version The current library version
+     * @return The cached response, or null when there is none for this version
+     */
+    private CachedResponse cachedResponse(String key, long version) {
+        synchronized (responseCache) {
+            CachedResponse cached = responseCache.get(key);
+            if (cached == null || cached.version() == version) {
+                return cached;
+            }
+            responseCache.remove(key);
+            cachedBytes -= cached.size();
+            return null;
+        }
+    }
+
+    /**
+     * Caches a rendered response, evicting the least recently used ones until the cache fits its byte budget.
+     * A response larger than a quarter of the budget is not cached, so that one huge listing cannot empty the cache.
+     *
+     * @param key The request URL
+     * @param response The rendered response
+     */
+    private void cacheResponse(String key, CachedResponse response) {
+        long size = response.size();
+        if (size > MAX_CACHED_BYTES / 4) {
+            return;
+        }
+        synchronized (responseCache) {
+            CachedResponse previous = responseCache.put(key, response);
+            if (previous != null) {
+                cachedBytes -= previous.size();
+            }
+            cachedBytes += size;
+            Iterator<CachedResponse> eldest = responseCache.values().iterator();
+            while (cachedBytes > MAX_CACHED_BYTES) {
+                cachedBytes -= eldest.next().size();
+                eldest.remove();
+            }
+        }
+    }
+
+    private static Map<String, LatencyHistogram> routeHistograms(String... routes) {
+        Map<String, LatencyHistogram> histograms = new HashMap<>();
+        for (String route : routes) {
+            histograms.put(route, MetricsRegistry.getInstance().histogram("http." + route));
+        }
+        return Map.copyOf(histograms);
+    }
+
+    /**
+     * Names the endpoint a path maps to, for metrics
+     */
+    private static String routeName(String[] segments) {
+        if (segments.length == 1 && segments[0].equals("search")) {
+            return "search";
+        }
+        if (segments.length >= 1 && segments[0].equals("books")) {
+            return switch (segments.length) {
+                case 1 -> "books";
+                case 2 -> "book";
+                case 4 -> "chapter";
+                case 5 -> "chapterText";
+                default -> "notFound";
+            };
+        }
+        return "notFound";
+    }
+
+    private byte[] render(String[] segments, Map<String, List<String>> query) throws RequestException {
+        return switch (routeName(segments)) {
+            case "books" -> listBooks(query);
+            case "book" -> getBook(parseId(segments[1], "book ID"));
+            case "chapter" -> {
+                if (!segments[2].equals("chapters")) {
+                    throw new RequestException(404, "No such resource");
+                }
+                yield getChapter(parseId(segments[1], "book ID"), parseId(segments[3], "chapter number"));
+            }
+            case "search" -> search(query);
+            default -> throw new RequestException(404, "No such resource");
+        };
+    }
+
+    private byte[] listBooks(Map<String, List<String>> query) throws RequestException {
+        List<Book> books = library.getCatalogue();
+        int offset = Math.min(intParameter(query, "offset", 0), books.size());
+        int limit = intParameter(query, "limit", Integer.MAX_VALUE);
+        List<Book> page = books.subList(offset, (int) Math.min((long) offset + limit, books.size()));
+
+        return json(json -> {
+            json.beginObject()
+                    .name("total").value(books.size())
+                    .name("offset").value(offset)
+                    .name("books");
+            BookJson.writeSummaries(json, page);
+            json.endObject();
+        });
+    }
+
+    private byte[] getBook(int id) throws RequestException {
+        Book book = findBook(id);
+        return json(json -> BookJson.writeBook(json, book, false));
+    }
+
+    private byte[] getChapter(int bookId, int number) throws RequestException {
+        Chapter chapter = findChapter(bookId, number);
+        return json(json -> BookJson.writeChapter(json, chapter, true));
+    }
+
+    /**
+     * Sends the stored UTF-8 text of a chapter, whole or as the single byte range requested.
+     * The file is copied to the response with {@link FileChannel#transferTo}, so the text is never
+     * held in memory as a byte array or string for the request.
+     */
+    private void streamChapterText(HttpExchange exchange, String[] segments) throws IOException {
+        ChapterTextStore.StoredText stored;
+        try {
+            if (!segments[2].equals("chapters") || !segments[4].equals("text")) {
+                throw new RequestException(404, "No such resource");
+            }
+            int number = parseId(segments[3], "chapter number");
+            Chapter chapter = findChapter(parseId(segments[1], "book ID"), number);
+            stored = chapter instanceof TextChapter textChapter ? textStore.get(textChapter) : null;
+            if (stored == null) {
+                throw new RequestException(404, "Chapter " + number + " has no text");
+            }
+        } catch (RequestException e) {
+            sendError(exchange, e.status, e.getMessage());
+            return;
+        } catch (IOException e) {
+            LOG.error("Failed to store chapter text for " + exchange.getRequestURI(), e);
+            sendError(exchange, 500, "Chapter text is unavailable");
+            return;
+        }
+
+        String etag = "\"" + stored.digest() + "\"";
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", etag);
+        headers.set("Accept-Ranges", "bytes");
+        headers.set("Cache-Control", "no-cache");
+        if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            notModified.increment();
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        long length = stored.length();
+        long first = 0;
+        long last = length - 1;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (range != null && (ifRange == null || ifRange.trim().equals(etag))) {
+            long[] bounds;
+            try {
+                bounds = parseRange(range, length);
+            } catch (RequestException e) {
+                headers.set("Content-Range", "bytes */" + length);
+                sendError(exchange, e.status, e.getMessage());
+                return;
+            }
+            if (bounds != null) {
+                first = bounds[0];
+                last = bounds[1];
+                status = 206;
+                headers.set("Content-Range", "bytes " + first + "-" + last + "/" + length);
+            }
+        }
+
+        headers.set("Content-Type", TEXT_CONTENT_TYPE);
+        long count = last - first + 1;
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, count == 0 ? -1 : count);
+        try (FileChannel file = FileChannel.open(stored.file(), StandardOpenOption.READ);
+             OutputStream body = exchange.getResponseBody()) {
+            WritableByteChannel target = Channels.newChannel(body);
+            long position = first;
+            long end = first + count;
+            while (position < end) {
+                long transferred = file.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    throw new IOException("Chapter file " + stored.file() + " is shorter than expected");
+                }
+                position += transferred;
+            }
+            bytesStreamed.add(count);
+        }
+    }
+
+    /**
+     * Parses a single {@code bytes=first-last}, {@code bytes=first-} or {@code bytes=-suffix} range
+     *
+     * @return The first and last byte positions, or null when the header should be ignored,
+     * such as a malformed value or several ranges
+     * @throws RequestException With status 416 when the range starts past the end of the content
+     */
+    private static long[] parseRange(String header, long length) throws RequestException {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        String firstText = spec.substring(0, dash).trim();
+        String lastText = spec.substring(dash + 1).trim();
+        try {
+            if (firstText.isEmpty()) {
+                long suffix = lastText.isEmpty() ? 0 : Long.parseLong(lastText);
+                if (suffix <= 0 || length == 0) {
+                    throw new RequestException(416, "Range " + header + " cannot be satisfied");
+                }
+                return new long[]{Math.max(0, length - suffix), length - 1};
+            }
+            long first = Long.parseLong(firstText);
+            long last = lastText.isEmpty() ? Long.MAX_VALUE : Long.parseLong(lastText);
+            if (first < 0 || last < first) {
+                return null;
+            }
+            if (first >= length) {
+                throw new RequestException(416, "Range " + header + " starts past the end of the "
+                        + length + " bytes of text");
+            }
+            return new long[]{first, Math.min(last, length - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Chapter findChapter(int bookId, int number) throws RequestException {
+        Book book = findBook(bookId);
+        for (Chapter chapter : book.getSortedChapters()) {
+            if (chapter.getNumOrder() == number) {
+                return chapter;
+            }
+        }
+        throw new RequestException(404, "Book " + bookId + " has no chapter " + number);
+    }
+
+    private byte[] search(Map<String, List<String>> query) throws RequestException {
+        Search search = new Search(library);
+        search.setKeyword(firstParameter(query, "keyword"));
+        query.getOrDefault("genre", List.of()).forEach(search::addGenre);
+        query.getOrDefault("status", List.of()).forEach(search::addStatus);
+        search.setType(firstParameter(query, "type"));
+        int limit = intParameter(query, "limit", Integer.MAX_VALUE);
+
+        List<Book> results = search.advancedSearch();
+        return json(json -> {
+            json.beginObject()
+                    .name("hits").value(results.size())
+                    .name("books");
+            BookJson.writeSummaries(json, results.subList(0, Math.min(limit, results.size())));
+            json.endObject();
+        });
+    }
+
+    private Book findBook(int id) throws RequestException {
+        try {
+            return library.getBookById(id);
+        } catch (BookNotFoundException e) {
+            throw new RequestException(404, e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface JsonBody {
+        void write(JsonWriter json);
+    }
+
+    private static byte[] json(JsonBody body) {
+        StringBuilder text = new StringBuilder(1024);
+        body.write(new JsonWriter(text));
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int parseId(String value, String what) throws RequestException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "Invalid " + what + ": " + value);
+        }
+    }
+
+    private static String firstParameter(Map<String, List<String>> query, String name) {
+        List<String> values = query.get(name);
+        return values == null || values.isEmpty() || values.get(0).isEmpty() ? null : values.get(0);
+    }
+
+    private static int intParameter(Map<String, List<String>> query, String name, int defaultValue)
+            throws RequestException {
+        String value = firstParameter(query, name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int number = Integer.parseInt(value);
+            if (number >= 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new RequestException(400, "Invalid " + name + ": " + value);
+    }
+
+    private static Map<String, List<String>> parseQuery(String rawQuery) {
+        Map<String, List<String>> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            parameters.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+        }
+        return parameters;
+    }
+
+    /**
+     * Checks an If-None-Match header against the current tag; weak comparison, as for GET requests
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 3 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder text = new StringBuilder(64 + message.length());
+        new JsonWriter(text).beginObject().name("error").value(message).endObject();
+        send(exchange, status, text.toString().getBytes(StandardCharsets.UTF_8), null);
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body, byte[] gzipped) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", JSON_CONTENT_TYPE);
+        headers.set("Vary", "Accept-Encoding");
+        byte[] payload = body;
+        if (gzipped != null && acceptsGzip(exchange)) {
+            headers.set("Content-Encoding", "gzip");
+            payload = gzipped;
+        }
+
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, payload.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(payload);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.benchmark;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.benchmark.SyntheticCorpus.TextStyle;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.JsonWriter;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Writes a deterministic synthetic books tree with the exact on-disk layout read at startup:
+ * {@code <type>/<series>/information/<series>-info.json},
+ * {@code <type>/<series>/information/coverImage/cover-image.jpg} and
+ * {@code <type>/<series>/chapters/chapter<N>-<title>.json}.
+ * <p>
+ * The same seed and configuration always produce byte-identical trees, so memory and startup
+ * problems seen on a large library can be reproduced locally.
+ * <p>
+ * Usage: {@code CorpusGenerator <output directory> [--seed N] [--books N] [--chapters MIN-MAX]
+ * [--chapter-size MEDIAN_CHARS] [--size-spread SIGMA] [--genres A,B,C] [--unicode-ratio R] [--no-covers]}
+ */
+public class CorpusGenerator {
+
+    /**
+     * Generation settings
+     *
+     * @param seed Seed for every random choice
+     * @param books Number of books to write
+     * @param minChapters Minimum number of chapters per book
+     * @param maxChapters Maximum number of chapters per book
+     * @param medianChapterLength Median chapter length in characters
+     * @param chapterLengthSpread Sigma of the log-normal chapter length distribution; 0 gives a fixed size
+     * @param genres Genre vocabulary, most popular first
+     * @param unicodeTitleRatio Share of books whose titles and texts use mixed scripts and emoji
+     * @param covers Whether to write a cover JPEG for each book
+     */
+    public record Config(long seed, int books, int minChapters, int maxChapters, int medianChapterLength,
+                         double chapterLengthSpread, String[] genres, double unicodeTitleRatio, boolean covers) {
+
+        /**
+         * Gets the default settings: 100 books of 10 to 50 chapters around 12,000 characters each
+         *
+         * @return The default configuration
+         */
+        public static Config defaults() {
+            return new Config(42L, 100, 10, 50, 12_000, 0.6, SyntheticCorpus.GENRES, 0.2, true);
+        }
+    }
+
+    /**
+     * Summary of a generated tree
+     *
+     * @param books Number of books written
+     * @param chapters Number of chapter files written
+     * @param bytes Total number of bytes written
+     */
+    public record Summary(int books, long chapters, long bytes) {
+    }
+
+    private static final int COVER_WIDTH = 300;
+    private static final int COVER_HEIGHT = 420;
+    private static final int MAX_SLUG_LENGTH = 40;
+
+    private final Config config;
+    private final Random random;
+    private final SyntheticCorpus corpus;
+
+    /**
+     * Creates a generator with the given settings
+     *
+     * @param config The generation settings
+     */
+    public CorpusGenerator(Config config) {
+        this.config = config;
+        this.random = new Random(config.seed());
+        this.corpus = new SyntheticCorpus(config.seed() ^ 0x5DEECE66DL);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: CorpusGenerator <output directory> [--seed N] [--books N] [--chapters MIN-MAX]"
+                    + " [--chapter-size MEDIAN_CHARS] [--size-spread SIGMA] [--genres A,B,C]"
+                    + " [--unicode-ratio R] [--no-covers]");
+            System.exit(2);
+        }
+
+        Config defaults = Config.defaults();
+        long seed = defaults.seed();
+        int books = defaults.books();
+        int minChapters = defaults.minChapters();
+        int maxChapters = defaults.maxChapters();
+        int chapterSize = defaults.medianChapterLength();
+        double spread = defaults.chapterLengthSpread();
+        String[] genres = defaults.genres();
+        double unicodeRatio = defaults.unicodeTitleRatio();
+        boolean covers = defaults.covers();
+
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--books" -> books = Integer.parseInt(args[++i]);
+                case "--chapters" -> {
+                    String[] range = args[++i].split("-");
+                    minChapters = Integer.parseInt(range[0]);
+                    maxChapters = Integer.parseInt(range[range.length - 1]);
+                }
+                case "--chapter-size" -> chapterSize = Integer.parseInt(args[++i]);
+                case "--size-spread" -> spread = Double.parseDouble(args[++i]);
+                case "--genres" -> genres = args[++i].split(",");
+                case "--unicode-ratio" -> unicodeRatio = Double.parseDouble(args[++i]);
+                case "--no-covers" -> covers = false;
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        Config config = new Config(seed, books, minChapters, maxChapters, chapterSize, spread, genres,
+                unicodeRatio, covers);
+        long start = System.nanoTime();
+        Summary summary = new CorpusGenerator(config).generate(Paths.get(args[0]));
+        System.out.printf(Locale.ROOT, "Generated %d books, %d chapters, %.1f MB in %.1f s under %s%n",
+                summary.books(), summary.chapters(), summary.bytes() / (1024.0 * 1024.0),
+                (System.nanoTime() - start) / 1e9, Paths.get(args[0]).toAbsolutePath());
+    }
+
+    /**
+     * Writes the whole tree under the given root
+     *
+     * @param root The books root; created if missing
+     * @return What was written
+     * @throws IOException If a file cannot be written
+     */
+    public Summary generate(Path root) throws IOException {
+        long chapters = 0;
+        long bytes = 0;
+        for (int bookId = 1; bookId <= config.books(); bookId++) {
+            boolean novel = random.nextInt(3) != 0;
+            TextStyle style = random.nextDouble() < config.unicodeTitleRatio()
+                    ? TextStyle.UNICODE_HEAVY
+                    : novel ? TextStyle.PLAIN : TextStyle.FRENCH;
+            String title = corpus.text(12 + random.nextInt(30), style).trim();
+
+            Path seriesDir = root.resolve(novel ? "novels" : "romans").resolve(slug(title) + "-" + bookId);
+            Path infoDir = Files.createDirectories(seriesDir.resolve("information"));
+            Path chaptersDir = Files.createDirectories(seriesDir.resolve("chapters"));
+
+            bytes += write(infoDir.resolve(slug(title) + "-info.json"), bookJson(bookId, title, novel, style));
+            if (config.covers()) {
+                Path coverDir = Files.createDirectories(infoDir.resolve("coverImage"));
+                bytes += write(coverDir.resolve("cover-image.jpg"), coverJpeg(bookId));
+            }
+
+            int chapterCount = config.minChapters()
+                    + random.nextInt(Math.max(1, config.maxChapters() - config.minChapters() + 1));
+            for (int number = 1; number <= chapterCount; number++) {
+                String chapterTitle = corpus.text(8 + random.nextInt(24), style).trim();
+                String json = chapterJson(number, chapterTitle, chapterLength(), style);
+                bytes += write(chaptersDir.resolve("chapter" + number + "-" + slug(chapterTitle) + ".json"), json);
+                chapters++;
+            }
+        }
+        return new Summary(config.books(), chapters, bytes);
+    }
+
+    private String bookJson(int id, String title, boolean novel, TextStyle style) {
+        StringBuilder json = new StringBuilder(2048);
+        JsonWriter writer = new JsonWriter(json).beginObject()
+                .name("id").value(id)
+                .name("title").value(title)
+                .name("type").value(novel ? "novel" : "romans")
+                .name("description").value(corpus.text(200 + random.nextInt(800), style))
+                .name("coverImage").value("coverImage/cover-image.jpg")
+                .name("origin").value(novel ? "China" : "France")
+                .name("translator").value(corpus.text(16, style).trim());
+        writer.name("genres").beginArray();
+        int genreCount = 1 + random.nextInt(Math.min(5, config.genres().length));
+        for (int i = 0; i < genreCount; i++) {
+            writer.value(corpus.genre(config.genres()));
+        }
+        writer.endArray()
+                .name("status").value(corpus.status())
+                .name("artist").value(corpus.text(14, style).trim())
+                .name("dateAdded").value(String.format(Locale.ROOT, "20%02d-%02d-%02d",
+                        15 + random.nextInt(10), 1 + random.nextInt(12), 1 + random.nextInt(28)))
+                .endObject();
+        return json.toString();
+    }
+
+    private String chapterJson(int number, String title, int length, TextStyle style) {
+        StringBuilder json = new StringBuilder(length + 128);
+        new JsonWriter(json).beginObject()
+                .name("id").value(number)
+                .name("title").value(title)
+                .name("chapterNumber").value(number)
+                .name("contentText").value(corpus.text(length, style))
+                .endObject();
+        return json.toString();
+    }
+
+    /**
+     * Draws a chapter length from a log-normal distribution around the configured median
+     */
+    private int chapterLength() {
+        double length = config.medianChapterLength() * Math.exp(random.nextGaussian() * config.chapterLengthSpread());
+        return (int) Math.max(64, Math.min(length, 64L * 1024 * 1024));
+    }
+
+    private byte[] coverJpeg(int bookId) throws IOException {
+        Random coverRandom = new Random(config.seed() * 31 + bookId);
+        BufferedImage image = new BufferedImage(COVER_WIDTH, COVER_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            Color top = new Color(coverRandom.nextInt(0xFFFFFF));
+            Color bottom = new Color(coverRandom.nextInt(0xFFFFFF));
+            graphics.setPaint(new GradientPaint(0, 0, top, 0, COVER_HEIGHT, bottom));
+            graphics.fillRect(0, 0, COVER_WIDTH, COVER_HEIGHT);
+            graphics.setColor(new Color(coverRandom.nextInt(0xFFFFFF)));
+            graphics.fillOval(coverRandom.nextInt(COVER_WIDTH / 2), coverRandom.nextInt(COVER_HEIGHT / 2),
+                    COVER_WIDTH / 2, COVER_WIDTH / 2);
+        } finally {
+            graphics.dispose();
+        }
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream(32 * 1024);
+        ImageIO.write(image, "jpg", jpeg);
+        return jpeg.toByteArray();
+    }
+
+    /**
+     * Builds a file-name friendly version of a title, keeping letters of any script
+     */
+    static String slug(String title) {
+        String normalized = Normalizer.normalize(title, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+        StringBuilder slug = new StringBuilder(MAX_SLUG_LENGTH);
+        boolean pendingDash = false;
+        for (int i = 0; i < normalized.length() && slug.length() < MAX_SLUG_LENGTH; ) {
+            int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (pendingDash && slug.length() > 0) {
+                    slug.append('-');
+                }
+                pendingDash = false;
+                slug.appendCodePoint(codePoint);
+            } else {
+                pendingDash = true;
+            }
+        }
+        return slug.length() > 0 ? slug.toString() : "untitled";
+    }
+
+    private static long write(Path file, String content) throws IOException {
+        return write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long write(Path file, byte[] content) throws IOException {
+        Files.write(file, content);
+        return content.length;
+    }
+}
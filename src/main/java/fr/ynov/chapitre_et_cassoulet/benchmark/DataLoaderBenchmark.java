@@ -0,0 +1,128 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.benchmark;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.benchmark.SyntheticCorpus.TextStyle;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.DataLoader;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.Library;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.LibraryLoader;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Measures the cost of parsing book and chapter documents with {@link DataLoader}
+ * and of ingesting a generated books tree end to end.
+ * <p>
+ * {@code parseBook} exercises {@code extractStringField} on every metadata field and
+ * {@code extractArrayField} on the genres; {@code parseChapter} is dominated by
+ * {@code extractStringField} on the chapter text. {@code loadChapterFromFile} adds reading the
+ * file and decoding it from UTF-8.
+ * <p>
+ * Usage: {@code DataLoaderBenchmark [--quick]}
+ */
+public class DataLoaderBenchmark {
+    private static final long SEED = 42L;
+
+    public static void main(String[] args) throws Exception {
+        boolean quick = args.length > 0 && args[0].equals("--quick");
+        Logger.setLevel(Logger.Level.WARN);
+        MicroBenchmark harness = quick ? new MicroBenchmark(1, 2, 200) : new MicroBenchmark(3, 5, 1000);
+        SyntheticCorpus corpus = new SyntheticCorpus(SEED);
+        DataLoader dataLoader = new DataLoader();
+
+        MicroBenchmark.printHeader();
+
+        benchmarkChapter(harness, dataLoader, "parseChapter tiny (1 KB)",
+                corpus.chapterJson(1, 1, 1_000, TextStyle.PLAIN));
+        benchmarkChapter(harness, dataLoader, "parseChapter typical (20 KB)",
+                corpus.chapterJson(1, 1, 20_000, TextStyle.PLAIN));
+        benchmarkChapter(harness, dataLoader, "parseChapter large (4 MB)",
+                corpus.chapterJson(1, 1, 4_000_000, TextStyle.PLAIN));
+        benchmarkChapter(harness, dataLoader, "parseChapter escape-heavy (20 KB)",
+                corpus.chapterJson(1, 1, 20_000, TextStyle.ESCAPE_HEAVY));
+        benchmarkChapter(harness, dataLoader, "parseChapter French (20 KB)",
+                corpus.chapterJson(1, 1, 20_000, TextStyle.FRENCH));
+
+        benchmarkChapterFile(harness, dataLoader, "loadChapterFromFile French (20 KB)",
+                corpus.chapterJson(1, 1, 20_000, TextStyle.FRENCH));
+        benchmarkChapterFile(harness, dataLoader, "loadChapterFromFile French (4 MB)",
+                corpus.chapterJson(1, 1, 4_000_000, TextStyle.FRENCH));
+
+        String bookJson = corpus.bookJson(1, true, TextStyle.PLAIN);
+        harness.run("parseBook", utf8Length(bookJson), () -> dataLoader.parseBook(bookJson));
+        String frenchBookJson = corpus.bookJson(2, false, TextStyle.FRENCH);
+        harness.run("parseBook French", utf8Length(frenchBookJson), () -> dataLoader.parseBook(frenchBookJson));
+
+        benchmarkIngest(harness, quick ? 20 : 100, 20, 20_000);
+    }
+
+    private static void benchmarkChapter(MicroBenchmark harness, DataLoader dataLoader,
+                                         String name, String json) throws Exception {
+        harness.run(name, utf8Length(json), () -> dataLoader.parseChapter(json));
+    }
+
+    /**
+     * Reads and parses a chapter file written as UTF-8
+     */
+    private static void benchmarkChapterFile(MicroBenchmark harness, DataLoader dataLoader,
+                                             String name, String json) throws Exception {
+        Path file = Files.createTempFile("cassoulet-chapter-bench", ".json");
+        try {
+            Files.writeString(file, json, StandardCharsets.UTF_8);
+            harness.run(name, Files.size(file), () -> dataLoader.loadChapterFromFile(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Ingests a generated tree through {@link LibraryLoader}, the same path used at startup.
+     * Console output of the loader is discarded so that terminal speed does not skew the result.
+     */
+    private static void benchmarkIngest(MicroBenchmark harness, int books, int chaptersPerBook,
+                                        int chapterLength) throws Exception {
+        Path root = Files.createTempDirectory("cassoulet-ingest-bench");
+        PrintStream console = System.out;
+        PrintStream errors = System.err;
+        try {
+            CorpusGenerator.Config config = new CorpusGenerator.Config(SEED, books, chaptersPerBook, chaptersPerBook,
+                    chapterLength, 0, SyntheticCorpus.GENRES, 0.2, false);
+            long bytes = new CorpusGenerator(config).generate(root).bytes();
+            LibraryLoader loader = new LibraryLoader(new DataLoader());
+            PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+
+            MicroBenchmark.Result result;
+            System.setOut(discard);
+            System.setErr(discard);
+            try {
+                result = harness.run("ingest " + books + " books x " + chaptersPerBook + " chapters", bytes, () -> {
+                    Library library = new Library();
+                    loader.loadBooks(root, (book, processed, total) -> library.addBook(book));
+                    return library;
+                });
+            } finally {
+                System.setOut(console);
+                System.setErr(errors);
+            }
+            MicroBenchmark.print(result);
+        } finally {
+            deleteRecursively(root);
+        }
+    }
+
+    private static long utf8Length(String json) {
+        return json.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    static void deleteRecursively(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
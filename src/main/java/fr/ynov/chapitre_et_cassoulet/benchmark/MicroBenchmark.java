@@ -0,0 +1,139 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+/**
+ * Small self-contained microbenchmark harness.
+ * Each benchmark runs warmup iterations followed by timed measurement iterations of a fixed
+ * duration on the calling thread. It reports the average time per operation, throughput
+ * and, when the JVM supports it, the bytes allocated per operation by the calling thread.
+ */
+public class MicroBenchmark {
+
+    /**
+     * Outcome of a single benchmark
+     *
+     * @param name Benchmark name
+     * @param operations Number of measured operations
+     * @param nanosPerOperation Average time per operation
+     * @param megabytesPerSecond Input processed per second, or 0 if the benchmark has no input size
+     * @param bytesAllocatedPerOperation Bytes allocated per operation, or -1 if unavailable
+     */
+    public record Result(String name, long operations, double nanosPerOperation,
+                         double megabytesPerSecond, double bytesAllocatedPerOperation) {
+
+        /**
+         * Gets the number of operations per second
+         *
+         * @return Operations per second
+         */
+        public double operationsPerSecond() {
+            return 1_000_000_000.0 / nanosPerOperation;
+        }
+    }
+
+    private static volatile Object blackhole;
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+
+    /**
+     * Creates a harness with the given iteration settings
+     *
+     * @param warmupIterations Number of untimed iterations run first
+     * @param measurementIterations Number of timed iterations
+     * @param iterationMillis Duration of each iteration
+     */
+    public MicroBenchmark(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    /**
+     * Runs a benchmark and prints its result
+     *
+     * @param name Benchmark name
+     * @param bytesPerOperation Input bytes processed by one operation, or 0
+     * @param operation The operation to measure; its result is consumed so it cannot be optimized away
+     * @return The measured result
+     * @throws Exception If the operation fails
+     */
+    public Result run(String name, long bytesPerOperation, Callable<?> operation) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(operation);
+        }
+
+        long operations = 0;
+        long elapsedNanos = 0;
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < measurementIterations; i++) {
+            long start = System.nanoTime();
+            operations += runIteration(operation);
+            elapsedNanos += System.nanoTime() - start;
+        }
+        long allocatedAfter = allocatedBytes();
+
+        double nanosPerOperation = (double) elapsedNanos / operations;
+        double megabytesPerSecond = bytesPerOperation > 0
+                ? bytesPerOperation / (1024.0 * 1024.0) * (1_000_000_000.0 / nanosPerOperation)
+                : 0;
+        double allocatedPerOperation = allocatedBefore >= 0
+                ? (double) (allocatedAfter - allocatedBefore) / operations
+                : -1;
+
+        Result result = new Result(name, operations, nanosPerOperation, megabytesPerSecond, allocatedPerOperation);
+        print(result);
+        return result;
+    }
+
+    private long runIteration(Callable<?> operation) throws Exception {
+        long deadline = System.nanoTime() + iterationNanos;
+        long operations = 0;
+        do {
+            blackhole = operation.call();
+            operations++;
+        } while (System.nanoTime() < deadline);
+        return operations;
+    }
+
+    /**
+     * Prints the column header matching {@link #print(Result)}
+     */
+    public static void printHeader() {
+        System.out.printf(Locale.ROOT, "%-48s %14s %14s %12s %16s%n",
+                "Benchmark", "ns/op", "ops/s", "MB/s", "alloc B/op");
+    }
+
+    /**
+     * Prints a result as one table row
+     *
+     * @param result The result to print
+     */
+    public static void print(Result result) {
+        System.out.printf(Locale.ROOT, "%-48s %14.1f %14.1f %12s %16s%n",
+                result.name(),
+                result.nanosPerOperation(),
+                result.operationsPerSecond(),
+                result.megabytesPerSecond() > 0 ? String.format(Locale.ROOT, "%.1f", result.megabytesPerSecond()) : "-",
+                result.bytesAllocatedPerOperation() >= 0
+                        ? String.format(Locale.ROOT, "%.0f", result.bytesAllocatedPerOperation()) : "n/a");
+    }
+
+    /**
+     * Gets the number of bytes allocated so far by the current thread
+     *
+     * @return Allocated bytes, or -1 if the JVM does not expose allocation counters
+     */
+    static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean
+                && threadBean.isThreadAllocatedMemorySupported()
+                && threadBean.isThreadAllocatedMemoryEnabled()) {
+            return threadBean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,201 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.benchmark;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.Library;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.Search;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.BookConstants;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures latency and allocation of the search, lookup and filter paths of {@link Library}
+ * and {@link Search} on generated catalogues of increasing size.
+ * <p>
+ * Results can be saved as a baseline and later runs compared against it, which is how a change
+ * to the search engine should be accepted or rejected.
+ * <p>
+ * Usage: {@code SearchBenchmark [--sizes 10000,100000,1000000] [--quick]
+ * [--save-baseline file] [--baseline file]}. One million books need a heap of about 3 GB.
+ */
+public class SearchBenchmark {
+    private static final long SEED = 7L;
+    private static final int DESCRIPTION_LENGTH = 160;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {10_000, 100_000, 1_000_000};
+        boolean quick = false;
+        Path saveBaseline = null;
+        Path compareBaseline = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes" -> sizes = parseSizes(args[++i]);
+                case "--quick" -> quick = true;
+                case "--save-baseline" -> saveBaseline = Paths.get(args[++i]);
+                case "--baseline" -> compareBaseline = Paths.get(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        MicroBenchmark harness = quick ? new MicroBenchmark(1, 2, 300) : new MicroBenchmark(3, 5, 1000);
+        List<MicroBenchmark.Result> results = new ArrayList<>();
+
+        MicroBenchmark.printHeader();
+        for (int size : sizes) {
+            Library library = generateLibrary(size);
+            results.addAll(runSuite(harness, library, size));
+        }
+
+        if (saveBaseline != null) {
+            saveBaseline(saveBaseline, results);
+            System.out.println("Baseline saved to " + saveBaseline.toAbsolutePath());
+        }
+        if (compareBaseline != null) {
+            compare(loadBaseline(compareBaseline), results);
+        }
+    }
+
+    private static Library generateLibrary(int size) {
+        SyntheticCorpus corpus = new SyntheticCorpus(SEED);
+        Library library = new Library();
+        List<Book> batch = new ArrayList<>(10_000);
+        for (int id = 1; id <= size; id++) {
+            batch.add(corpus.book(id, DESCRIPTION_LENGTH));
+            if (batch.size() == 10_000) {
+                library.addBooks(batch);
+                batch.clear();
+            }
+        }
+        library.addBooks(batch);
+        return library;
+    }
+
+    private static List<MicroBenchmark.Result> runSuite(MicroBenchmark harness, Library library,
+                                                        int size) throws Exception {
+        List<MicroBenchmark.Result> results = new ArrayList<>();
+        String suffix = " [" + size + "]";
+        String rareGenre = SyntheticCorpus.GENRES[SyntheticCorpus.GENRES.length - 1];
+
+        results.add(harness.run("searchBooks keyword" + suffix, 0,
+                () -> library.searchBooks("shadow", null, null, null)));
+        results.add(harness.run("searchBooks keyword no match" + suffix, 0,
+                () -> library.searchBooks("zzz-unknown", null, null, null)));
+        results.add(harness.run("searchBooks genre" + suffix, 0,
+                () -> library.searchBooks(null, "Fantasy", null, null)));
+        results.add(harness.run("searchBooks rare genre" + suffix, 0,
+                () -> library.searchBooks(null, rareGenre, null, null)));
+        results.add(harness.run("searchBooks status" + suffix, 0,
+                () -> library.searchBooks(null, null, BookConstants.STATUS_HIATUS, null)));
+        results.add(harness.run("searchBooks type" + suffix, 0,
+                () -> library.searchBooks(null, null, null, BookConstants.TYPE_ROMAN)));
+        results.add(harness.run("searchBooks genre+status" + suffix, 0,
+                () -> library.searchBooks(null, "Romance", BookConstants.STATUS_COMPLETED, null)));
+        results.add(harness.run("searchBooks all criteria" + suffix, 0,
+                () -> library.searchBooks("cold", "Action", BookConstants.STATUS_ONGOING, BookConstants.TYPE_NOVEL)));
+
+        results.add(harness.run("advancedSearch keyword" + suffix, 0,
+                () -> search(library, "shadow", null, null, null)));
+        results.add(harness.run("advancedSearch genre" + suffix, 0,
+                () -> search(library, null, "Fantasy", null, null)));
+        results.add(harness.run("advancedSearch status+type" + suffix, 0,
+                () -> search(library, null, null, BookConstants.STATUS_COMPLETED, BookConstants.TYPE_ROMAN)));
+        results.add(harness.run("advancedSearch all criteria" + suffix, 0,
+                () -> search(library, "château", "Magie", BookConstants.STATUS_ONGOING, BookConstants.TYPE_ROMAN)));
+
+        int[] lookupIds = new int[1024];
+        Random random = new Random(SEED);
+        for (int i = 0; i < lookupIds.length; i++) {
+            lookupIds[i] = 1 + random.nextInt(size);
+        }
+        int[] cursor = {0};
+        results.add(harness.run("getBookById" + suffix, 0,
+                () -> library.getBookById(lookupIds[cursor[0]++ & (lookupIds.length - 1)])));
+        results.add(harness.run("getAllGenres" + suffix, 0, library::getAllGenres));
+        results.add(harness.run("getAllStatuses" + suffix, 0, library::getAllStatuses));
+        return results;
+    }
+
+    private static Object search(Library library, String keyword, String genre, String status, String type) {
+        Search search = new Search(library);
+        search.setKeyword(keyword);
+        if (genre != null) {
+            search.addGenre(genre);
+        }
+        if (status != null) {
+            search.addStatus(status);
+        }
+        search.setType(type);
+        return search.advancedSearch();
+    }
+
+    private static int[] parseSizes(String value) {
+        String[] parts = value.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return sizes;
+    }
+
+    /**
+     * Saves results as tab-separated lines: name, ns/op, allocated bytes/op
+     */
+    private static void saveBaseline(Path file, List<MicroBenchmark.Result> results) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# benchmark\tns/op\talloc B/op");
+            writer.newLine();
+            for (MicroBenchmark.Result result : results) {
+                writer.write(String.format(Locale.ROOT, "%s\t%.1f\t%.0f",
+                        result.name(), result.nanosPerOperation(), result.bytesAllocatedPerOperation()));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static Map<String, double[]> loadBaseline(Path file) throws IOException {
+        Map<String, double[]> baseline = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split("\t");
+            baseline.put(columns[0], new double[]{Double.parseDouble(columns[1]), Double.parseDouble(columns[2])});
+        }
+        return baseline;
+    }
+
+    private static void compare(Map<String, double[]> baseline, List<MicroBenchmark.Result> results) {
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-48s %14s %14s %9s %14s%n",
+                "Benchmark", "baseline ns", "current ns", "delta", "alloc delta");
+        for (MicroBenchmark.Result result : results) {
+            double[] reference = baseline.get(result.name());
+            if (reference == null) {
+                System.out.printf(Locale.ROOT, "%-48s %14s %14.1f %9s %14s%n",
+                        result.name(), "-", result.nanosPerOperation(), "new", "-");
+                continue;
+            }
+            double timeDelta = (result.nanosPerOperation() - reference[0]) / reference[0] * 100;
+            double allocationDelta = reference[1] > 0
+                    ? (result.bytesAllocatedPerOperation() - reference[1]) / reference[1] * 100
+                    : 0;
+            System.out.printf(Locale.ROOT, "%-48s %14.1f %14.1f %+8.1f%% %+13.1f%%%n",
+                    result.name(), reference[0], result.nanosPerOperation(), timeDelta, allocationDelta);
+        }
+    }
+}
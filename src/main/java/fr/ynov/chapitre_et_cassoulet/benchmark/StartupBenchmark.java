@@ -0,0 +1,311 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.benchmark;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.DataLoader;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.FileManager;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.IngestStatistics;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.Library;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.LibraryLoader;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.JsonWriter;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Measures how long the startup load path takes to produce a usable {@link Library} and how much
+ * heap that library retains, without opening a window.
+ * <p>
+ * The {@code tree} mode runs {@link LibraryLoader} over a JSON books tree the way
+ * {@code ApplicationLauncher} does, split into directory walk, read, parse, assemble and index phases.
+ * The {@code snapshot} mode deserializes a {@code library.dat} snapshot written from the same tree.
+ * Retained heap is measured after garbage collection while the library is still reachable.
+ * <p>
+ * Usage: {@code StartupBenchmark [--corpus dir | --sizes 100,1000] [--mode tree|snapshot|both]
+ * [--runs N] [--output file.json]}. Results are written as JSON to the output file or to standard output.
+ */
+public class StartupBenchmark {
+    private static final long SEED = 42L;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /**
+     * One measured load
+     *
+     * @param corpus Name of the books tree
+     * @param mode Load path: tree or snapshot
+     * @param iteration Run number, starting at 1; the first run is the coldest
+     * @param books Number of books in the loaded library
+     * @param chapters Number of chapters in the loaded library
+     * @param chapterBytes Size of the chapter files on disk
+     * @param statistics Walk, read, parse and assemble timings; null for snapshot loads
+     * @param loadNanos Time spent reading the tree or deserializing the snapshot
+     * @param indexNanos Time spent adding books to the library and collecting filter values
+     * @param retainedBytes Heap retained by the library after garbage collection
+     */
+    record Run(String corpus, String mode, int iteration, int books, long chapters, long chapterBytes,
+               IngestStatistics statistics, long loadNanos, long indexNanos, long retainedBytes) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Logger.setLevel(Logger.Level.WARN);
+
+        Path corpus = null;
+        int[] sizes = {100, 1_000};
+        String mode = "both";
+        int runs = 3;
+        Path output = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--corpus" -> corpus = Paths.get(args[++i]);
+                case "--sizes" -> sizes = parseSizes(args[++i]);
+                case "--mode" -> mode = args[++i];
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--output" -> output = Paths.get(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if (!mode.equals("tree") && !mode.equals("snapshot") && !mode.equals("both")) {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+
+        List<Run> results = new ArrayList<>();
+        if (corpus != null) {
+            results.addAll(benchmark(corpus, corpus.getFileName().toString(), mode, runs));
+        } else {
+            for (int size : sizes) {
+                Path root = Files.createTempDirectory("cassoulet-startup-bench");
+                try {
+                    CorpusGenerator.Config defaults = CorpusGenerator.Config.defaults();
+                    CorpusGenerator.Config config = new CorpusGenerator.Config(SEED, size, 5, 30,
+                            8_000, defaults.chapterLengthSpread(), defaults.genres(),
+                            defaults.unicodeTitleRatio(), true);
+                    new CorpusGenerator(config).generate(root);
+                    results.addAll(benchmark(root, "generated-" + size, mode, runs));
+                } finally {
+                    DataLoaderBenchmark.deleteRecursively(root);
+                }
+            }
+        }
+
+        String json = toJson(results);
+        if (output != null) {
+            Files.writeString(output, json + System.lineSeparator(), StandardCharsets.UTF_8);
+            System.err.println("Results written to " + output.toAbsolutePath());
+        } else {
+            System.out.println(json);
+        }
+    }
+
+    private static List<Run> benchmark(Path root, String name, String mode, int runs) throws Exception {
+        List<Run> results = new ArrayList<>();
+        long chapterBytes = chapterBytes(root);
+        System.err.println("Benchmarking " + name + " (" + mode + ", " + runs + " runs)");
+
+        if (!mode.equals("snapshot")) {
+            for (int iteration = 1; iteration <= runs; iteration++) {
+                results.add(loadTree(root, name, iteration, chapterBytes));
+            }
+        }
+
+        if (!mode.equals("tree")) {
+            File snapshot = Files.createTempFile("cassoulet-startup-bench", ".dat").toFile();
+            try {
+                Library library = quietly(() -> {
+                    Library loaded = new Library();
+                    new LibraryLoader(new DataLoader())
+                            .loadBooks(root, (book, processed, total) -> loaded.addBook(book));
+                    return loaded;
+                });
+                new FileManager().saveLibrary(library, snapshot);
+                for (int iteration = 1; iteration <= runs; iteration++) {
+                    results.add(loadSnapshot(snapshot, name, iteration, chapterBytes));
+                }
+            } finally {
+                snapshot.delete();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Loads the JSON tree with the same calls as the launcher: each book is added to the library
+     * as soon as it is complete, then the filter values are collected for the search panel
+     */
+    private static Run loadTree(Path root, String name, int iteration, long chapterBytes) throws Exception {
+        long baseline = usedHeapAfterGc();
+        IngestStatistics statistics = new IngestStatistics();
+        LibraryLoader loader = new LibraryLoader(new DataLoader());
+        loader.setStatistics(statistics);
+
+        Library library = new Library();
+        long[] indexNanos = {0};
+        long start = System.nanoTime();
+        quietly(() -> loader.loadBooks(root, (book, processed, total) -> {
+            long indexStart = System.nanoTime();
+            library.addBook(book);
+            indexNanos[0] += System.nanoTime() - indexStart;
+        }));
+        long loadNanos = System.nanoTime() - start - indexNanos[0];
+
+        long indexStart = System.nanoTime();
+        collectFilterValues(library);
+        indexNanos[0] += System.nanoTime() - indexStart;
+
+        long retained = usedHeapAfterGc() - baseline;
+        Run run = new Run(name, "tree", iteration, library.getTotalBooks(), chapterCount(library), chapterBytes,
+                statistics, loadNanos, indexNanos[0], retained);
+        Reference.reachabilityFence(library);
+        return run;
+    }
+
+    private static Run loadSnapshot(File snapshot, String name, int iteration, long chapterBytes) throws Exception {
+        long baseline = usedHeapAfterGc();
+        FileManager fileManager = new FileManager();
+
+        long start = System.nanoTime();
+        Library snapshotLibrary = quietly(() -> fileManager.loadLibrary(snapshot));
+        long loadNanos = System.nanoTime() - start;
+
+        long indexStart = System.nanoTime();
+        Library library = new Library();
+        library.addBooks(snapshotLibrary.getCatalogue());
+        collectFilterValues(library);
+        long indexNanos = System.nanoTime() - indexStart;
+
+        snapshotLibrary = null;
+        long retained = usedHeapAfterGc() - baseline;
+        Run run = new Run(name, "snapshot", iteration, library.getTotalBooks(), chapterCount(library), chapterBytes,
+                null, loadNanos, indexNanos, retained);
+        Reference.reachabilityFence(library);
+        return run;
+    }
+
+    private static void collectFilterValues(Library library) {
+        library.getAllGenres();
+        library.getAllStatuses();
+    }
+
+    private static long chapterCount(Library library) {
+        long chapters = 0;
+        for (Book book : library.getCatalogue()) {
+            chapters += book.getChapters().size();
+        }
+        return chapters;
+    }
+
+    private static long chapterBytes(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(path -> path.getParent() != null
+                            && path.getParent().getFileName().toString().equals("chapters")
+                            && path.getFileName().toString().endsWith(".json"))
+                    .mapToLong(path -> path.toFile().length())
+                    .sum();
+        }
+    }
+
+    /**
+     * Collects garbage until the used heap stops shrinking and returns it
+     */
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long previous = Long.MAX_VALUE;
+        long used = memory.getHeapMemoryUsage().getUsed();
+        for (int attempt = 0; attempt < 10 && used < previous; attempt++) {
+            previous = used;
+            System.gc();
+            Thread.sleep(50);
+            used = memory.getHeapMemoryUsage().getUsed();
+        }
+        return Math.min(used, previous);
+    }
+
+    /**
+     * Runs an action with console output discarded so that logging does not skew timings
+     */
+    private static <T> T quietly(ThrowingSupplier<T> action) throws Exception {
+        PrintStream console = System.out;
+        PrintStream errors = System.err;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setErr(discard);
+        try {
+            return action.get();
+        } finally {
+            System.setOut(console);
+            System.setErr(errors);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThrowingSupplier<T> {
+        T get() throws Exception;
+    }
+
+    private static String toJson(List<Run> results) {
+        StringBuilder json = new StringBuilder(1024);
+        JsonWriter writer = new JsonWriter(json).beginObject()
+                .name("javaVersion").value(System.getProperty("java.version"))
+                .name("maxHeapBytes").value(Runtime.getRuntime().maxMemory())
+                .name("runs").beginArray();
+        for (Run run : results) {
+            writer.beginObject()
+                    .name("corpus").value(run.corpus())
+                    .name("mode").value(run.mode())
+                    .name("iteration").value(run.iteration())
+                    .name("books").value(run.books())
+                    .name("chapters").value(run.chapters())
+                    .name("chapterBytes").value(run.chapterBytes())
+                    .name("timeToReadyMillis").value((run.loadNanos() + run.indexNanos()) / NANOS_PER_MILLI);
+
+            writer.name("phasesMillis").beginObject();
+            IngestStatistics statistics = run.statistics();
+            if (statistics != null) {
+                writer.name("walk").value(statistics.getWalkNanos() / NANOS_PER_MILLI)
+                        .name("read").value(statistics.getReadNanos() / NANOS_PER_MILLI)
+                        .name("parse").value(statistics.getParseNanos() / NANOS_PER_MILLI)
+                        .name("assemble").value(statistics.getAssembleNanos() / NANOS_PER_MILLI)
+                        .name("other").value(Math.max(0, run.loadNanos() - statistics.getWalkNanos()
+                                - statistics.getReadNanos() - statistics.getParseNanos()
+                                - statistics.getAssembleNanos()) / NANOS_PER_MILLI);
+            } else {
+                writer.name("deserialize").value(run.loadNanos() / NANOS_PER_MILLI);
+            }
+            writer.name("index").value(run.indexNanos() / NANOS_PER_MILLI).endObject();
+
+            if (statistics != null) {
+                writer.name("filesRead").value(statistics.getFilesRead())
+                        .name("bytesRead").value(statistics.getBytesRead());
+            }
+            writer.name("retainedHeapBytes").value(run.retainedBytes())
+                    .name("retainedBytesPerBook").value(run.books() > 0 ? run.retainedBytes() / run.books() : 0)
+                    .name("retainedBytesPerChapterByte").value(run.chapterBytes() > 0
+                            ? (double) run.retainedBytes() / run.chapterBytes() : 0.0)
+                    .endObject();
+        }
+        writer.endArray().endObject();
+        return json.toString();
+    }
+
+    private static int[] parseSizes(String value) {
+        String[] parts = value.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,230 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.benchmark;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Novel;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Roman;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.BookConstants;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.JsonWriter;
+
+import java.util.Random;
+
+/**
+ * Produces deterministic synthetic book and chapter JSON documents for benchmarks.
+ * Documents follow the same layout as the files under {@code resources/data/books}.
+ */
+public class SyntheticCorpus {
+
+    /**
+     * Flavour of the generated chapter text
+     */
+    public enum TextStyle {
+        /** Plain English prose */
+        PLAIN,
+        /** Prose dense with quotes, backslashes, tabs and line breaks that must be escaped */
+        ESCAPE_HEAVY,
+        /** French prose with accented and typographic non-ASCII characters */
+        FRENCH,
+        /** Mixed scripts, combining marks and characters outside the Basic Multilingual Plane */
+        UNICODE_HEAVY
+    }
+
+    private static final String[] PLAIN_WORDS = {
+            "the", "shadow", "slave", "nightmare", "spell", "awakened", "sunny", "walked", "through",
+            "ruined", "city", "darkness", "and", "silence", "of", "a", "forgotten", "world", "sword",
+            "light", "was", "cold", "he", "said", "nothing", "at", "all", "ancient", "temple"
+    };
+
+    private static final String[] FRENCH_WORDS = {
+            "le", "château", "était", "silencieux", "élève", "sorcière", "forêt", "interdite", "où",
+            "l'école", "des", "sorciers", "miroir", "du", "riséd", "à", "noël", "cœur", "déjà",
+            "très", "fenêtre", "ça", "garçon", "bâton", "naïf", "hôpital", "et", "—", "«", "»"
+    };
+
+    private static final String[] UNICODE_WORDS = {
+            "東京", "影の奴隷", "诡秘之主", "Ωmega", "Ελληνικά", "Москва", "e\u0301toile", "naïve", "Zoë",
+            "\uD83D\uDC09", "\uD83D\uDCDA", "\uD834\uDD1E", "한국어", "עברית", "العربية", "Straße", "Ærø", "ﬁn"
+    };
+
+    private static final String[] ESCAPE_FRAGMENTS = {
+            "\"Run!\" he shouted.", "C:\\path\\to\\nowhere", "line\nbreak", "tab\there",
+            "\"quoted \\\"nested\\\" text\"", "\r\n", "back\\slash"
+    };
+
+    /**
+     * Genre vocabulary, ordered from most to least popular
+     */
+    public static final String[] GENRES = {
+            "Fantasy", "Action", "Adventure", "Romance", "Drama", "Comedy", "Mystery", "Supernatural",
+            "Martial Arts", "Sci-fi", "Slice of Life", "Horror", "Psychological", "Tragedy", "Historical",
+            "School Life", "Magie", "Jeunesse", "Aventure", "Policier", "Xianxia", "Wuxia", "Mecha", "Sports"
+    };
+
+    private static final String[] STATUSES = {
+            BookConstants.STATUS_ONGOING, BookConstants.STATUS_COMPLETED, BookConstants.STATUS_HIATUS
+    };
+    private static final int[] STATUS_WEIGHTS = {60, 35, 5};
+
+    private final Random random;
+
+    /**
+     * Creates a corpus generator with a fixed seed
+     *
+     * @param seed Seed for the pseudo-random generator
+     */
+    public SyntheticCorpus(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Generates text of approximately the requested length in UTF-16 characters
+     *
+     * @param length Target length
+     * @param style Flavour of the text
+     * @return The generated text
+     */
+    public String text(int length, TextStyle style) {
+        StringBuilder builder = new StringBuilder(length + 32);
+        while (builder.length() < length) {
+            switch (style) {
+                case PLAIN -> builder.append(PLAIN_WORDS[random.nextInt(PLAIN_WORDS.length)]);
+                case FRENCH -> builder.append(FRENCH_WORDS[random.nextInt(FRENCH_WORDS.length)]);
+                case UNICODE_HEAVY -> builder.append(random.nextBoolean()
+                        ? UNICODE_WORDS[random.nextInt(UNICODE_WORDS.length)]
+                        : FRENCH_WORDS[random.nextInt(FRENCH_WORDS.length)]);
+                case ESCAPE_HEAVY -> builder.append(random.nextInt(3) == 0
+                        ? ESCAPE_FRAGMENTS[random.nextInt(ESCAPE_FRAGMENTS.length)]
+                        : PLAIN_WORDS[random.nextInt(PLAIN_WORDS.length)]);
+            }
+            builder.append(random.nextInt(12) == 0 ? ".\n\n" : " ");
+        }
+        int end = length;
+        if (Character.isHighSurrogate(builder.charAt(end - 1))) {
+            end--;
+        }
+        builder.setLength(end);
+        return builder.toString();
+    }
+
+    /**
+     * Picks a genre following a Zipf-like distribution, so the first genres of
+     * {@link #GENRES} are far more common than the last ones
+     *
+     * @return A genre
+     */
+    public String genre() {
+        return genre(GENRES);
+    }
+
+    /**
+     * Picks a genre from a vocabulary following a Zipf-like distribution
+     *
+     * @param vocabulary Genres ordered from most to least popular
+     * @return A genre
+     */
+    public String genre(String[] vocabulary) {
+        double harmonic = 0;
+        for (int rank = 1; rank <= vocabulary.length; rank++) {
+            harmonic += 1.0 / rank;
+        }
+        double target = random.nextDouble() * harmonic;
+        for (int rank = 1; rank <= vocabulary.length; rank++) {
+            target -= 1.0 / rank;
+            if (target <= 0) {
+                return vocabulary[rank - 1];
+            }
+        }
+        return vocabulary[vocabulary.length - 1];
+    }
+
+    /**
+     * Picks a status: mostly ongoing, a third completed and a few on hiatus
+     *
+     * @return A status
+     */
+    public String status() {
+        int target = random.nextInt(100);
+        for (int i = 0; i < STATUSES.length; i++) {
+            target -= STATUS_WEIGHTS[i];
+            if (target < 0) {
+                return STATUSES[i];
+            }
+        }
+        return STATUSES[0];
+    }
+
+    /**
+     * Generates an in-memory book without chapters.
+     * Two thirds of the books are novels and the rest romans; each has two to five genres.
+     *
+     * @param id Book identifier
+     * @param descriptionLength Approximate length of the description
+     * @return The generated book
+     */
+    public Book book(int id, int descriptionLength) {
+        boolean novel = random.nextInt(3) != 0;
+        TextStyle style = novel ? TextStyle.PLAIN : TextStyle.FRENCH;
+        String title = text(12 + random.nextInt(24), style).trim();
+        String description = text(descriptionLength, style);
+        Book book = novel
+                ? new Novel(id, title, description, "coverImage/cover-image.jpg")
+                : new Roman(id, title, description, "coverImage/cover-image.jpg");
+        book.setStatus(status());
+        book.setArtist(text(14, style).trim());
+        int genreCount = 2 + random.nextInt(4);
+        for (int i = 0; i < genreCount; i++) {
+            book.addGenre(genre());
+        }
+        return book;
+    }
+
+    /**
+     * Generates a chapter document
+     *
+     * @param id Chapter identifier
+     * @param number Chapter number
+     * @param contentLength Approximate length of the chapter text
+     * @param style Flavour of the chapter text
+     * @return The chapter JSON
+     */
+    public String chapterJson(int id, int number, int contentLength, TextStyle style) {
+        StringBuilder json = new StringBuilder(contentLength + 128);
+        new JsonWriter(json).beginObject()
+                .name("id").value(id)
+                .name("title").value(text(24, style).trim())
+                .name("chapterNumber").value(number)
+                .name("contentText").value(text(contentLength, style))
+                .endObject();
+        return json.toString();
+    }
+
+    /**
+     * Generates a book information document
+     *
+     * @param id Book identifier
+     * @param novel Whether the book is a novel rather than a roman
+     * @param style Flavour of the title and description
+     * @return The book JSON
+     */
+    public String bookJson(int id, boolean novel, TextStyle style) {
+        StringBuilder json = new StringBuilder(1024);
+        JsonWriter writer = new JsonWriter(json).beginObject()
+                .name("id").value(id)
+                .name("title").value(text(30, style).trim())
+                .name("type").value(novel ? "novel" : "romans")
+                .name("description").value(text(600, style))
+                .name("coverImage").value("coverImage/cover-image.jpg")
+                .name("origin").value(novel ? "China" : "France")
+                .name("translator").value(text(16, style).trim());
+        writer.name("genres").beginArray();
+        int genreCount = 2 + random.nextInt(4);
+        for (int i = 0; i < genreCount; i++) {
+            writer.value(genre());
+        }
+        writer.endArray()
+                .name("status").value(status())
+                .name("artist").value(text(14, style).trim())
+                .name("dateAdded").value("2024-01-15")
+                .endObject();
+        return json.toString();
+    }
+}
@@ -0,0 +1,607 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.cli;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.api.LibraryHttpServer;
+import main.java.fr.ynov.chapitre_et_cassoulet.exception.FileOperationException;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Chapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.TextChapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.BulkImporter;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.CatalogueValidator;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.DataLoader;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.FileManager;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.FootprintEstimator;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.IngestManifest;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.Library;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.LibraryExporter;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.LibraryLoader;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.LibraryWatcher;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.Search;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.BookJson;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.JsonWriter;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Headless command line front end: loads the library and runs one command, printing JSON.
+ * <p>
+ * Nothing here touches AWT or Swing, so it starts fast, works on machines without a display
+ * and can be used from scripts and scheduled jobs. Log messages go to standard error at
+ * {@link Logger.Level#WARN} unless the {@value Logger#LEVEL_PROPERTY} property says otherwise,
+ * leaving standard output to the JSON result.
+ * <p>
+ * Exit status: {@value #EXIT_OK} on success, {@value #EXIT_ISSUES} when {@code validate} found errors,
+ * {@value #EXIT_USAGE} for a bad command line and {@value #EXIT_FAILURE} when the library cannot be loaded
+ * or the output cannot be written.
+ */
+public class CommandLine {
+    /** The command succeeded */
+    public static final int EXIT_OK = 0;
+    /** Validation found errors */
+    public static final int EXIT_ISSUES = 1;
+    /** The command line is invalid */
+    public static final int EXIT_USAGE = 2;
+    /** Loading or writing failed */
+    public static final int EXIT_FAILURE = 3;
+
+    private static final Set<String> COMMANDS = Set.of("search", "stats", "validate", "export", "footprint", "serve",
+            "help");
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final String USAGE = """
+            Usage: Application <command> [options]
+
+            Commands:
+              search     List the books matching --keyword, --genre, --status and --type
+              stats      Count books, chapters and text per type, status and genre
+              validate   Check the data for duplicate IDs, empty chapters, missing covers and unreadable files
+              export     Write every book, with --text its chapter text, as JSON; --format snapshot writes library.dat,
+                         ndjson writes import records (.gz to compress) and epub writes one EPUB per book into --output
+              footprint  Estimate the heap retained by the library
+              serve      Serve the library as a JSON HTTP API until interrupted
+              help       Show this message
+
+            Library source (default: library.dat when present, otherwise the bundled books tree):
+              --books <location>   Load a JSON books tree from a directory, a .zip or .jar, or classpath:<dir>
+              --snapshot <file>    Load a library.dat snapshot
+              --import <file>      Import NDJSON book and chapter records (.ndjson, .jsonl, .gz or .zip)
+
+            Options:
+              --keyword <text>     Search titles and descriptions
+              --genre <genre>      Keep books with this genre; repeat to accept several
+              --status <status>    Keep books with this status; repeat to accept several
+              --type <type>        Keep books of this type: Novel or Roman
+              --limit <n>          List at most n books
+              --text               Include chapter text in exports
+              --format json|snapshot|ndjson|epub
+              --threads <n>        Books exported at once (default: one per processor)
+              --top <n>            Number of books listed by footprint (default 10)
+              --host <address>     Address serve listens on (default 127.0.0.1)
+              --port <n>           Port serve listens on (default 8080, 0 for any free port)
+              --watch              Let serve pick up new and changed files of a --books directory
+              --output <file>      Write the result to a file instead of standard output
+            """;
+
+    private final PrintStream out;
+    private final PrintStream err;
+
+    /**
+     * Options given after the command name
+     */
+    private static final class Options {
+        private String booksRoot;
+        private File snapshot;
+        private File importFile;
+        private File output;
+        private String keyword;
+        private final List<String> genres = new ArrayList<>();
+        private final List<String> statuses = new ArrayList<>();
+        private String type;
+        private int limit = Integer.MAX_VALUE;
+        private boolean includeText;
+        private String format = "json";
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int top = 10;
+        private String host = "127.0.0.1";
+        private int port = 8080;
+        private boolean watch;
+    }
+
+    /**
+     * A library together with how it was obtained
+     *
+     * @param library The loaded library
+     * @param source Description of where it was loaded from
+     * @param loadNanos Time spent loading
+     * @param loadErrors Files that could not be loaded from a books tree
+     * @param booksRoot The books tree it was loaded from, or null for a snapshot or an import
+     */
+    private record LoadedLibrary(Library library, String source, long loadNanos,
+                                 List<CatalogueValidator.Issue> loadErrors, Path booksRoot) {
+    }
+
+    /**
+     * Creates a command line front end writing to the given streams
+     *
+     * @param out Receives the JSON result unless an output file is given
+     * @param err Receives usage and error messages
+     */
+    public CommandLine(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Checks whether an argument names a command line command, as opposed to starting the user interface
+     *
+     * @param argument The first program argument
+     * @return True if the argument is a command
+     */
+    public static boolean isCommand(String argument) {
+        return COMMANDS.contains(argument) || argument.equals("--help") || argument.equals("-h");
+    }
+
+    /**
+     * Runs the command line front end and exits with its status
+     *
+     * @param args The command followed by its options
+     */
+    public static void main(String[] args) {
+        System.exit(new CommandLine(System.out, System.err).run(args));
+    }
+
+    /**
+     * Runs one command
+     *
+     * @param args The command followed by its options
+     * @return The exit status
+     */
+    public int run(String[] args) {
+        if (System.getProperty(Logger.LEVEL_PROPERTY) == null) {
+            Logger.setLevel(Logger.Level.WARN);
+        }
+        if (args.length == 0 || !isCommand(args[0])) {
+            err.print(USAGE);
+            return EXIT_USAGE;
+        }
+        String command = args[0];
+        if (command.equals("help") || command.startsWith("-")) {
+            out.print(USAGE);
+            return EXIT_OK;
+        }
+
+        Options options;
+        try {
+            options = parseOptions(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.print(USAGE);
+            return EXIT_USAGE;
+        }
+
+        try {
+            LoadedLibrary loaded = load(options, command.equals("validate"));
+            if (command.equals("export") && options.format.equals("snapshot")) {
+                return exportSnapshot(loaded, options);
+            }
+            if (command.equals("export") && options.format.equals("ndjson")) {
+                return exportRecords(loaded, options);
+            }
+            if (command.equals("export") && options.format.equals("epub")) {
+                return exportEpubs(loaded, options);
+            }
+            if (command.equals("serve")) {
+                return serve(loaded, options);
+            }
+            return write(options, json -> switch (command) {
+                case "search" -> search(loaded, options, json);
+                case "stats" -> stats(loaded, json);
+                case "validate" -> validate(loaded, json);
+                case "export" -> export(loaded, options, json);
+                case "footprint" -> footprint(loaded, options, json);
+                default -> throw new IllegalStateException("Unhandled command " + command);
+            });
+        } catch (FileOperationException | UncheckedIOException e) {
+            err.println("Error: " + e.getMessage());
+            return EXIT_FAILURE;
+        } finally {
+            Logger.flush();
+        }
+    }
+
+    private static Options parseOptions(String[] args) {
+        Options options = new Options();
+        for (int i = 1; i < args.length; i++) {
+            String option = args[i];
+            switch (option) {
+                case "--books" -> options.booksRoot = argument(args, ++i, option);
+                case "--snapshot" -> options.snapshot = new File(argument(args, ++i, option));
+                case "--import" -> options.importFile = new File(argument(args, ++i, option));
+                case "--output" -> options.output = new File(argument(args, ++i, option));
+                case "--keyword" -> options.keyword = argument(args, ++i, option);
+                case "--genre" -> options.genres.add(argument(args, ++i, option));
+                case "--status" -> options.statuses.add(argument(args, ++i, option));
+                case "--type" -> options.type = argument(args, ++i, option);
+                case "--limit" -> options.limit = positiveInt(argument(args, ++i, option), option);
+                case "--text" -> options.includeText = true;
+                case "--format" -> options.format = argument(args, ++i, option);
+                case "--threads" -> options.threads = positiveInt(argument(args, ++i, option), option);
+                case "--top" -> options.top = positiveInt(argument(args, ++i, option), option);
+                case "--host" -> options.host = argument(args, ++i, option);
+                case "--port" -> options.port = port(argument(args, ++i, option));
+                case "--watch" -> options.watch = true;
+                default -> throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        if ((options.booksRoot != null ? 1 : 0) + (options.snapshot != null ? 1 : 0)
+                + (options.importFile != null ? 1 : 0) > 1) {
+            throw new IllegalArgumentException("Only one of --books, --snapshot and --import can be used");
+        }
+        if (!Set.of("json", "snapshot", "ndjson", "epub").contains(options.format)) {
+            throw new IllegalArgumentException("Unknown format: " + options.format);
+        }
+        if ((options.format.equals("snapshot") || options.format.equals("epub")) && options.output == null) {
+            throw new IllegalArgumentException("--format " + options.format + " needs --output");
+        }
+        return options;
+    }
+
+    private static String argument(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[index];
+    }
+
+    private static int positiveInt(String value, String option) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(option + " needs a positive number, got " + value);
+    }
+
+    private static int port(String value) {
+        try {
+            int port = Integer.parseInt(value);
+            if (port >= 0 && port <= 65535) {
+                return port;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("--port needs a port number, got " + value);
+    }
+
+    /**
+     * Loads the library from the requested source, the same way the user interface picks one
+     */
+    private LoadedLibrary load(Options options, boolean collectErrors) throws FileOperationException {
+        FileManager fileManager = new FileManager();
+        long start = System.nanoTime();
+
+        if (options.importFile != null) {
+            return importRecords(options.importFile, collectErrors, start);
+        }
+
+        File snapshot = options.snapshot;
+        if (snapshot == null && options.booksRoot == null && new File("library.dat").exists()) {
+            snapshot = new File("library.dat");
+        }
+        if (snapshot != null) {
+            Library library = fileManager.loadLibrary(snapshot);
+            return new LoadedLibrary(library, snapshot.getPath(), System.nanoTime() - start, List.of(), null);
+        }
+
+        Path booksRoot = options.booksRoot != null
+                ? fileManager.resolveBooksRoot(options.booksRoot) : LibraryLoader.getDefaultBooksRoot();
+        if (!Files.isDirectory(booksRoot)) {
+            throw new FileOperationException("Books directory not found: " + booksRoot);
+        }
+        Library library = new Library();
+        List<CatalogueValidator.Issue> loadErrors = new ArrayList<>();
+        LibraryLoader loader = new LibraryLoader(new DataLoader());
+        if (collectErrors) {
+            loader.setErrorListener((file, error) -> loadErrors.add(new CatalogueValidator.Issue(
+                    CatalogueValidator.Severity.ERROR, "UNREADABLE_FILE", file.toString(), error.getMessage())));
+        }
+        IngestManifest manifest = IngestManifest.open(booksRoot);
+        loader.setManifest(manifest);
+        loader.loadBooks(booksRoot, (book, seriesProcessed, seriesTotal) -> library.addBook(book));
+        try {
+            manifest.save();
+        } catch (FileOperationException e) {
+            err.println("Warning: " + e.getMessage());
+        }
+        String source = options.booksRoot != null ? options.booksRoot
+                : booksRoot.getFileSystem() == FileSystems.getDefault() ? booksRoot.toString() : booksRoot.toUri().toString();
+        return new LoadedLibrary(library, source, System.nanoTime() - start, loadErrors, booksRoot);
+    }
+
+    /**
+     * Imports a record file into a new library
+     */
+    private LoadedLibrary importRecords(File file, boolean collectErrors, long start) throws FileOperationException {
+        if (!file.isFile()) {
+            throw new FileOperationException("Import file not found: " + file.getPath());
+        }
+        Library library = new Library();
+        List<CatalogueValidator.Issue> loadErrors = new ArrayList<>();
+        BulkImporter importer = new BulkImporter(new DataLoader(), library);
+        if (collectErrors) {
+            importer.setErrorListener((source, line, error) -> loadErrors.add(new CatalogueValidator.Issue(
+                    CatalogueValidator.Severity.ERROR, "UNREADABLE_RECORD", source + ":" + line, error.getMessage())));
+        }
+        importer.importFile(file.toPath());
+        return new LoadedLibrary(library, file.getPath(), System.nanoTime() - start, loadErrors, null);
+    }
+
+    /**
+     * Command writing its result as one JSON document
+     */
+    @FunctionalInterface
+    private interface JsonCommand {
+        int write(JsonWriter json);
+    }
+
+    /**
+     * Runs a command against the output file or standard output, followed by a line break
+     *
+     * @return The exit status of the command
+     */
+    private int write(Options options, JsonCommand command) throws FileOperationException {
+        int status;
+        if (options.output == null) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            try {
+                status = command.write(new JsonWriter(writer));
+                writer.write(System.lineSeparator());
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            try (Writer writer = Files.newBufferedWriter(options.output.toPath(), StandardCharsets.UTF_8)) {
+                status = command.write(new JsonWriter(writer));
+                writer.write(System.lineSeparator());
+            } catch (IOException e) {
+                throw new FileOperationException("Failed to write " + options.output.getPath() + ": "
+                        + e.getMessage(), e);
+            }
+            err.println("Written to " + options.output.getAbsolutePath());
+        }
+        return status;
+    }
+
+    private int search(LoadedLibrary loaded, Options options, JsonWriter json) {
+        Search search = new Search(loaded.library());
+        search.setKeyword(options.keyword);
+        options.genres.forEach(search::addGenre);
+        options.statuses.forEach(search::addStatus);
+        search.setType(options.type);
+
+        long start = System.nanoTime();
+        List<Book> results = search.advancedSearch();
+        long searchNanos = System.nanoTime() - start;
+
+        json.beginObject()
+                .name("source").value(loaded.source())
+                .name("loadMillis").value(loaded.loadNanos() / NANOS_PER_MILLI)
+                .name("searchMillis").value(searchNanos / NANOS_PER_MILLI)
+                .name("hits").value(results.size())
+                .name("books");
+        BookJson.writeSummaries(json, results.subList(0, Math.min(options.limit, results.size())));
+        json.endObject();
+        return EXIT_OK;
+    }
+
+    private int stats(LoadedLibrary loaded, JsonWriter json) {
+        Map<String, Integer> byType = new TreeMap<>();
+        Map<String, Integer> byStatus = new TreeMap<>();
+        Map<String, Integer> byGenre = new TreeMap<>();
+        long chapters = 0;
+        long textChars = 0;
+        int booksWithoutChapters = 0;
+
+        List<Book> books = loaded.library().getCatalogue();
+        for (Book book : books) {
+            byType.merge(book.getType(), 1, Integer::sum);
+            byStatus.merge(String.valueOf(book.getStatus()), 1, Integer::sum);
+            for (String genre : book.getGenres()) {
+                byGenre.merge(genre, 1, Integer::sum);
+            }
+            if (book.getChapters().isEmpty()) {
+                booksWithoutChapters++;
+            }
+            for (Chapter chapter : book.getChapters()) {
+                chapters++;
+                if (chapter instanceof TextChapter textChapter && textChapter.getContentText() != null) {
+                    textChars += textChapter.getContentText().length();
+                }
+            }
+        }
+
+        json.beginObject()
+                .name("source").value(loaded.source())
+                .name("loadMillis").value(loaded.loadNanos() / NANOS_PER_MILLI)
+                .name("books").value(books.size())
+                .name("chapters").value(chapters)
+                .name("chapterTextChars").value(textChars)
+                .name("booksWithoutChapters").value(booksWithoutChapters);
+        writeCounts(json, "byType", byType);
+        writeCounts(json, "byStatus", byStatus);
+        writeCounts(json, "byGenre", byGenre);
+        json.endObject();
+        return EXIT_OK;
+    }
+
+    private static void writeCounts(JsonWriter json, String name, Map<String, Integer> counts) {
+        json.name(name).beginObject();
+        counts.forEach((key, count) -> json.name(key).value(count));
+        json.endObject();
+    }
+
+    private int validate(LoadedLibrary loaded, JsonWriter json) {
+        List<CatalogueValidator.Issue> issues = new ArrayList<>(loaded.loadErrors());
+        issues.addAll(new CatalogueValidator().validate(loaded.library()));
+        long errors = issues.stream().filter(issue -> issue.severity() == CatalogueValidator.Severity.ERROR).count();
+
+        json.beginObject()
+                .name("source").value(loaded.source())
+                .name("books").value(loaded.library().getTotalBooks())
+                .name("errors").value(errors)
+                .name("warnings").value(issues.size() - errors)
+                .name("issues").beginArray();
+        for (CatalogueValidator.Issue issue : issues) {
+            json.beginObject()
+                    .name("severity").value(issue.severity().name())
+                    .name("code").value(issue.code())
+                    .name("location").value(issue.location())
+                    .name("message").value(issue.message())
+                    .endObject();
+        }
+        json.endArray().endObject();
+        return errors > 0 ? EXIT_ISSUES : EXIT_OK;
+    }
+
+    private int export(LoadedLibrary loaded, Options options, JsonWriter json) {
+        List<Book> books = loaded.library().getCatalogue();
+        json.beginObject()
+                .name("source").value(loaded.source())
+                .name("books").beginArray();
+        for (Book book : books.subList(0, Math.min(options.limit, books.size()))) {
+            BookJson.writeBook(json, book, options.includeText);
+        }
+        json.endArray().endObject();
+        return EXIT_OK;
+    }
+
+    /**
+     * Streams the books as import records to the output file, or to standard output
+     */
+    private int exportRecords(LoadedLibrary loaded, Options options) throws FileOperationException {
+        List<Book> books = limit(loaded.library().getCatalogue(), options);
+        LibraryExporter exporter = new LibraryExporter(options.threads);
+        if (options.output == null) {
+            try {
+                exporter.exportRecords(books, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return EXIT_OK;
+        }
+        LibraryExporter.Result result = exporter.exportRecords(books, options.output.toPath());
+        err.println("Exported " + result.books() + " books and " + result.chapters() + " chapters to "
+                + options.output.getAbsolutePath());
+        return EXIT_OK;
+    }
+
+    private int exportEpubs(LoadedLibrary loaded, Options options) throws FileOperationException {
+        List<Book> books = limit(loaded.library().getCatalogue(), options);
+        LibraryExporter.Result result = new LibraryExporter(options.threads)
+                .exportEpubs(books, options.output.toPath());
+        err.println("Exported " + result.books() + " books as EPUB to " + options.output.getAbsolutePath()
+                + (result.failed() > 0 ? " (" + result.failed() + " failed)" : ""));
+        return result.failed() > 0 ? EXIT_FAILURE : EXIT_OK;
+    }
+
+    private static List<Book> limit(List<Book> books, Options options) {
+        return books.subList(0, Math.min(options.limit, books.size()));
+    }
+
+    private int exportSnapshot(LoadedLibrary loaded, Options options) throws FileOperationException {
+        new FileManager().saveLibrary(loaded.library(), options.output);
+        err.println("Saved " + loaded.library().getTotalBooks() + " books to " + options.output.getAbsolutePath());
+        return EXIT_OK;
+    }
+
+    /**
+     * Serves the library over HTTP and blocks until the process is interrupted
+     */
+    private int serve(LoadedLibrary loaded, Options options) throws FileOperationException {
+        LibraryWatcher watcher = null;
+        if (options.watch) {
+            if (loaded.booksRoot() == null) {
+                throw new FileOperationException("--watch needs a books directory, not " + loaded.source());
+            }
+            watcher = new LibraryWatcher(loaded.booksRoot(), loaded.library(), new DataLoader());
+            watcher.start();
+        }
+        LibraryHttpServer server;
+        try {
+            server = new LibraryHttpServer(loaded.library(), new InetSocketAddress(options.host, options.port));
+        } catch (IOException e) {
+            throw new FileOperationException("Cannot listen on " + options.host + ":" + options.port + ": "
+                    + e.getMessage(), e);
+        }
+        server.start();
+        err.println("Serving " + loaded.library().getTotalBooks() + " books from " + loaded.source()
+                + " on http://" + options.host + ":" + server.getPort() + "/");
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        LibraryWatcher activeWatcher = watcher;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            if (activeWatcher != null) {
+                activeWatcher.close();
+            }
+            stopped.countDown();
+        }, "http-shutdown"));
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            server.stop();
+            if (activeWatcher != null) {
+                activeWatcher.close();
+            }
+        }
+        return EXIT_OK;
+    }
+
+    private int footprint(LoadedLibrary loaded, Options options, JsonWriter json) {
+        FootprintEstimator.Report report = new FootprintEstimator().estimate(loaded.library());
+        json.beginObject()
+                .name("source").value(loaded.source())
+                .name("totalBytes").value(report.totalBytes())
+                .name("bytesByCategory").beginObject();
+        report.bytesByCategory().forEach((category, bytes) -> json.name(category.name()).value(bytes));
+        json.endObject()
+                .name("stringCount").value(report.stringCount())
+                .name("stringBytes").value(report.stringBytes())
+                .name("duplicateStringBytes").value(report.duplicateStringBytes())
+                .name("duplicateStringRatio").value(report.duplicateStringRatio())
+                .name("largestBooks").beginArray();
+        for (FootprintEstimator.BookFootprint book : report.books().subList(0, Math.min(options.top, report.books().size()))) {
+            json.beginObject()
+                    .name("id").value(book.bookId())
+                    .name("title").value(book.title())
+                    .name("chapters").value(book.chapters())
+                    .name("bytes").value(book.bytes())
+                    .name("chapterTextBytes").value(book.chapterTextBytes())
+                    .endObject();
+        }
+        json.endArray().endObject();
+        return EXIT_OK;
+    }
+}
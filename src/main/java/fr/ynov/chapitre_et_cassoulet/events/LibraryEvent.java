@@ -0,0 +1,81 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.events;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Chapter;
+
+/**
+ * Change made to a {@link main.java.fr.ynov.chapitre_et_cassoulet.service.Library}, published by its
+ * {@link LibraryEventPublisher} in the order the changes were made
+ */
+public sealed interface LibraryEvent {
+
+    /**
+     * Gets the book the change applies to
+     *
+     * @return The book, or null for {@link Resync}
+     */
+    Book book();
+
+    /**
+     * A book was added to the catalogue
+     *
+     * @param book The new book
+     */
+    record BookAdded(Book book) implements LibraryEvent {
+    }
+
+    /**
+     * A chapter was added to a book of the catalogue
+     *
+     * @param book The book
+     * @param chapter The new chapter
+     */
+    record ChapterAdded(Book book, Chapter chapter) implements LibraryEvent {
+    }
+
+    /**
+     * A chapter of a book was replaced by a new version with the same number
+     *
+     * @param book The book
+     * @param chapter The new chapter
+     * @param previous The chapter it replaced
+     */
+    record ChapterReplaced(Book book, Chapter chapter, Chapter previous) implements LibraryEvent {
+    }
+
+    /**
+     * The descriptive fields of a book, such as its title, status or genres, changed
+     *
+     * @param book The book, already holding the new values
+     */
+    record BookUpdated(Book book) implements LibraryEvent {
+    }
+
+    /**
+     * The status of a book changed
+     *
+     * @param book The book, already holding the new status
+     * @param previousStatus The status before the change
+     */
+    record StatusChanged(Book book, String previousStatus) implements LibraryEvent {
+    }
+
+    /**
+     * A book was removed from the catalogue
+     *
+     * @param book The removed book
+     */
+    record BookRemoved(Book book) implements LibraryEvent {
+    }
+
+    /**
+     * Events were discarded because the subscriber fell too far behind; it should rebuild whatever it
+     * derives from the library. Events that follow may describe changes the rebuild already saw.
+     */
+    record Resync() implements LibraryEvent {
+        @Override
+        public Book book() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.events;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes library changes to any number of {@link Flow.Subscriber}s, in batches.
+ * <p>
+ * Each subscriber has its own executor, on which every signal it receives runs one at a time, and its
+ * own bounded buffer. One {@code request(n)} allows {@code n} more batches; a batch holds every
+ * buffered event up to the batch size, so a slow subscriber receives fewer, larger batches.
+ * Publishing never blocks the thread changing the library: when a buffer is full, the buffered
+ * events are dropped and replaced by a single {@link LibraryEvent.Resync}, telling that subscriber
+ * to rebuild from the library instead.
+ */
+public class LibraryEventPublisher implements Flow.Publisher<List<LibraryEvent>> {
+    /** Default number of events a subscriber may fall behind before it is asked to resync */
+    public static final int DEFAULT_BUFFER_CAPACITY = 8192;
+    /** Default largest number of events delivered in one batch */
+    public static final int DEFAULT_MAX_BATCH = 512;
+
+    private static final Logger LOG = Logger.getLogger(LibraryEventPublisher.class);
+    private static final int MAX_BATCHES_PER_RUN = 4;
+
+    private final List<EventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Subscribes with the default buffer and batch sizes, delivering on a virtual thread
+     *
+     * @param subscriber The subscriber
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<LibraryEvent>> subscriber) {
+        subscribe(subscriber, runnable -> Thread.ofVirtual().name("library-events").start(runnable),
+                DEFAULT_BUFFER_CAPACITY, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * Subscribes with the default buffer and batch sizes
+     *
+     * @param subscriber The subscriber
+     * @param executor Runs the subscriber's signals, such as {@code SwingUtilities::invokeLater} for a view
+     */
+    public void subscribe(Flow.Subscriber<? super List<LibraryEvent>> subscriber, Executor executor) {
+        subscribe(subscriber, executor, DEFAULT_BUFFER_CAPACITY, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * Subscribes
+     *
+     * @param subscriber The subscriber
+     * @param executor Runs the subscriber's signals
+     * @param bufferCapacity Number of events the subscriber may fall behind before it is asked to resync
+     * @param maxBatch Largest number of events delivered in one batch
+     */
+    public void subscribe(Flow.Subscriber<? super List<LibraryEvent>> subscriber, Executor executor,
+                          int bufferCapacity, int maxBatch) {
+        if (bufferCapacity <= 0 || maxBatch <= 0) {
+            throw new IllegalArgumentException("Buffer capacity and batch size must be positive");
+        }
+        EventSubscription subscription = new EventSubscription(subscriber, executor, bufferCapacity, maxBatch);
+        if (closed) {
+            subscription.done = true;
+        } else {
+            subscriptions.add(subscription);
+        }
+        subscription.signal();
+    }
+
+    /**
+     * Publishes one event to every subscriber
+     *
+     * @param event The change
+     */
+    public void publish(LibraryEvent event) {
+        for (EventSubscription subscription : subscriptions) {
+            subscription.offer(event);
+            subscription.signal();
+        }
+    }
+
+    /**
+     * Publishes several events to every subscriber, waking each subscriber once
+     *
+     * @param events The changes, in order
+     */
+    public void publishAll(Collection<? extends LibraryEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        for (EventSubscription subscription : subscriptions) {
+            for (LibraryEvent event : events) {
+                subscription.offer(event);
+            }
+            subscription.signal();
+        }
+    }
+
+    /**
+     * Checks whether anyone listens, so that callers can skip building events nobody receives
+     *
+     * @return True if at least one subscription is active
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Completes every subscription once its buffered events are delivered; later subscribers complete at once
+     */
+    public void close() {
+        closed = true;
+        for (EventSubscription subscription : subscriptions) {
+            subscription.done = true;
+            subscription.signal();
+        }
+        subscriptions.clear();
+    }
+
+    /**
+     * Buffer and delivery loop of one subscriber. Signals are serialized by the work-in-progress
+     * counter: only the thread that raises it from zero schedules a drain, and the drain keeps going
+     * until it has accounted for every signal raised meanwhile.
+     */
+    private final class EventSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super List<LibraryEvent>> subscriber;
+        private final Executor executor;
+        private final int bufferCapacity;
+        private final int maxBatch;
+        private final Queue<LibraryEvent> buffer = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger buffered = new AtomicInteger();
+        private final AtomicBoolean overflowed = new AtomicBoolean();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger workInProgress = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private volatile Throwable invalidRequest;
+        private boolean subscribed;
+        private boolean resyncPending;
+        private boolean terminated;
+
+        EventSubscription(Flow.Subscriber<? super List<LibraryEvent>> subscriber, Executor executor,
+                          int bufferCapacity, int maxBatch) {
+            this.subscriber = subscriber;
+            this.executor = executor;
+            this.bufferCapacity = bufferCapacity;
+            this.maxBatch = maxBatch;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested " + n + " batches; must be positive");
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void offer(LibraryEvent event) {
+            if (buffered.incrementAndGet() > bufferCapacity) {
+                buffered.decrementAndGet();
+                overflowed.set(true);
+                return;
+            }
+            buffer.offer(event);
+        }
+
+        void signal() {
+            if (workInProgress.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            int batches = 0;
+            while (true) {
+                if (!subscribed) {
+                    subscribed = true;
+                    if (!deliver(() -> subscriber.onSubscribe(this))) {
+                        return;
+                    }
+                }
+                if (terminated || cancelled) {
+                    discardBuffer();
+                    return;
+                }
+                if (invalidRequest != null) {
+                    terminate(invalidRequest);
+                    return;
+                }
+                if (overflowed.getAndSet(false)) {
+                    discardBuffer();
+                    resyncPending = true;
+                }
+
+                while (demand.get() > 0 && (resyncPending || !buffer.isEmpty())) {
+                    if (batches == MAX_BATCHES_PER_RUN) {
+                        // Let other tasks of a shared executor, such as the Event Dispatch Thread, run in between
+                        executor.execute(this::drain);
+                        return;
+                    }
+                    List<LibraryEvent> batch = nextBatch();
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    batches++;
+                    if (!deliver(() -> subscriber.onNext(batch))) {
+                        return;
+                    }
+                }
+
+                if (done && buffer.isEmpty() && !resyncPending) {
+                    terminate(null);
+                    return;
+                }
+                missed = workInProgress.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private List<LibraryEvent> nextBatch() {
+            List<LibraryEvent> batch = new ArrayList<>(Math.min(maxBatch, buffered.get() + 1));
+            if (resyncPending) {
+                resyncPending = false;
+                batch.add(new LibraryEvent.Resync());
+            }
+            LibraryEvent event;
+            while (batch.size() < maxBatch && (event = buffer.poll()) != null) {
+                buffered.decrementAndGet();
+                batch.add(event);
+            }
+            return batch;
+        }
+
+        private void discardBuffer() {
+            while (buffer.poll() != null) {
+                buffered.decrementAndGet();
+            }
+        }
+
+        /**
+         * Runs a subscriber callback; a subscriber that throws is cancelled, as it broke the Flow contract
+         *
+         * @return True if the subscription is still active
+         */
+        private boolean deliver(Runnable signal) {
+            try {
+                signal.run();
+                return true;
+            } catch (RuntimeException e) {
+                LOG.error("Library event subscriber " + subscriber + " failed; cancelling it", e);
+                cancel();
+                terminated = true;
+                discardBuffer();
+                return false;
+            }
+        }
+
+        private void terminate(Throwable error) {
+            terminated = true;
+            subscriptions.remove(this);
+            discardBuffer();
+            if (error != null) {
+                deliver(() -> subscriber.onError(error));
+            } else {
+                deliver(subscriber::onComplete);
+            }
+        }
+    }
+}
@@ -1,21 +1,41 @@
 package main.java.fr.ynov.chapitre_et_cassoulet.gui;
 
+import main.java.fr.ynov.chapitre_et_cassoulet.events.LibraryEvent;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
 import main.java.fr.ynov.chapitre_et_cassoulet.service.Library;
-import main.java.fr.ynov.chapitre_et_cassoulet.service.Search;
 import main.java.fr.ynov.chapitre_et_cassoulet.service.FileManager;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.FootprintEstimator;
 import main.java.fr.ynov.chapitre_et_cassoulet.gui.panels.BookCataloguePanel;
 import main.java.fr.ynov.chapitre_et_cassoulet.gui.panels.BookDetailsPanel;
 import main.java.fr.ynov.chapitre_et_cassoulet.gui.panels.BookSearchPanel;
+import main.java.fr.ynov.chapitre_et_cassoulet.gui.panels.PerformanceHudPanel;
 import main.java.fr.ynov.chapitre_et_cassoulet.gui.utils.BookUIUtils;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
 
+import javax.swing.AbstractAction;
+import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.JSplitPane;
 import javax.swing.JLabel;
+import javax.swing.JProgressBar;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.border.EmptyBorder;
 import java.awt.BorderLayout;
+import java.awt.Cursor;
 import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Main graphical user interface for the library application.
@@ -24,15 +44,22 @@ import java.io.Serial;
 public class Interface extends JFrame {
     @Serial
     private static final long serialVersionUID = 1L;
+    private static final int FOOTPRINT_TOOLTIP_BOOKS = 5;
+    private static final String HUD_PROPERTY = "cassoulet.hud";
+    private static final String TOGGLE_HUD_ACTION = "togglePerformanceHud";
 
     private final Library library;
-    private final Search searchService;
     private final FileManager fileManager;
 
     private JPanel mainPanel;
     private BookSearchPanel searchPanel;
     private BookCataloguePanel cataloguePanel;
     private BookDetailsPanel detailsPanel;
+    private JLabel totalBooksLabel;
+    private JProgressBar loadingProgress;
+    private JLabel footprintLabel;
+    private SwingWorker<FootprintEstimator.Report, Void> footprintWorker;
+    private PerformanceHudPanel performanceHud;
 
     /**
      * Constructor for the Interface
@@ -41,7 +68,6 @@ public class Interface extends JFrame {
      */
     public Interface(Library library) {
         this.library = library;
-        this.searchService = new Search(library);
         this.fileManager = new FileManager();
 
         setTitle("Chapitre et Cassoulet - Library Application");
@@ -61,7 +87,7 @@ public class Interface extends JFrame {
         mainPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
 
         searchPanel = new BookSearchPanel(library,
-                e -> BookUIUtils.performSearch(searchPanel, cataloguePanel, searchService),
+                e -> BookUIUtils.performSearch(searchPanel, cataloguePanel, library),
                 e -> BookUIUtils.resetSearch(searchPanel, cataloguePanel, library));
 
         mainPanel.add(searchPanel, BorderLayout.NORTH);
@@ -84,16 +110,216 @@ public class Interface extends JFrame {
         mainPanel.add(splitPane, BorderLayout.CENTER);
 
         JPanel statusBar = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        statusBar.add(new JLabel("Total books: " + library.getTotalBooks()));
+        totalBooksLabel = new JLabel("Total books: " + library.getTotalBooks());
+        statusBar.add(totalBooksLabel);
+
+        loadingProgress = new JProgressBar(0, 100);
+        loadingProgress.setStringPainted(true);
+        loadingProgress.setString("Loading books...");
+        loadingProgress.setIndeterminate(true);
+        statusBar.add(loadingProgress);
+
+        footprintLabel = new JLabel();
+        footprintLabel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        footprintLabel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                updateFootprint();
+            }
+        });
+        statusBar.add(footprintLabel);
+
+        performanceHud = new PerformanceHudPanel();
+        performanceHud.setVisible(false);
+        statusBar.add(performanceHud);
         mainPanel.add(statusBar, BorderLayout.SOUTH);
 
+        mainPanel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
+                KeyStroke.getKeyStroke(KeyEvent.VK_P, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK),
+                TOGGLE_HUD_ACTION);
+        mainPanel.getActionMap().put(TOGGLE_HUD_ACTION, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                setPerformanceHudVisible(!performanceHud.isVisible());
+            }
+        });
+        setPerformanceHudVisible(Boolean.getBoolean(HUD_PROPERTY));
+
         setContentPane(mainPanel);
     }
 
+    /**
+     * Shows or hides the live performance figures in the status bar.
+     * They are only sampled while shown.
+     *
+     * @param visible True to show the figures
+     */
+    public void setPerformanceHudVisible(boolean visible) {
+        if (visible) {
+            performanceHud.start();
+        } else {
+            performanceHud.stop();
+        }
+        performanceHud.setVisible(visible);
+    }
+
     /**
      * Loads all books from the library into the UI
      */
     private void loadData() {
         cataloguePanel.updateBooks(library.getCatalogue());
+        library.getEvents().subscribe(new LibraryChangeSubscriber(), SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Publishes a batch of newly added books to the UI.
+     * Books are appended directly when no filter is active; otherwise only the ones
+     * matching the current filters are appended.
+     *
+     * @param books The books that were just added to the library
+     */
+    private void booksAdded(List<Book> books) {
+        searchPanel.addFilterOptions(books);
+        if (searchPanel.hasActiveFilters()) {
+            BookUIUtils.appendMatchingBooks(searchPanel, cataloguePanel, library, books);
+        } else {
+            cataloguePanel.appendBooks(books);
+        }
+    }
+
+    /**
+     * Applies a batch of library changes to the catalogue table, row by row.
+     * Consecutive added books are appended together; a resync reloads the whole table.
+     *
+     * @param events The changes, in the order they were made
+     */
+    private void applyChanges(List<LibraryEvent> events) {
+        List<Book> added = new ArrayList<>();
+        boolean rowsChanged = false;
+        int selectedBookId = cataloguePanel.getSelectedBookId();
+        boolean selectedBookChanged = false;
+
+        for (LibraryEvent event : events) {
+            if (event instanceof LibraryEvent.BookAdded bookAdded) {
+                added.add(bookAdded.book());
+                continue;
+            }
+            if (!added.isEmpty()) {
+                booksAdded(added);
+                added = new ArrayList<>();
+            }
+            if (event instanceof LibraryEvent.Resync) {
+                searchPanel.addFilterOptions(library.getCatalogue());
+                cataloguePanel.updateBooks(library.getCatalogue());
+                rowsChanged = true;
+                selectedBookChanged = true;
+                continue;
+            }
+
+            Book book = event.book();
+            if (event instanceof LibraryEvent.BookRemoved) {
+                cataloguePanel.removeBook(book.getId());
+            } else {
+                searchPanel.addFilterOptions(List.of(book));
+                cataloguePanel.refreshBook(book);
+            }
+            rowsChanged = true;
+            selectedBookChanged |= book.getId() == selectedBookId;
+        }
+        if (!added.isEmpty()) {
+            booksAdded(added);
+        }
+
+        if (rowsChanged && searchPanel.hasActiveFilters()) {
+            searchPanel.scheduleSearch();
+        }
+        if (selectedBookChanged) {
+            BookUIUtils.displayBookDetails(this, cataloguePanel, detailsPanel, library);
+        }
+        totalBooksLabel.setText("Total books: " + library.getTotalBooks());
+    }
+
+    /**
+     * Receives library changes on the Event Dispatch Thread
+     */
+    private final class LibraryChangeSubscriber implements Flow.Subscriber<List<LibraryEvent>> {
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<LibraryEvent> events) {
+            applyChanges(events);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            Logger.getLogger(Interface.class).error("Library change events failed", throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            // The library stopped publishing; the table keeps its last state
+        }
+    }
+
+    /**
+     * Updates the loading indicator
+     *
+     * @param percent Loading progress between 0 and 100
+     */
+    public void setLoadingProgress(int percent) {
+        if (percent > 0) {
+            loadingProgress.setIndeterminate(false);
+            loadingProgress.setValue(percent);
+            loadingProgress.setString("Loading books... " + percent + "%");
+        }
+    }
+
+    /**
+     * Hides the loading indicator once the library is fully loaded
+     */
+    public void loadingFinished() {
+        loadingProgress.setVisible(false);
+        totalBooksLabel.setText("Total books: " + library.getTotalBooks());
+        updateFootprint();
+    }
+
+    /**
+     * Estimates the library footprint on a background worker and shows it in the status bar.
+     * The tooltip lists the largest books; clicking the label refreshes the estimate.
+     */
+    private void updateFootprint() {
+        if (footprintWorker != null && !footprintWorker.isDone()) {
+            return;
+        }
+        footprintLabel.setText("Library memory: estimating...");
+        footprintWorker = new SwingWorker<>() {
+            @Override
+            protected FootprintEstimator.Report doInBackground() {
+                return new FootprintEstimator().estimate(library);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    FootprintEstimator.Report report = get();
+                    footprintLabel.setText(String.format("Library memory: ~%s (duplicate strings %.0f%%)",
+                            FootprintEstimator.formatBytes(report.totalBytes()),
+                            report.duplicateStringRatio() * 100));
+                    footprintLabel.setToolTipText("<html><pre>" + escapeHtml(report.format(FOOTPRINT_TOOLTIP_BOOKS))
+                            + "</pre>Click to refresh</html>");
+                } catch (InterruptedException | ExecutionException e) {
+                    footprintLabel.setText("Library memory: unavailable");
+                    Logger.getLogger(Interface.class).warn("Footprint estimate failed: " + e.getMessage());
+                }
+            }
+        };
+        footprintWorker.execute();
+    }
+
+    private static String escapeHtml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
     }
 }
\ No newline at end of file
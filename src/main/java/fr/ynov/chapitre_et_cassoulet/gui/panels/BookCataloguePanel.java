@@ -1,5 +1,7 @@
 package main.java.fr.ynov.chapitre_et_cassoulet.gui.panels;
 
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
 import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
 
 import javax.swing.BorderFactory;
@@ -8,13 +10,113 @@ import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
 import javax.swing.event.ListSelectionListener;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 import java.awt.BorderLayout;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class BookCataloguePanel extends JPanel {
+    private static final LatencyHistogram UPDATE_TIME = MetricsRegistry.getInstance().histogram("ui.updateBooks");
+    private static final LatencyHistogram APPEND_TIME = MetricsRegistry.getInstance().histogram("ui.appendBooks");
+
     private JTable bookTable;
-    private DefaultTableModel tableModel;
+    private BookTableModel tableModel;
+
+    /**
+     * One row of the table: the book's values at the time it was added or last refreshed
+     */
+    private record BookRow(int id, String title, String type, String status, int chapters) {
+        static BookRow of(Book book) {
+            return new BookRow(book.getId(), book.getTitle(), book.getClass().getSimpleName(), book.getStatus(),
+                    book.getChapters().size());
+        }
+    }
+
+    /**
+     * Read-only table model over the displayed books, indexed by book ID so that a change to one book
+     * finds its row without scanning the table
+     */
+    private static final class BookTableModel extends AbstractTableModel {
+        private static final String[] COLUMN_NAMES = {"ID", "Title", "Type", "Status", "Chapters"};
+
+        private final List<BookRow> rows = new ArrayList<>();
+        /** Row of each book ID; with duplicate IDs, the first row holding it */
+        private final Map<Integer, Integer> rowsById = new HashMap<>();
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 || column == 4 ? Integer.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            BookRow book = rows.get(row);
+            return switch (column) {
+                case 0 -> book.id();
+                case 1 -> book.title();
+                case 2 -> book.type();
+                case 3 -> book.status();
+                default -> book.chapters();
+            };
+        }
+
+        int getBookId(int row) {
+            return rows.get(row).id();
+        }
+
+        void clear() {
+            rows.clear();
+            rowsById.clear();
+        }
+
+        void append(Book book) {
+            rowsById.putIfAbsent(book.getId(), rows.size());
+            rows.add(BookRow.of(book));
+        }
+
+        int findRow(int bookId) {
+            return rowsById.getOrDefault(bookId, -1);
+        }
+
+        void update(int row, Book book) {
+            rows.set(row, BookRow.of(book));
+            fireTableRowsUpdated(row, row);
+        }
+
+        /**
+         * Removes a row and shifts the index of the rows after it, which is linear but only happens on removal
+         */
+        void remove(int row) {
+            int bookId = rows.remove(row).id();
+            rowsById.remove(bookId);
+            for (int next = row; next < rows.size(); next++) {
+                int id = rows.get(next).id();
+                if (id == bookId) {
+                    rowsById.putIfAbsent(id, next);
+                } else if (rowsById.get(id) == next + 1) {
+                    rowsById.put(id, next);
+                }
+            }
+            fireTableRowsDeleted(row, row);
+        }
+    }
 
     /**
      * Constructor for the catalogue panel
@@ -25,13 +127,7 @@ public class BookCataloguePanel extends JPanel {
         setLayout(new BorderLayout());
         setBorder(BorderFactory.createTitledBorder("Book Catalogue"));
 
-        String[] columnNames = {"ID", "Title", "Type", "Status", "Chapters"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        tableModel = new BookTableModel();
 
         bookTable = new JTable(tableModel);
         bookTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -47,15 +143,55 @@ public class BookCataloguePanel extends JPanel {
      * @param books List of books to display
      */
     public void updateBooks(List<Book> books) {
-        tableModel.setRowCount(0);
+        long start = System.nanoTime();
+        tableModel.clear();
+        for (Book book : books) {
+            tableModel.append(book);
+        }
+        tableModel.fireTableDataChanged();
+        UPDATE_TIME.recordSince(start);
+    }
+
+    /**
+     * Appends books to the end of the table, firing a single insertion event
+     *
+     * @param books List of books to append
+     */
+    public void appendBooks(List<Book> books) {
+        if (books.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int firstRow = tableModel.getRowCount();
         for (Book book : books) {
-            tableModel.addRow(new Object[]{
-                    book.getId(),
-                    book.getTitle(),
-                    book.getClass().getSimpleName(),
-                    book.getStatus(),
-                    book.getChapters().size()
-            });
+            tableModel.append(book);
+        }
+        tableModel.fireTableRowsInserted(firstRow, tableModel.getRowCount() - 1);
+        APPEND_TIME.recordSince(start);
+    }
+
+    /**
+     * Shows the current title, status and chapter count of a book already in the table
+     *
+     * @param book The book that changed
+     */
+    public void refreshBook(Book book) {
+        int row = tableModel.findRow(book.getId());
+        if (row != -1) {
+            tableModel.update(row, book);
+        }
+    }
+
+    /**
+     * Removes a book from the table
+     *
+     * @param bookId The ID of the book to remove
+     */
+    public void removeBook(int bookId) {
+        int row = tableModel.findRow(bookId);
+        if (row != -1) {
+            tableModel.remove(row);
         }
     }
 
@@ -69,6 +205,6 @@ public class BookCataloguePanel extends JPanel {
         if (selectedRow == -1) {
             return -1;
         }
-        return (int) tableModel.getValueAt(selectedRow, 0);
+        return tableModel.getBookId(selectedRow);
     }
 }
\ No newline at end of file
@@ -1,9 +1,13 @@
 package main.java.fr.ynov.chapitre_et_cassoulet.gui.panels;
 
+import main.java.fr.ynov.chapitre_et_cassoulet.gui.utils.CoverImageService;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.CoverLoadedEvent;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
 import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
 import main.java.fr.ynov.chapitre_et_cassoulet.model.Chapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
 
-import javax.imageio.ImageIO;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -16,6 +20,8 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.border.Border;
 import javax.swing.border.CompoundBorder;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
@@ -24,11 +30,11 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Font;
-import java.awt.Image;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.Comparator;
-import java.util.List;
+import java.io.Serial;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 
 public class BookDetailsPanel extends JPanel {
@@ -40,7 +46,12 @@ public class BookDetailsPanel extends JPanel {
     private JTextArea bookDescription;
     private JList<String> genresList;
     private JList<String> chaptersList;
-    private List<Chapter> sortedChapters;
+    private ChapterListModel chaptersModel;
+    private Book currentBook;
+    private CompletableFuture<ImageIcon> pendingCover;
+
+    private static final String CHAPTER_PROTOTYPE = "Chapter 00000: A reasonably long chapter title";
+    private static final LatencyHistogram DISPLAY_TIME = MetricsRegistry.getInstance().histogram("ui.displayBook");
 
     private final Color PANEL_BACKGROUND = new Color(252, 252, 252);
     private final Color HEADER_COLOR = new Color(80, 80, 120);
@@ -204,16 +215,7 @@ public class BookDetailsPanel extends JPanel {
         genresList.setFont(new Font("Dialog", Font.PLAIN, 12));
         genresList.setVisibleRowCount(3);
         genresList.setBackground(Color.WHITE);
-        genresList.setCellRenderer(new DefaultListCellRenderer() {
-            @Override
-            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
-                                                          boolean isSelected, boolean cellHasFocus) {
-                JLabel label = (JLabel) super.getListCellRendererComponent(
-                        list, value, index, isSelected, cellHasFocus);
-                label.setBorder(new EmptyBorder(2, 5, 2, 5));
-                return label;
-            }
-        });
+        genresList.setCellRenderer(new PaddedCellRenderer(new EmptyBorder(2, 5, 2, 5)));
 
         JScrollPane genresScroll = new JScrollPane(genresList);
         genresScroll.setBorder(BorderFactory.createLineBorder(BORDER_COLOR));
@@ -238,20 +240,14 @@ public class BookDetailsPanel extends JPanel {
                 new EmptyBorder(8, 10, 8, 10)
         ));
 
-        chaptersList = new JList<>();
+        chaptersModel = new ChapterListModel();
+        chaptersList = new JList<>(chaptersModel);
         chaptersList.setFont(new Font("Dialog", Font.PLAIN, 12));
         chaptersList.setVisibleRowCount(6);
         chaptersList.setBackground(Color.WHITE);
-        chaptersList.setCellRenderer(new DefaultListCellRenderer() {
-            @Override
-            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
-                                                          boolean isSelected, boolean cellHasFocus) {
-                JLabel label = (JLabel) super.getListCellRendererComponent(
-                        list, value, index, isSelected, cellHasFocus);
-                label.setBorder(new EmptyBorder(3, 5, 3, 5));
-                return label;
-            }
-        });
+        chaptersList.setCellRenderer(new PaddedCellRenderer(new EmptyBorder(3, 5, 3, 5)));
+        // A prototype fixes the cell size, so the list never measures every row
+        chaptersList.setPrototypeCellValue(CHAPTER_PROTOTYPE);
 
         JScrollPane chaptersScroll = new JScrollPane(chaptersList);
         chaptersScroll.setBorder(BorderFactory.createLineBorder(BORDER_COLOR));
@@ -267,12 +263,9 @@ public class BookDetailsPanel extends JPanel {
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 2) {
                     int selectedChapterIndex = chaptersList.getSelectedIndex();
-                    if (selectedChapterIndex != -1 && sortedChapters != null) {
-                        Book currentBook = (Book) chaptersList.getClientProperty("currentBook");
-                        if (currentBook != null) {
-                            Chapter selectedChapter = sortedChapters.get(selectedChapterIndex);
-                            chapterClickListener.accept(currentBook, selectedChapter);
-                        }
+                    if (selectedChapterIndex != -1 && currentBook != null) {
+                        Chapter selectedChapter = chaptersModel.getChapterAt(selectedChapterIndex);
+                        chapterClickListener.accept(currentBook, selectedChapter);
                     }
                 }
             }
@@ -290,6 +283,9 @@ public class BookDetailsPanel extends JPanel {
             return;
         }
 
+        long start = System.nanoTime();
+        currentBook = book;
+
         bookTitle.setText("Title: " + book.getTitle());
         bookType.setText("Type: " + book.getType());
         bookAuthor.setText("Author/Artist: " + (book.getArtist() != null ? book.getArtist() : "Unknown"));
@@ -304,112 +300,101 @@ public class BookDetailsPanel extends JPanel {
         }
         genresList.setModel(genresModel);
 
-        sortedChapters = new java.util.ArrayList<>(book.getChapters());
-        sortedChapters.sort(Comparator.comparingInt(Chapter::getNumOrder));
-
-        DefaultListModel<String> chaptersModel = new DefaultListModel<>();
-        for (Chapter chapter : sortedChapters) {
-            chaptersModel.addElement("Chapter " + chapter.getNumOrder() + ": " + chapter.getTitle());
-        }
+        chaptersModel = new ChapterListModel(book.getSortedChapters());
         chaptersList.setModel(chaptersModel);
-
-        chaptersList.putClientProperty("currentBook", book);
+        DISPLAY_TIME.recordSince(start);
     }
 
     /**
-     * Loads and displays the cover image for a book
+     * Requests the cover image for a book from the cover service.
+     * The image is applied only if the book is still the one displayed when loading completes.
      *
      * @param book The book whose cover to display
      */
     private void loadBookCover(Book book) {
-        String coverPath = book.getCoverImagePath();
-
-        try {
-            String normalizedTitle = book.getTitle()
-                    .toLowerCase()
-                    .replaceAll("[\\s'']", "")
-                    .replaceAll("[àáâãäå]", "a")
-                    .replaceAll("[èéêë]", "e")
-                    .replaceAll("[ìíîï]", "i")
-                    .replaceAll("[òóôõö]", "o")
-                    .replaceAll("[ùúûü]", "u");
-
-            String bookType = book.getClass().getSimpleName().toLowerCase();
-            String typePlural = bookType.equals("roman") ? "romans" : bookType + "s";
-
-            String[] possiblePaths = {
-                    coverPath,
-
-                    String.format("resources/data/books/%s/%s/information/coverImage/cover-image.jpg",
-                            typePlural,
-                            normalizedTitle),
-
-                    String.format("src/resources/data/books/%s/%s/information/coverImage/cover-image.jpg",
-                            typePlural,
-                            normalizedTitle)
-            };
-
-            java.io.InputStream imageStream = null;
-
-            for (String path : possiblePaths) {
-                if (path == null || path.isEmpty()) continue;
-
-                imageStream = getClass().getClassLoader().getResourceAsStream(path);
-                if (imageStream != null) {
-                    break;
-                }
+        if (pendingCover != null) {
+            pendingCover.cancel(false);
+        }
 
-                java.io.File file = new java.io.File(path);
-                if (file.exists()) {
-                    imageStream = new java.io.FileInputStream(file);
-                    break;
-                }
+        bookCover.setIcon(null);
+        bookCover.setText("Loading...");
+
+        CoverLoadedEvent event = new CoverLoadedEvent();
+        event.begin();
+        Dimension coverSize = bookCover.getPreferredSize();
+        pendingCover = CoverImageService.getInstance().loadCover(book, coverSize.width, coverSize.height);
+        pendingCover.whenCompleteAsync((icon, error) -> {
+            if (currentBook != book || error instanceof CancellationException) {
+                return;
             }
-
-            if (imageStream != null) {
-                ImageIcon originalIcon = new ImageIcon(ImageIO.read(imageStream));
-                Image image = originalIcon.getImage();
-
-                int labelWidth = bookCover.getPreferredSize().width;
-                int labelHeight = bookCover.getPreferredSize().height;
-
-                double widthRatio = (double) labelWidth / originalIcon.getIconWidth();
-                double heightRatio = (double) labelHeight / originalIcon.getIconHeight();
-                double ratio = Math.min(widthRatio, heightRatio);
-
-                int width = (int) (originalIcon.getIconWidth() * ratio);
-                int height = (int) (originalIcon.getIconHeight() * ratio);
-
-                Image scaledImage = image.getScaledInstance(width, height, Image.SCALE_SMOOTH);
-                ImageIcon scaledIcon = new ImageIcon(scaledImage);
-
-                bookCover.setIcon(scaledIcon);
+            String outcome;
+            if (error != null) {
+                bookCover.setIcon(null);
+                bookCover.setText("Error");
+                Logger.getLogger(BookDetailsPanel.class)
+                        .warn("Error loading cover for " + book.getTitle() + ": " + error.getMessage());
+                outcome = "error";
+            } else if (icon != null) {
+                bookCover.setIcon(icon);
                 bookCover.setText("");
+                outcome = "loaded";
             } else {
                 bookCover.setIcon(null);
                 bookCover.setText("No Cover");
+                outcome = "missing";
             }
-        } catch (Exception e) {
-            bookCover.setIcon(null);
-            bookCover.setText("Error");
-            System.err.println("Error loading cover for " + book.getTitle() + ": " + e.getMessage());
-            e.printStackTrace();
-        }
+
+            if (event.shouldCommit()) {
+                event.setBook(book.getId(), book.getCoverPath() != null ? book.getCoverPath().toString() : null);
+                event.setOutcome(outcome);
+                if (icon != null) {
+                    event.setSize(icon.getIconWidth(), icon.getIconHeight());
+                }
+                event.commit();
+            }
+        }, SwingUtilities::invokeLater);
     }
 
     /**
      * Clears all details in the panel
      */
     public void clearDetails() {
+        currentBook = null;
+        if (pendingCover != null) {
+            pendingCover.cancel(false);
+            pendingCover = null;
+        }
         bookTitle.setText("Title: ");
         bookAuthor.setText("Author/Artist: ");
         bookType.setText("Type: ");
         bookStatus.setText("Status: ");
         bookDescription.setText("");
         genresList.setModel(new DefaultListModel<>());
-        chaptersList.setModel(new DefaultListModel<>());
+        chaptersModel = new ChapterListModel();
+        chaptersList.setModel(chaptersModel);
         bookCover.setIcon(null);
         bookCover.setText("No Cover");
-        sortedChapters = null;
+    }
+
+    /**
+     * List cell renderer that pads cells with a shared border instead of allocating one per paint
+     */
+    private static class PaddedCellRenderer extends DefaultListCellRenderer {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final Border padding;
+
+        PaddedCellRenderer(Border padding) {
+            this.padding = padding;
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            setBorder(padding);
+            return this;
+        }
     }
 }
\ No newline at end of file
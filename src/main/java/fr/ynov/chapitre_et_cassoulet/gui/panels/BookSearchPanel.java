@@ -1,33 +1,46 @@
 package main.java.fr.ynov.chapitre_et_cassoulet.gui.panels;
 
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
 import main.java.fr.ynov.chapitre_et_cassoulet.service.Library;
 
+import javax.swing.DefaultComboBoxModel;
 import javax.swing.JPanel;
 import javax.swing.JLabel;
 import javax.swing.JTextField;
 import javax.swing.JComboBox;
 import javax.swing.JButton;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.FlowLayout;
 import java.awt.Dimension;
 import java.awt.event.ActionListener;
+import java.util.Collection;
 
 public class BookSearchPanel extends JPanel {
+    private static final int SEARCH_DEBOUNCE_MS = 250;
+
     private JTextField searchField;
     private JComboBox<String> genreFilter;
     private JComboBox<String> statusFilter;
     private JComboBox<String> typeFilter;
     private JButton searchButton;
     private JButton resetButton;
+    private Timer searchDebounceTimer;
 
     /**
      * Constructor for the search panel
      *
-     * @param searchListener Action listener for the search button
+     * @param searchListener Action listener for the search button, also fired shortly after the
+     *                       user stops typing or changes a filter
      * @param resetListener Action listener for the reset button
      */
     public BookSearchPanel(Library library, ActionListener searchListener, ActionListener resetListener) {
         setLayout(new FlowLayout(FlowLayout.LEFT, 5, 5));
 
+        searchDebounceTimer = new Timer(SEARCH_DEBOUNCE_MS, searchListener);
+        searchDebounceTimer.setRepeats(false);
+
         add(new JLabel("Search:"));
         searchField = new JTextField(20);
         add(searchField);
@@ -65,6 +78,45 @@ public class BookSearchPanel extends JPanel {
         resetButton = new JButton("Reset");
         resetButton.addActionListener(resetListener);
         add(resetButton);
+
+        setupLiveSearch();
+    }
+
+    /**
+     * Restarts the debounce timer whenever the keyword or a filter changes,
+     * so that a search runs once the input has settled
+     */
+    private void setupLiveSearch() {
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchDebounceTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchDebounceTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchDebounceTimer.restart();
+            }
+        });
+
+        ActionListener filterChanged = e -> searchDebounceTimer.restart();
+        genreFilter.addActionListener(filterChanged);
+        statusFilter.addActionListener(filterChanged);
+        typeFilter.addActionListener(filterChanged);
+        searchButton.addActionListener(e -> searchDebounceTimer.stop());
+    }
+
+    /**
+     * Runs the search once the debounce delay has passed without another request,
+     * so that a burst of library changes triggers a single search
+     */
+    public void scheduleSearch() {
+        searchDebounceTimer.restart();
     }
 
     /**
@@ -103,6 +155,39 @@ public class BookSearchPanel extends JPanel {
         return typeFilter.getSelectedItem().toString();
     }
 
+    /**
+     * Checks whether any search criterion differs from its default
+     *
+     * @return true if a keyword or a filter is set
+     */
+    public boolean hasActiveFilters() {
+        return !searchField.getText().isEmpty()
+                || genreFilter.getSelectedIndex() > 0
+                || statusFilter.getSelectedIndex() > 0
+                || typeFilter.getSelectedIndex() > 0;
+    }
+
+    /**
+     * Adds the genres and statuses of newly loaded books to the filters
+     *
+     * @param books The books that were just loaded
+     */
+    public void addFilterOptions(Collection<Book> books) {
+        for (Book book : books) {
+            for (String genre : book.getGenres()) {
+                addOptionIfAbsent(genreFilter, genre);
+            }
+            addOptionIfAbsent(statusFilter, book.getStatus());
+        }
+    }
+
+    private void addOptionIfAbsent(JComboBox<String> comboBox, String option) {
+        if (option == null || ((DefaultComboBoxModel<String>) comboBox.getModel()).getIndexOf(option) != -1) {
+            return;
+        }
+        comboBox.addItem(option);
+    }
+
     /**
      * Resets all search filters
      */
@@ -111,5 +196,6 @@ public class BookSearchPanel extends JPanel {
         genreFilter.setSelectedIndex(0);
         statusFilter.setSelectedIndex(0);
         typeFilter.setSelectedIndex(0);
+        searchDebounceTimer.stop();
     }
 }
\ No newline at end of file
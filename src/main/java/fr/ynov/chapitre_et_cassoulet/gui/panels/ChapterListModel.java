@@ -0,0 +1,57 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.gui.panels;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Chapter;
+
+import javax.swing.AbstractListModel;
+import java.io.Serial;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * List model over a book's ordered chapters.
+ * Labels are formatted only when a row is actually rendered,
+ * so the cost of installing the model does not depend on the number of chapters.
+ */
+public class ChapterListModel extends AbstractListModel<String> {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final List<Chapter> chapters;
+
+    /**
+     * Creates an empty chapter model
+     */
+    public ChapterListModel() {
+        this(Collections.emptyList());
+    }
+
+    /**
+     * Creates a model over the given chapters
+     *
+     * @param chapters The chapters to display, already sorted by order number
+     */
+    public ChapterListModel(List<Chapter> chapters) {
+        this.chapters = chapters;
+    }
+
+    @Override
+    public int getSize() {
+        return chapters.size();
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        Chapter chapter = chapters.get(index);
+        return "Chapter " + chapter.getNumOrder() + ": " + chapter.getTitle();
+    }
+
+    /**
+     * Gets the chapter displayed at the given row
+     *
+     * @param index The row index
+     * @return The chapter at that row
+     */
+    public Chapter getChapterAt(int index) {
+        return chapters.get(index);
+    }
+}
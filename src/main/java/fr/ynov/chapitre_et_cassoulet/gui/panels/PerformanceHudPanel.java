@@ -0,0 +1,176 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.gui.panels;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.gui.utils.EdtWatchdog;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.Gauge;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.FootprintEstimator;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+import java.awt.FlowLayout;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Status bar readout of live performance figures: last search latency, ingest throughput,
+ * cover cache hit ratio, heap use, garbage collection pauses and Event Dispatch Thread stalls.
+ * <p>
+ * The figures are read and formatted on a background thread; the Swing timer only swaps the
+ * prepared strings into the label when they changed, so refreshing costs the EDT next to nothing.
+ */
+public class PerformanceHudPanel extends JPanel {
+    private static final int REFRESH_MILLIS = 1000;
+    private static final double BYTES_PER_MEGABYTE = 1024.0 * 1024.0;
+
+    private final JLabel label;
+    private final Timer repaintTimer;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private ScheduledExecutorService sampler;
+    private volatile String text = "Performance: sampling...";
+    private volatile String toolTip;
+    private String shownText;
+    private String shownToolTip;
+
+    private long lastSampleNanos;
+    private long lastBooks;
+    private long lastBytesRead;
+    private long lastGcCount;
+    private long lastGcMillis;
+
+    /**
+     * Constructor for the performance panel; call {@link #start()} to begin refreshing
+     */
+    public PerformanceHudPanel() {
+        super(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        label = new JLabel(text);
+        add(label);
+        repaintTimer = new Timer(REFRESH_MILLIS, e -> showLatest());
+    }
+
+    /**
+     * Starts sampling the metrics and refreshing the label
+     */
+    public void start() {
+        if (sampler != null) {
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "perf-hud");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sample, 0, REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+        repaintTimer.start();
+    }
+
+    /**
+     * Stops sampling; the label keeps its last figures
+     */
+    public void stop() {
+        repaintTimer.stop();
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+        }
+    }
+
+    /**
+     * Swaps in the latest prepared strings, on the EDT
+     */
+    private void showLatest() {
+        String latestText = text;
+        if (latestText != shownText) {
+            label.setText(latestText);
+            shownText = latestText;
+        }
+        String latestToolTip = toolTip;
+        if (latestToolTip != shownToolTip) {
+            label.setToolTipText(latestToolTip);
+            shownToolTip = latestToolTip;
+        }
+    }
+
+    /**
+     * Reads every figure and formats the label and tooltip, on the sampler thread
+     */
+    private void sample() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        long now = System.nanoTime();
+        double seconds = lastSampleNanos == 0 ? 0 : (now - lastSampleNanos) / 1e9;
+        lastSampleNanos = now;
+
+        LatencyHistogram search = metrics.histogram("ui.search");
+
+        Gauge booksGauge = metrics.findGauge("library.books");
+        long books = booksGauge == null ? 0 : (long) booksGauge.getValue();
+        long bytesRead = metrics.counter("ingest.bytesRead").getCount();
+        double booksPerSecond = seconds == 0 ? 0 : (books - lastBooks) / seconds;
+        double megabytesPerSecond = seconds == 0 ? 0 : (bytesRead - lastBytesRead) / BYTES_PER_MEGABYTE / seconds;
+        lastBooks = books;
+        lastBytesRead = bytesRead;
+
+        Gauge hitRatio = metrics.findGauge("cover.cache.hitRatio");
+
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+        long recentGcCount = gcCount - lastGcCount;
+        long recentGcMillis = gcMillis - lastGcMillis;
+        lastGcCount = gcCount;
+        lastGcMillis = gcMillis;
+
+        EdtWatchdog watchdog = EdtWatchdog.getInstalled();
+
+        StringBuilder line = new StringBuilder(160);
+        line.append(String.format(Locale.ROOT, "Search %.0f ms", search.getLastMillis()));
+        if (booksPerSecond > 0) {
+            line.append(String.format(Locale.ROOT, " | Ingest %d books, %.0f books/s, %.1f MB/s",
+                    books, booksPerSecond, megabytesPerSecond));
+        }
+        if (hitRatio != null) {
+            line.append(String.format(Locale.ROOT, " | Covers %.0f%% hits", hitRatio.getValue() * 100));
+        }
+        line.append(" | Heap ").append(FootprintEstimator.formatBytes(heap.getUsed()));
+        if (heap.getMax() > 0) {
+            line.append(" / ").append(FootprintEstimator.formatBytes(heap.getMax()));
+        }
+        line.append(String.format(Locale.ROOT, " | GC %d ms in %d pauses", recentGcMillis, recentGcCount));
+        if (watchdog != null) {
+            line.append(" | EDT stalls ").append(watchdog.getStallCount());
+        }
+
+        String latestToolTip = String.format(Locale.ROOT,
+                "<html>Search: last %.1f ms, p50 %.1f ms, p99 %.1f ms over %d searches"
+                        + "<br>Ingest: %d books, %s read"
+                        + "<br>GC since start: %d ms in %d pauses"
+                        + "<br>Figures refresh every %d s</html>",
+                search.getLastMillis(), search.getP50Millis(), search.getP99Millis(), search.getCount(),
+                books, FootprintEstimator.formatBytes(bytesRead),
+                gcMillis, gcCount, REFRESH_MILLIS / 1000);
+
+        // Only publish new instances when the content changed, so the EDT can compare by reference
+        String latestText = line.toString();
+        if (!latestText.equals(text)) {
+            text = latestText;
+        }
+        if (!latestToolTip.equals(toolTip)) {
+            toolTip = latestToolTip;
+        }
+    }
+}
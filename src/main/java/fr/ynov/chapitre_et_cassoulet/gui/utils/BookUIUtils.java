@@ -2,11 +2,15 @@ package main.java.fr.ynov.chapitre_et_cassoulet.gui.utils;
 
 import main.java.fr.ynov.chapitre_et_cassoulet.exception.BookNotFoundException;
 import main.java.fr.ynov.chapitre_et_cassoulet.exception.ChapterContentException;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.ChapterOpenedEvent;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
 import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
 import main.java.fr.ynov.chapitre_et_cassoulet.model.Chapter;
 import main.java.fr.ynov.chapitre_et_cassoulet.model.TextChapter;
 import main.java.fr.ynov.chapitre_et_cassoulet.service.Library;
 import main.java.fr.ynov.chapitre_et_cassoulet.service.Search;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
 import main.java.fr.ynov.chapitre_et_cassoulet.gui.panels.BookCataloguePanel;
 import main.java.fr.ynov.chapitre_et_cassoulet.gui.panels.BookDetailsPanel;
 import main.java.fr.ynov.chapitre_et_cassoulet.gui.panels.BookSearchPanel;
@@ -17,14 +21,19 @@ import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.Color;
 import java.awt.Insets;
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Utility class for book-related operations in the UI
  */
 public class BookUIUtils {
+    private static final Logger LOG = Logger.getLogger(BookUIUtils.class);
+    private static final LatencyHistogram CHAPTER_OPEN_TIME =
+            MetricsRegistry.getInstance().histogram("ui.chapterReader.open");
+    private static final LatencyHistogram SEARCH_TIME = MetricsRegistry.getInstance().histogram("ui.search");
+    private static SwingWorker<List<Book>, Void> pendingSearch;
 
     /**
      * Displays details of the currently selected book
@@ -54,6 +63,9 @@ public class BookUIUtils {
      * @param chapter The chapter to read
      */
     public static void openChapterReader(JFrame parentFrame, Book book, Chapter chapter) {
+        ChapterOpenedEvent event = new ChapterOpenedEvent();
+        event.begin();
+        long start = System.nanoTime();
         JDialog readerDialog = new JDialog(parentFrame, "Reading: " + chapter.getTitle(), true);
         readerDialog.setLayout(new BorderLayout(10, 10));
         readerDialog.setSize(900, 700);
@@ -123,8 +135,7 @@ public class BookUIUtils {
         navigationPanel.add(closeButton);
         navigationPanel.add(nextButton);
 
-        List<Chapter> sortedChapters = new java.util.ArrayList<>(book.getChapters());
-        sortedChapters.sort(Comparator.comparingInt(Chapter::getNumOrder));
+        List<Chapter> sortedChapters = book.getSortedChapters();
         int currentChapterIndex = sortedChapters.indexOf(chapter);
 
         prevButton.setEnabled(currentChapterIndex > 0);
@@ -157,43 +168,88 @@ public class BookUIUtils {
             }
         });
 
+        CHAPTER_OPEN_TIME.recordSince(start);
+        if (event.shouldCommit()) {
+            event.setChapter(book.getId(), book.getTitle(), chapter.getNumOrder());
+            event.setContentLength(contentArea.getDocument().getLength());
+            event.commit();
+        }
         readerDialog.setVisible(true);
     }
 
     /**
-     * Performs search based on criteria selected in the UI
+     * Performs search based on criteria selected in the UI.
+     * The criteria are read on the EDT and the query runs on a background worker.
+     * Starting a new search cancels the previous one, so only the latest result reaches the table.
      */
     public static void performSearch(BookSearchPanel searchPanel, BookCataloguePanel cataloguePanel,
-                                     Search searchService) {
-        String keyword = searchPanel.getSearchKeyword();
-        searchService.setKeyword(keyword);
+                                     Library library) {
+        Search searchService = createSearch(searchPanel, library);
+
+        cancelPendingSearch();
+
+        long start = System.nanoTime();
+        SwingWorker<List<Book>, Void> worker = new SwingWorker<>() {
+            @Override
+            protected List<Book> doInBackground() {
+                return searchService.advancedSearch();
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || pendingSearch != this) {
+                    return;
+                }
+                pendingSearch = null;
+                try {
+                    cataloguePanel.updateBooks(get());
+                    SEARCH_TIME.recordSince(start);
+                } catch (InterruptedException | CancellationException e) {
+                    // Superseded by a newer search
+                } catch (ExecutionException e) {
+                    LOG.error("Search failed", e.getCause());
+                }
+            }
+        };
+        pendingSearch = worker;
+        worker.execute();
+    }
+
+    /**
+     * Appends the newly added books that match the current search criteria to the table.
+     * Only the new books are filtered; the catalogue is not scanned again. If a search is still
+     * running, it may have missed these books, so a single re-run is scheduled instead.
+     *
+     * @param books The books that were just added to the library
+     */
+    public static void appendMatchingBooks(BookSearchPanel searchPanel, BookCataloguePanel cataloguePanel,
+                                           Library library, List<Book> books) {
+        if (pendingSearch != null) {
+            searchPanel.scheduleSearch();
+            return;
+        }
+        cataloguePanel.appendBooks(createSearch(searchPanel, library).filter(books));
+    }
+
+    private static Search createSearch(BookSearchPanel searchPanel, Library library) {
+        Search searchService = new Search(library);
+        searchService.setKeyword(searchPanel.getSearchKeyword());
 
         String genre = searchPanel.getSelectedGenre();
         if (!genre.equals("All Genres")) {
-            searchService.clearGenres();
             searchService.addGenre(genre);
-        } else {
-            searchService.clearGenres();
         }
 
         String status = searchPanel.getSelectedStatus();
         if (!status.equals("All Statuses")) {
-            searchService.clearStatus();
             searchService.addStatus(status);
-        } else {
-            searchService.clearStatus();
         }
 
-        List<Book> results = searchService.advancedSearch();
-
         String type = searchPanel.getSelectedType();
         if (!type.equals("All Types")) {
-            results = results.stream()
-                    .filter(book -> book.getClass().getSimpleName().equals(type))
-                    .collect(Collectors.toList());
+            searchService.setType(type);
         }
-
-        cataloguePanel.updateBooks(results);
+        return searchService;
     }
 
     /**
@@ -202,6 +258,14 @@ public class BookUIUtils {
     public static void resetSearch(BookSearchPanel searchPanel, BookCataloguePanel cataloguePanel,
                                    Library library) {
         searchPanel.resetFilters();
+        cancelPendingSearch();
         cataloguePanel.updateBooks(library.getCatalogue());
     }
-}
\ No newline at end of file
+
+    private static void cancelPendingSearch() {
+        if (pendingSearch != null) {
+            pendingSearch.cancel(true);
+            pendingSearch = null;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.gui.utils;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.Counter;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.swing.ImageIcon;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads book covers off the Event Dispatch Thread.
+ * Covers are decoded with source subsampling, scaled once to the requested size and kept
+ * in a size-bounded in-memory LRU as well as in a persistent on-disk thumbnail cache keyed
+ * by the source path and its modification time. Sources may live on any file system,
+ * such as inside a content archive.
+ * <p>
+ * The disk cache is bounded too: once its files take more than 64 MB, the least recently used
+ * thumbnails are deleted until it is back to three quarters of that. A thumbnail's modification
+ * time is refreshed on every disk hit, so it records when the thumbnail was last used.
+ */
+public final class CoverImageService {
+    private static final String CACHE_DIRECTORY = "cache" + File.separator + "covers";
+    private static final long MAX_MEMORY_BYTES = 32L * 1024 * 1024;
+    private static final long MAX_DISK_BYTES = 64L * 1024 * 1024;
+    private static final int LOADER_THREADS = 2;
+    private static final Logger LOG = Logger.getLogger(CoverImageService.class);
+
+    private static final CoverImageService INSTANCE = new CoverImageService();
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final LatencyHistogram loadTime;
+    private final LatencyHistogram decodeTime;
+
+    private final ExecutorService executor;
+    private final Map<String, ImageIcon> memoryCache;
+    private final Path diskCacheDirectory;
+    private long memoryBytes;
+    private final Object diskLock = new Object();
+    /** Bytes used by the disk cache, or -1 until the directory has been measured; guarded by diskLock */
+    private long diskBytes = -1;
+
+    private CoverImageService() {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(LOADER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "cover-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        this.memoryCache = new LinkedHashMap<>(64, 0.75f, true);
+        this.diskCacheDirectory = Paths.get(CACHE_DIRECTORY);
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        this.memoryHits = metrics.counter("cover.cache.memoryHits");
+        this.diskHits = metrics.counter("cover.cache.diskHits");
+        this.misses = metrics.counter("cover.cache.misses");
+        this.loadTime = metrics.histogram("cover.load");
+        this.decodeTime = metrics.histogram("cover.decode");
+        metrics.gauge("cover.cache.hitRatio", () -> {
+            long hits = memoryHits.getCount() + diskHits.getCount();
+            long total = hits + misses.getCount();
+            return total == 0 ? 0 : (double) hits / total;
+        });
+        metrics.gauge("cover.cache.memoryBytes", this::getMemoryBytes);
+    }
+
+    /**
+     * Gets the shared cover service
+     *
+     * @return The application-wide cover service
+     */
+    public static CoverImageService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Asynchronously loads the cover of a book scaled to fit the given bounds.
+     * The cover location is the one resolved at ingest time; the future completes with
+     * {@code null} when the book has no cover.
+     * Cancelling the future before a loader thread picks it up skips the decode entirely.
+     *
+     * @param book The book whose cover to load
+     * @param maxWidth Maximum width of the thumbnail, positive
+     * @param maxHeight Maximum height of the thumbnail, positive
+     * @return A future completed on a loader thread with the scaled cover
+     * @throws IllegalArgumentException If a bound is not positive
+     */
+    public CompletableFuture<ImageIcon> loadCover(Book book, int maxWidth, int maxHeight) {
+        if (maxWidth <= 0 || maxHeight <= 0) {
+            throw new IllegalArgumentException("Cover bounds must be positive: " + maxWidth + "x" + maxHeight);
+        }
+        CompletableFuture<ImageIcon> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                Path source = book.getCoverPath();
+                future.complete(source == null ? null : loadThumbnail(source, maxWidth, maxHeight, future));
+                loadTime.recordSince(start);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private ImageIcon loadThumbnail(Path source, int maxWidth, int maxHeight,
+                                    CompletableFuture<ImageIcon> request) throws IOException {
+        long lastModified = Files.getLastModifiedTime(source).toMillis();
+        String key = sourceKey(source) + "|" + lastModified + "|" + maxWidth + "x" + maxHeight;
+
+        ImageIcon cached = getFromMemory(key);
+        if (cached != null) {
+            memoryHits.increment();
+            return cached;
+        }
+
+        Path diskEntry = diskCacheDirectory.resolve(hash(key) + ".png");
+        BufferedImage thumbnail = null;
+        if (Files.isRegularFile(diskEntry)) {
+            try {
+                thumbnail = ImageIO.read(diskEntry.toFile());
+            } catch (IOException e) {
+                // Pruned by another loader or unreadable; decoded again below
+                LOG.debug("Could not read cached cover " + diskEntry + ": " + e.getMessage());
+            }
+        }
+
+        if (thumbnail == null) {
+            if (request.isDone()) {
+                return null;
+            }
+            misses.increment();
+            long decodeStart = System.nanoTime();
+            thumbnail = decodeScaled(source, maxWidth, maxHeight);
+            decodeTime.recordSince(decodeStart);
+            if (thumbnail == null) {
+                return null;
+            }
+            writeToDisk(diskEntry, thumbnail);
+        } else {
+            diskHits.increment();
+            touch(diskEntry);
+        }
+
+        ImageIcon icon = new ImageIcon(thumbnail);
+        putInMemory(key, icon, (long) thumbnail.getWidth() * thumbnail.getHeight() * 4);
+        return icon;
+    }
+
+    /**
+     * Decodes an image using source subsampling so that only roughly the pixels needed
+     * for the thumbnail are materialized, then scales the result to fit the bounds.
+     */
+    private BufferedImage decodeScaled(Path source, int maxWidth, int maxHeight) throws IOException {
+        if (source.getFileSystem() != FileSystems.getDefault()) {
+            // Entries of archives cannot be read with random access; a cover is small enough to buffer in memory
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(source));
+                 ImageInputStream input = new MemoryCacheImageInputStream(in)) {
+                return decodeScaled(input, maxWidth, maxHeight);
+            }
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            return decodeScaled(input, maxWidth, maxHeight);
+        }
+    }
+
+    private BufferedImage decodeScaled(ImageInputStream input, int maxWidth, int maxHeight) throws IOException {
+        if (input == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            int sourceWidth = reader.getWidth(0);
+            int sourceHeight = reader.getHeight(0);
+
+            int subsampling = Math.max(1, Math.min(sourceWidth / maxWidth, sourceHeight / maxHeight));
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+            return scaleToFit(reader.read(0, param), maxWidth, maxHeight);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Names a source in cache keys; paths inside archives are named by URI so that entries with the
+     * same path in different archives do not collide
+     */
+    private static String sourceKey(Path source) {
+        if (source.getFileSystem() == FileSystems.getDefault()) {
+            return source.toAbsolutePath().normalize().toString();
+        }
+        return source.toUri().toString();
+    }
+
+    private BufferedImage scaleToFit(BufferedImage image, int maxWidth, int maxHeight) {
+        double ratio = Math.min((double) maxWidth / image.getWidth(), (double) maxHeight / image.getHeight());
+        int width = Math.max(1, (int) (image.getWidth() * ratio));
+        int height = Math.max(1, (int) (image.getHeight() * ratio));
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    private synchronized ImageIcon getFromMemory(String key) {
+        return memoryCache.get(key);
+    }
+
+    private synchronized void putInMemory(String key, ImageIcon icon, long bytes) {
+        if (memoryCache.put(key, icon) == null) {
+            memoryBytes += bytes;
+        }
+        Iterator<ImageIcon> eldest = memoryCache.values().iterator();
+        while (memoryBytes > MAX_MEMORY_BYTES && eldest.hasNext()) {
+            ImageIcon evicted = eldest.next();
+            if (evicted == icon) {
+                break;
+            }
+            memoryBytes -= (long) evicted.getIconWidth() * evicted.getIconHeight() * 4;
+            eldest.remove();
+        }
+    }
+
+    private void writeToDisk(Path diskEntry, BufferedImage thumbnail) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(diskCacheDirectory);
+            temporary = Files.createTempFile(diskCacheDirectory, "cover", ".tmp");
+            ImageIO.write(thumbnail, "png", temporary.toFile());
+            Files.move(temporary, diskEntry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            recordDiskWrite(Files.size(diskEntry));
+        } catch (IOException e) {
+            LOG.warn("Failed to cache cover thumbnail: " + e.getMessage());
+            if (temporary != null) {
+                temporary.toFile().delete();
+            }
+        }
+    }
+
+    /**
+     * Marks a thumbnail as just used, so that pruning keeps it longer
+     */
+    private static void touch(Path diskEntry) {
+        try {
+            Files.setLastModifiedTime(diskEntry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            LOG.debug("Could not touch " + diskEntry + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Counts a thumbnail written to the disk cache and prunes the cache when it is over its budget.
+     * The directory is measured on the first write, which also accounts for thumbnails left by earlier runs.
+     */
+    private void recordDiskWrite(long bytes) {
+        synchronized (diskLock) {
+            diskBytes = diskBytes < 0 ? measureDiskCache() : diskBytes + bytes;
+            if (diskBytes > MAX_DISK_BYTES) {
+                pruneDiskCache();
+            }
+        }
+    }
+
+    private long measureDiskCache() {
+        long total = 0;
+        for (CachedFile file : listDiskCache()) {
+            total += file.size();
+        }
+        return total;
+    }
+
+    /**
+     * A file of the disk cache, with the attributes pruning orders and counts it by
+     */
+    private record CachedFile(Path path, long size, long lastModified) {
+    }
+
+    /**
+     * Deletes the least recently used thumbnails until the disk cache takes three quarters of its budget
+     */
+    private void pruneDiskCache() {
+        List<CachedFile> files = listDiskCache();
+        files.sort(Comparator.comparingLong(CachedFile::lastModified));
+        long total = 0;
+        for (CachedFile file : files) {
+            total += file.size();
+        }
+        int deleted = 0;
+        for (CachedFile file : files) {
+            if (total <= MAX_DISK_BYTES * 3 / 4) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(file.path());
+                total -= file.size();
+                deleted++;
+            } catch (IOException e) {
+                LOG.debug("Could not delete cached cover " + file.path() + ": " + e.getMessage());
+            }
+        }
+        diskBytes = total;
+        LOG.debug("Pruned " + deleted + " cached covers, " + total / 1024 + " KB left");
+    }
+
+    private List<CachedFile> listDiskCache() {
+        List<CachedFile> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(diskCacheDirectory)) {
+            for (Path entry : entries) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        files.add(new CachedFile(entry, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    }
+                } catch (IOException e) {
+                    // Deleted meanwhile
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to list the cover cache: " + e.getMessage());
+        }
+        return files;
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
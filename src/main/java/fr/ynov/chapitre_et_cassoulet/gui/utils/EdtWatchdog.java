@@ -0,0 +1,246 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.gui.utils;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.Counter;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detects Event Dispatch Thread stalls and records what the EDT was doing.
+ * <p>
+ * A custom {@link EventQueue} times every dispatched event. A sampler thread looks at the event
+ * being dispatched and, once it has run longer than the threshold, captures the EDT stack.
+ * When the event finishes, its duration is charged to the call site found in that stack, the
+ * first frame in application code, so the report ranks the worst offenders by call site.
+ * Events dispatched by a nested loop, such as a modal dialog, are timed separately and the
+ * event that opened the loop is only charged for its own work.
+ * <p>
+ * The threshold is read from the {@value #THRESHOLD_PROPERTY} system property, in milliseconds;
+ * 0 disables the watchdog.
+ */
+public final class EdtWatchdog {
+    /**
+     * System property holding the stall threshold in milliseconds
+     */
+    public static final String THRESHOLD_PROPERTY = "cassoulet.edt.thresholdMs";
+
+    private static final long DEFAULT_THRESHOLD_MILLIS = 100;
+    private static final long MIN_SAMPLE_PERIOD_MILLIS = 10;
+    private static final String APPLICATION_PACKAGE = "main.java.fr.ynov.chapitre_et_cassoulet";
+    private static final int REPORT_STACK_DEPTH = 12;
+    private static final Logger LOG = Logger.getLogger(EdtWatchdog.class);
+
+    private static EdtWatchdog installed;
+
+    private final long thresholdNanos;
+    private final long samplePeriodMillis;
+    private final Map<String, Offender> offenders = new ConcurrentHashMap<>();
+    private final Counter stalls = MetricsRegistry.getInstance().counter("ui.edt.stalls");
+    private final LatencyHistogram dispatchTime = MetricsRegistry.getInstance().histogram("ui.edt.dispatch");
+
+    private volatile Thread dispatchThread;
+    private volatile long currentStart;
+    private volatile Sample currentSample;
+
+    /**
+     * Stack captured while an event was running over the threshold
+     */
+    private record Sample(long dispatchStart, String callSite, StackTraceElement[] stack) {
+    }
+
+    /**
+     * Stalls aggregated for one call site
+     */
+    private static final class Offender {
+        private final String callSite;
+        private final StackTraceElement[] stack;
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        Offender(String callSite, StackTraceElement[] stack) {
+            this.callSite = callSite;
+            this.stack = stack;
+        }
+
+        synchronized void add(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+    }
+
+    private EdtWatchdog(long thresholdMillis) {
+        this.thresholdNanos = thresholdMillis * 1_000_000L;
+        this.samplePeriodMillis = Math.max(MIN_SAMPLE_PERIOD_MILLIS, thresholdMillis / 4);
+    }
+
+    /**
+     * Installs the watchdog on the system event queue, once.
+     * The report of the worst offenders is logged when the application exits.
+     *
+     * @return The installed watchdog, or null when disabled by the threshold property
+     */
+    public static synchronized EdtWatchdog install() {
+        if (installed != null) {
+            return installed;
+        }
+        long thresholdMillis = Long.getLong(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD_MILLIS);
+        if (thresholdMillis <= 0) {
+            return null;
+        }
+
+        EdtWatchdog watchdog = new EdtWatchdog(thresholdMillis);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(watchdog.new MonitoredEventQueue());
+
+        Thread sampler = new Thread(watchdog::sampleLoop, "edt-watchdog");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (watchdog.getStallCount() > 0) {
+                LOG.info(watchdog.getReport(10));
+                Logger.flush();
+            }
+        }, "edt-watchdog-report"));
+
+        installed = watchdog;
+        return watchdog;
+    }
+
+    /**
+     * Gets the installed watchdog
+     *
+     * @return The watchdog, or null if it is not installed
+     */
+    public static synchronized EdtWatchdog getInstalled() {
+        return installed;
+    }
+
+    /**
+     * Gets the number of events that ran longer than the threshold
+     *
+     * @return The stall count
+     */
+    public long getStallCount() {
+        return stalls.getCount();
+    }
+
+    /**
+     * Formats the call sites that stalled the EDT the longest in total
+     *
+     * @param top Number of call sites to list
+     * @return The report
+     */
+    public String getReport(int top) {
+        List<Offender> sorted = new ArrayList<>(offenders.values());
+        sorted.sort(Comparator.comparingLong((Offender offender) -> offender.totalNanos).reversed());
+
+        StringBuilder report = new StringBuilder(1024);
+        report.append(String.format(Locale.ROOT, "EDT stalls over %d ms: %d%n",
+                thresholdNanos / 1_000_000, getStallCount()));
+        for (Offender offender : sorted.subList(0, Math.min(top, sorted.size()))) {
+            synchronized (offender) {
+                report.append(String.format(Locale.ROOT, "%6d stalls  total %7d ms  max %6d ms  %s%n",
+                        offender.count, offender.totalNanos / 1_000_000, offender.maxNanos / 1_000_000,
+                        offender.callSite));
+            }
+            if (offender.stack != null) {
+                for (int i = 0; i < Math.min(REPORT_STACK_DEPTH, offender.stack.length); i++) {
+                    report.append("        at ").append(offender.stack[i]).append(System.lineSeparator());
+                }
+            }
+        }
+        return report.toString();
+    }
+
+    private void sampleLoop() {
+        while (true) {
+            try {
+                Thread.sleep(samplePeriodMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long start = currentStart;
+            Thread thread = dispatchThread;
+            Sample sample = currentSample;
+            if (start == 0 || thread == null || System.nanoTime() - start < thresholdNanos
+                    || (sample != null && sample.dispatchStart() == start)) {
+                continue;
+            }
+
+            StackTraceElement[] stack = thread.getStackTrace();
+            if (currentStart == start) {
+                currentSample = new Sample(start, callSite(stack), stack);
+            }
+        }
+    }
+
+    private void dispatched(AWTEvent event, long start, long end) {
+        long duration = end - start;
+        dispatchTime.record(duration);
+        if (duration < thresholdNanos) {
+            return;
+        }
+
+        stalls.increment();
+        Sample sample = currentSample;
+        String callSite;
+        StackTraceElement[] stack;
+        if (sample != null && sample.dispatchStart() == start) {
+            callSite = sample.callSite();
+            stack = sample.stack();
+        } else {
+            callSite = "unsampled " + event.getClass().getSimpleName() + " from "
+                    + event.getSource().getClass().getSimpleName();
+            stack = null;
+        }
+        offenders.computeIfAbsent(callSite, key -> new Offender(key, stack)).add(duration);
+        LOG.warn("EDT stalled " + duration / 1_000_000 + " ms in " + callSite);
+    }
+
+    /**
+     * Picks the first frame in application code, skipping the watchdog itself
+     */
+    private static String callSite(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().startsWith(APPLICATION_PACKAGE)
+                    && !frame.getClassName().startsWith(EdtWatchdog.class.getName())) {
+                return frame.toString();
+            }
+        }
+        return stack.length > 0 ? stack[0].toString() : "unknown";
+    }
+
+    /**
+     * Event queue that reports the dispatch time of every event to the watchdog
+     */
+    private final class MonitoredEventQueue extends EventQueue {
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            dispatchThread = Thread.currentThread();
+            long outerStart = currentStart;
+            long start = System.nanoTime();
+            currentStart = start;
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                long end = System.nanoTime();
+                dispatched(event, currentStart, end);
+                // An enclosing event resumes now: charge it only for what it does after the nested loop
+                currentStart = outerStart == 0 ? 0 : end;
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one book information file read and parsed.
+ * The event duration covers reading, parsing and cover resolution.
+ */
+@Name("fr.ynov.chapitre_et_cassoulet.BookIngested")
+@Label("Book Ingested")
+@Category({"Chapitre et Cassoulet", "Ingest"})
+@Description("A book information file was read and parsed")
+@StackTrace(false)
+public class BookIngestedEvent extends jdk.jfr.Event {
+    @Label("Path")
+    private String path;
+
+    @Label("Size")
+    @DataAmount
+    private long bytes;
+
+    @Label("Parse Time")
+    @Timespan(Timespan.NANOSECONDS)
+    private long parseTime;
+
+    @Label("Book Id")
+    private int bookId;
+
+    @Label("Title")
+    private String title;
+
+    /**
+     * Sets the path of the information file
+     *
+     * @param path The file path
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Sets the size of the information file
+     *
+     * @param bytes The size in bytes
+     */
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Sets the time spent parsing the JSON
+     *
+     * @param parseTime The parse time in nanoseconds
+     */
+    public void setParseTime(long parseTime) {
+        this.parseTime = parseTime;
+    }
+
+    /**
+     * Sets the parsed book
+     *
+     * @param bookId The book identifier
+     * @param title The book title
+     */
+    public void setBook(int bookId, String title) {
+        this.bookId = bookId;
+        this.title = title;
+    }
+}
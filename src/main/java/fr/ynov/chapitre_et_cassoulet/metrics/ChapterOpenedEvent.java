@@ -0,0 +1,51 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for a chapter opened in the reader.
+ * The event duration covers building the reader dialog, including setting the chapter text.
+ */
+@Name("fr.ynov.chapitre_et_cassoulet.ChapterOpened")
+@Label("Chapter Opened")
+@Category({"Chapitre et Cassoulet", "UI"})
+@Description("A chapter was opened in the reader")
+public class ChapterOpenedEvent extends jdk.jfr.Event {
+    @Label("Book Id")
+    private int bookId;
+
+    @Label("Book Title")
+    private String bookTitle;
+
+    @Label("Chapter Number")
+    private int chapterNumber;
+
+    @Label("Content Length")
+    @Description("Length of the chapter text in characters")
+    private int contentLength;
+
+    /**
+     * Sets the opened chapter
+     *
+     * @param bookId The book identifier
+     * @param bookTitle The book title
+     * @param chapterNumber The chapter number
+     */
+    public void setChapter(int bookId, String bookTitle, int chapterNumber) {
+        this.bookId = bookId;
+        this.bookTitle = bookTitle;
+        this.chapterNumber = chapterNumber;
+    }
+
+    /**
+     * Sets the length of the text shown in the reader
+     *
+     * @param contentLength The length in characters
+     */
+    public void setContentLength(int contentLength) {
+        this.contentLength = contentLength;
+    }
+}
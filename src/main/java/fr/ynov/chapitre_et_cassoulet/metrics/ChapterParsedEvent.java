@@ -0,0 +1,76 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one chapter file read and parsed.
+ * The event duration covers reading and parsing.
+ */
+@Name("fr.ynov.chapitre_et_cassoulet.ChapterParsed")
+@Label("Chapter Parsed")
+@Category({"Chapitre et Cassoulet", "Ingest"})
+@Description("A chapter file was read and parsed")
+@StackTrace(false)
+public class ChapterParsedEvent extends jdk.jfr.Event {
+    @Label("Path")
+    private String path;
+
+    @Label("Size")
+    @DataAmount
+    private long bytes;
+
+    @Label("Parse Time")
+    @Timespan(Timespan.NANOSECONDS)
+    private long parseTime;
+
+    @Label("Chapter Number")
+    private int chapterNumber;
+
+    @Label("Content Length")
+    @Description("Length of the chapter text in characters")
+    private int contentLength;
+
+    /**
+     * Sets the path of the chapter file
+     *
+     * @param path The file path
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Sets the size of the chapter file
+     *
+     * @param bytes The size in bytes
+     */
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Sets the time spent parsing the JSON
+     *
+     * @param parseTime The parse time in nanoseconds
+     */
+    public void setParseTime(long parseTime) {
+        this.parseTime = parseTime;
+    }
+
+    /**
+     * Sets the parsed chapter
+     *
+     * @param chapterNumber The chapter number
+     * @param contentLength The length of the chapter text in characters
+     */
+    public void setChapter(int chapterNumber, int contentLength) {
+        this.chapterNumber = chapterNumber;
+        this.contentLength = contentLength;
+    }
+}
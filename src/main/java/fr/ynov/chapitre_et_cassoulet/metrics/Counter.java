@@ -0,0 +1,31 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic event counter that can be incremented from any thread without contention
+ */
+public class Counter implements CounterMXBean {
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Adds one to the counter
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds an amount to the counter
+     *
+     * @param amount The amount to add
+     */
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,13 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.metrics;
+
+/**
+ * Management view of a {@link Counter}
+ */
+public interface CounterMXBean {
+    /**
+     * Gets the current count
+     *
+     * @return The number of recorded events
+     */
+    long getCount();
+}
@@ -0,0 +1,63 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for a cover shown in the details panel.
+ * The event duration runs from the request to the cover being applied on the Event Dispatch Thread.
+ */
+@Name("fr.ynov.chapitre_et_cassoulet.CoverLoaded")
+@Label("Cover Loaded")
+@Category({"Chapitre et Cassoulet", "UI"})
+@Description("A book cover was requested and displayed")
+public class CoverLoadedEvent extends jdk.jfr.Event {
+    @Label("Book Id")
+    private int bookId;
+
+    @Label("Path")
+    private String path;
+
+    @Label("Outcome")
+    @Description("loaded, missing or error")
+    private String outcome;
+
+    @Label("Width")
+    private int width;
+
+    @Label("Height")
+    private int height;
+
+    /**
+     * Sets the book whose cover was loaded
+     *
+     * @param bookId The book identifier
+     * @param path The cover path, or null when the book has none
+     */
+    public void setBook(int bookId, String path) {
+        this.bookId = bookId;
+        this.path = path;
+    }
+
+    /**
+     * Sets how the request ended
+     *
+     * @param outcome loaded, missing or error
+     */
+    public void setOutcome(String outcome) {
+        this.outcome = outcome;
+    }
+
+    /**
+     * Sets the size of the displayed thumbnail
+     *
+     * @param width The width in pixels
+     * @param height The height in pixels
+     */
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+}
@@ -0,0 +1,24 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Value sampled on demand, such as the size of the library or a cache hit ratio
+ */
+public class Gauge implements GaugeMXBean {
+    private final DoubleSupplier supplier;
+
+    /**
+     * Creates a gauge reading its value from a supplier
+     *
+     * @param supplier Computes the current value; called from whichever thread reads the gauge
+     */
+    public Gauge(DoubleSupplier supplier) {
+        this.supplier = supplier;
+    }
+
+    @Override
+    public double getValue() {
+        return supplier.getAsDouble();
+    }
+}
@@ -0,0 +1,13 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.metrics;
+
+/**
+ * Management view of a {@link Gauge}
+ */
+public interface GaugeMXBean {
+    /**
+     * Gets the current value
+     *
+     * @return The value sampled now
+     */
+    double getValue();
+}
@@ -0,0 +1,141 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with logarithmic buckets subdivided linearly, in the style of HdrHistogram.
+ * Every power of two is split into {@value #HALF_BUCKET_COUNT} buckets, so any recorded value is
+ * known to within about 3% while the whole range from 1 ns to about 18 minutes fits in a
+ * fixed array. Recording is a few arithmetic operations and one atomic increment, without locks
+ * or allocation, so it is safe to call on the Event Dispatch Thread and in the ingest loop.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int HALF_BUCKET_COUNT = 1 << (SUB_BUCKET_BITS - 1);
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_TRACKABLE_NANOS = (1L << MAX_VALUE_BITS) - 1;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final AtomicLongArray buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private volatile long lastNanos;
+
+    /**
+     * Creates an empty histogram
+     */
+    public LatencyHistogram() {
+        buckets = new AtomicLongArray(bucketIndex(MAX_TRACKABLE_NANOS) + 1);
+    }
+
+    /**
+     * Records one latency sample
+     *
+     * @param nanos Elapsed time in nanoseconds; values above the trackable range are clamped
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_TRACKABLE_NANOS));
+        buckets.incrementAndGet(bucketIndex(value));
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulateAndGet(value, Math::max);
+        lastNanos = value;
+    }
+
+    /**
+     * Records the time elapsed since a {@link System#nanoTime()} reading
+     *
+     * @param startNanos The reading taken when the measured operation started
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets the latency below which the given share of samples fall
+     *
+     * @param percentile Share of samples, from 0 to 100
+     * @return The latency in nanoseconds, or 0 when nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(100.0, percentile) / 100.0));
+        long seen = 0;
+        for (int index = 0; index < buckets.length(); index++) {
+            seen += buckets.get(index);
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(index), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /**
+     * Gets the most recently recorded latency
+     *
+     * @return The latency in nanoseconds, or 0 when nothing was recorded
+     */
+    public long getLastNanos() {
+        return lastNanos;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long total = count.sum();
+        return total == 0 ? 0 : totalNanos.sum() / (double) total / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return getPercentileNanos(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP90Millis() {
+        return getPercentileNanos(90) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return getPercentileNanos(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLastMillis() {
+        return lastNanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Maps a value to its bucket: values below {@code 2 * HALF_BUCKET_COUNT} get one bucket each,
+     * larger values keep their {@code SUB_BUCKET_BITS} most significant bits
+     */
+    private static int bucketIndex(long value) {
+        int shift = Math.max(0, (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1));
+        return shift * HALF_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < 2 * HALF_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / HALF_BUCKET_COUNT - 1;
+        long mantissa = index - (long) shift * HALF_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
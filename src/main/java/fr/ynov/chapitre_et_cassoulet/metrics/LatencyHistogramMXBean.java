@@ -0,0 +1,55 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.metrics;
+
+/**
+ * Management view of a {@link LatencyHistogram}, in milliseconds
+ */
+public interface LatencyHistogramMXBean {
+    /**
+     * Gets the number of recorded samples
+     *
+     * @return The sample count
+     */
+    long getCount();
+
+    /**
+     * Gets the mean latency
+     *
+     * @return The mean in milliseconds
+     */
+    double getMeanMillis();
+
+    /**
+     * Gets the median latency
+     *
+     * @return The 50th percentile in milliseconds
+     */
+    double getP50Millis();
+
+    /**
+     * Gets the 90th percentile latency
+     *
+     * @return The 90th percentile in milliseconds
+     */
+    double getP90Millis();
+
+    /**
+     * Gets the 99th percentile latency
+     *
+     * @return The 99th percentile in milliseconds
+     */
+    double getP99Millis();
+
+    /**
+     * Gets the highest recorded latency
+     *
+     * @return The maximum in milliseconds
+     */
+    double getMaxMillis();
+
+    /**
+     * Gets the most recently recorded latency
+     *
+     * @return The last sample in milliseconds
+     */
+    double getLastMillis();
+}
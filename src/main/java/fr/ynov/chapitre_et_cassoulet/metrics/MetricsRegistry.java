@@ -0,0 +1,193 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.metrics;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process-wide registry of counters, gauges and latency histograms.
+ * Metrics are created on first use and identified by dotted names such as
+ * {@code ingest.parse.chapter}. Once {@link #registerMBeans()} has been called every metric,
+ * including those created later, is visible over JMX under the {@value #JMX_DOMAIN} domain.
+ */
+public final class MetricsRegistry {
+    /**
+     * JMX domain under which metrics are registered
+     */
+    public static final String JMX_DOMAIN = "fr.ynov.chapitre_et_cassoulet";
+
+    private static final Logger LOG = Logger.getLogger(MetricsRegistry.class);
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private volatile MBeanServer mbeanServer;
+    private ScheduledExecutorService dumpScheduler;
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * Gets the shared registry
+     *
+     * @return The application-wide registry
+     */
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the counter with the given name, creating it if needed
+     *
+     * @param name The metric name
+     * @return The counter
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> register("Counter", key, new Counter()));
+    }
+
+    /**
+     * Gets the latency histogram with the given name, creating it if needed
+     *
+     * @param name The metric name
+     * @return The histogram
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> register("Histogram", key, new LatencyHistogram()));
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge previously registered under the same name
+     *
+     * @param name The metric name
+     * @param supplier Computes the current value
+     */
+    public void gauge(String name, DoubleSupplier supplier) {
+        Gauge gauge = new Gauge(supplier);
+        Gauge previous = gauges.put(name, gauge);
+        if (previous != null) {
+            unregister("Gauge", name);
+        }
+        register("Gauge", name, gauge);
+    }
+
+    /**
+     * Gets the gauge registered under a name, without creating one
+     *
+     * @param name The metric name
+     * @return The gauge, or null if none is registered
+     */
+    public Gauge findGauge(String name) {
+        return gauges.get(name);
+    }
+
+    /**
+     * Exposes every current and future metric as a platform MBean
+     */
+    public synchronized void registerMBeans() {
+        if (mbeanServer != null) {
+            return;
+        }
+        mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        counters.forEach((name, counter) -> register("Counter", name, counter));
+        gauges.forEach((name, gauge) -> register("Gauge", name, gauge));
+        histograms.forEach((name, histogram) -> register("Histogram", name, histogram));
+    }
+
+    /**
+     * Starts handing a text dump of all metrics to the given sink at a fixed rate.
+     * Calling this again replaces the previous schedule.
+     *
+     * @param periodSeconds Seconds between dumps
+     * @param sink Receives each dump, on a background thread
+     */
+    public synchronized void startPeriodicDump(long periodSeconds, Consumer<String> sink) {
+        stopPeriodicDump();
+        dumpScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumpScheduler.scheduleAtFixedRate(() -> sink.accept(dump()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic dump, if one is running
+     */
+    public synchronized void stopPeriodicDump() {
+        if (dumpScheduler != null) {
+            dumpScheduler.shutdownNow();
+            dumpScheduler = null;
+        }
+    }
+
+    /**
+     * Formats every metric as one line, sorted by name.
+     * Histogram lines give the sample count and the mean, median, 90th, 99th percentile
+     * and maximum in milliseconds.
+     *
+     * @return The text dump
+     */
+    public String dump() {
+        StringBuilder text = new StringBuilder(1024);
+        text.append("=== metrics ===").append(System.lineSeparator());
+        new TreeMap<>(counters).forEach((name, counter) ->
+                text.append(String.format(Locale.ROOT, "%-40s count=%d%n", name, counter.getCount())));
+        new TreeMap<>(gauges).forEach((name, gauge) ->
+                text.append(String.format(Locale.ROOT, "%-40s value=%.3f%n", name, gauge.getValue())));
+        new TreeMap<>(histograms).forEach((name, histogram) ->
+                text.append(String.format(Locale.ROOT,
+                        "%-40s count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms%n",
+                        name, histogram.getCount(), histogram.getMeanMillis(), histogram.getP50Millis(),
+                        histogram.getP90Millis(), histogram.getP99Millis(), histogram.getMaxMillis())));
+        return text.toString();
+    }
+
+    private <T> T register(String type, String name, T metric) {
+        MBeanServer server = mbeanServer;
+        if (server == null) {
+            return metric;
+        }
+        try {
+            ObjectName objectName = objectName(type, name);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(metric, objectName);
+            }
+        } catch (JMException e) {
+            LOG.warn("Failed to register metric " + name + " over JMX: " + e.getMessage());
+        }
+        return metric;
+    }
+
+    private void unregister(String type, String name) {
+        MBeanServer server = mbeanServer;
+        if (server == null) {
+            return;
+        }
+        try {
+            ObjectName objectName = objectName(type, name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            LOG.warn("Failed to unregister metric " + name + " from JMX: " + e.getMessage());
+        }
+    }
+
+    private static ObjectName objectName(String type, String name) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+    }
+}
@@ -0,0 +1,65 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one catalogue search.
+ * The event duration covers the scan of the catalogue.
+ */
+@Name("fr.ynov.chapitre_et_cassoulet.SearchExecuted")
+@Label("Search Executed")
+@Category({"Chapitre et Cassoulet", "Search"})
+@Description("The catalogue was searched")
+public class SearchExecutedEvent extends jdk.jfr.Event {
+    @Label("Engine")
+    @Description("library for Library.searchBooks, advanced for Search.advancedSearch")
+    private String engine;
+
+    @Label("Criteria")
+    private String criteria;
+
+    @Label("Hits")
+    private int hits;
+
+    @Label("Cancelled")
+    private boolean cancelled;
+
+    /**
+     * Sets the search implementation that ran the query
+     *
+     * @param engine The engine name
+     */
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Sets a readable description of the criteria in use
+     *
+     * @param criteria The criteria
+     */
+    public void setCriteria(String criteria) {
+        this.criteria = criteria;
+    }
+
+    /**
+     * Sets the number of matching books
+     *
+     * @param hits The number of results
+     */
+    public void setHits(int hits) {
+        this.hits = hits;
+    }
+
+    /**
+     * Sets whether the search was interrupted before completing
+     *
+     * @param cancelled True if the search was cancelled
+     */
+    public void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+}
@@ -2,7 +2,11 @@ package main.java.fr.ynov.chapitre_et_cassoulet.model;
 
 import java.io.Serial;
 import java.io.Serializable;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -20,11 +24,22 @@ public class Book implements Serializable {
     private String title;
     private String description;
     private String coverImagePath;
+    private String resolvedCoverUri;
+    /** Reopened from {@link #resolvedCoverUri} after deserialization, as paths inside archives are not serializable */
+    private transient Path coverPath;
     private String status;
     private String artist;
     private Date dateAdded;
-    private Set<String> genres;
-    private List<Chapter> chapters;
+    private volatile Set<String> genres;
+    /** Never modified once assigned; every change publishes a new list, so readers need no lock */
+    private volatile List<Chapter> chapters;
+    private transient volatile SortedChapters sortedChapters;
+
+    /**
+     * Chapters ordered by number, together with the chapter list they were computed from
+     */
+    private record SortedChapters(List<Chapter> source, List<Chapter> sorted) {
+    }
 
     /**
      * Default constructor initializes a book with default values
@@ -123,6 +138,35 @@ public class Book implements Serializable {
         this.coverImagePath = coverImagePath;
     }
 
+    /**
+     * Gets the cover image location resolved when the book was loaded
+     *
+     * @return Path to the cover image file, or null if the book has no cover or, for a deserialized book,
+     * its location has not been reopened
+     */
+    public Path getCoverPath() {
+        return coverPath;
+    }
+
+    /**
+     * Gets the URI of the cover image resolved when the book was loaded, which is what a snapshot keeps
+     *
+     * @return The cover image URI, or null if the book has no cover
+     */
+    public String getCoverUri() {
+        return resolvedCoverUri;
+    }
+
+    /**
+     * Sets the cover image location resolved when the book was loaded
+     *
+     * @param coverPath Path to the cover image file, or null if the book has no cover
+     */
+    public void setCoverPath(Path coverPath) {
+        this.coverPath = coverPath;
+        this.resolvedCoverUri = coverPath != null ? coverPath.toUri().toString() : null;
+    }
+
     /**
      * Gets the status of the book (ongoing, completed, etc.)
      *
@@ -205,21 +249,92 @@ public class Book implements Serializable {
     }
 
     /**
-     * Gets the list of chapters in the book
+     * Gets the chapters of the book as they are now. The list never changes afterwards,
+     * so it can be read from any thread while chapters are being added.
      *
-     * @return List of chapters
+     * @return Unmodifiable list of chapters
      */
     public List<Chapter> getChapters() {
-        return chapters;
+        return Collections.unmodifiableList(chapters);
     }
 
     /**
-     * Adds a chapter to the book
+     * Adds a chapter to the book.
+     * Each change copies the chapter list; use {@link #addChapters(Collection)} to add many at once.
      *
      * @param chapter The chapter to add
      */
     public void addChapter(Chapter chapter) {
-        this.chapters.add(chapter);
+        addChapters(List.of(chapter));
+    }
+
+    /**
+     * Adds several chapters to the book with a single copy of the chapter list
+     *
+     * @param added The chapters to add
+     */
+    public synchronized void addChapters(Collection<? extends Chapter> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        List<Chapter> updated = new ArrayList<>(chapters.size() + added.size());
+        updated.addAll(chapters);
+        updated.addAll(added);
+        chapters = updated;
+    }
+
+    /**
+     * Replaces a chapter of the book, keeping its position
+     *
+     * @param previous The chapter to replace
+     * @param replacement The new chapter
+     * @return True if the previous chapter was found and replaced
+     */
+    public synchronized boolean replaceChapter(Chapter previous, Chapter replacement) {
+        int index = chapters.indexOf(previous);
+        if (index == -1) {
+            return false;
+        }
+        List<Chapter> updated = new ArrayList<>(chapters);
+        updated.set(index, replacement);
+        chapters = updated;
+        return true;
+    }
+
+    /**
+     * Copies the descriptive fields of another book of the same type, such as a newer version
+     * of its information file; the ID and chapters are kept
+     *
+     * @param source The book to copy from
+     */
+    public void updateDetails(Book source) {
+        this.title = source.title;
+        this.description = source.description;
+        this.coverImagePath = source.coverImagePath;
+        this.resolvedCoverUri = source.resolvedCoverUri;
+        this.status = source.status;
+        this.artist = source.artist;
+        this.dateAdded = source.dateAdded;
+        // A new set rather than an update in place, as searches may be iterating over the current one
+        this.genres = new HashSet<>(source.genres);
+    }
+
+    /**
+     * Gets the chapters ordered by their order number.
+     * The ordered view is computed once and reused until the chapters change.
+     *
+     * @return Unmodifiable list of chapters sorted by order number
+     */
+    public List<Chapter> getSortedChapters() {
+        List<Chapter> current = chapters;
+        SortedChapters cached = sortedChapters;
+        if (cached == null || cached.source() != current) {
+            List<Chapter> copy = new ArrayList<>(current);
+            copy.sort(Comparator.comparingInt(Chapter::getNumOrder));
+            cached = new SortedChapters(current, Collections.unmodifiableList(copy));
+            sortedChapters = cached;
+        }
+        return cached.sorted();
     }
 
     /**
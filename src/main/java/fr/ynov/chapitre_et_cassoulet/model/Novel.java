@@ -72,6 +72,15 @@ public class Novel extends Book {
         this.translator = translator;
     }
 
+    @Override
+    public void updateDetails(Book source) {
+        super.updateDetails(source);
+        if (source instanceof Novel novel) {
+            this.origin = novel.origin;
+            this.translator = novel.translator;
+        }
+    }
+
     /**
      * Displays detailed information about the novel including type-specific details
      * Overrides the displayDetails method from the Book class
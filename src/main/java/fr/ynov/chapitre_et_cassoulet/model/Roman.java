@@ -72,6 +72,15 @@ public class Roman extends Book {
         this.illustrator = illustrator;
     }
 
+    @Override
+    public void updateDetails(Book source) {
+        super.updateDetails(source);
+        if (source instanceof Roman roman) {
+            this.series = roman.series;
+            this.illustrator = roman.illustrator;
+        }
+    }
+
     /**
      * Displays detailed information about the roman including type-specific details
      * Overrides the displayDetails method from the Book class
@@ -1,126 +1,187 @@
 package main.java.fr.ynov.chapitre_et_cassoulet.service;
 
+import main.java.fr.ynov.chapitre_et_cassoulet.api.LibraryHttpServer;
 import main.java.fr.ynov.chapitre_et_cassoulet.exception.FileOperationException;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
 import main.java.fr.ynov.chapitre_et_cassoulet.model.*;
 import main.java.fr.ynov.chapitre_et_cassoulet.gui.Interface;
+import main.java.fr.ynov.chapitre_et_cassoulet.gui.utils.EdtWatchdog;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
 
 import javax.swing.*;
-import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 public class ApplicationLauncher {
-
+    private static final Logger LOG = Logger.getLogger(ApplicationLauncher.class);
+    private static final int SNAPSHOT_BATCH_SIZE = 500;
+    private static final String METRICS_DUMP_PROPERTY = "cassoulet.metrics.dumpSeconds";
+    private static final String HTTP_PORT_PROPERTY = "cassoulet.http.port";
+    private static final String WATCH_PROPERTY = "cassoulet.watch";
+
+    /**
+     * Shows the main window right away with an empty catalogue, then loads
+     * the library on a background worker and streams books into the window
+     */
     public void start() {
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         } catch (Exception e) {
-            System.err.println("Failed to set UI look and feel: " + e.getMessage());
+            LOG.warn("Failed to set UI look and feel: " + e.getMessage());
         }
 
-        Library library = loadOrCreateLibrary();
-
-        if (library.getCatalogue().isEmpty()) {
-            addSampleData(library);
-        }
+        Library library = new Library();
+        startMetrics(library);
+        startHttpServer(library);
+        EdtWatchdog.install();
 
         SwingUtilities.invokeLater(() -> {
             Interface ui = new Interface(library);
             ui.setVisible(true);
+            new LibraryLoadWorker(library, ui).execute();
         });
     }
 
-    private Library loadOrCreateLibrary() {
-        FileManager fileManager = new FileManager();
-        try {
-            return fileManager.loadLibrary();
-        } catch (FileOperationException e) {
-            System.out.println("Creating new library: " + e.getMessage());
-            return new Library();
+    /**
+     * Exposes the metrics over JMX and, when the {@value #METRICS_DUMP_PROPERTY} system property
+     * is set to a number of seconds, prints a text dump of them at that interval
+     *
+     * @param library The library whose size is reported
+     */
+    private void startMetrics(Library library) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("library.books", library::getTotalBooks);
+        metrics.registerMBeans();
+
+        long dumpSeconds = Long.getLong(METRICS_DUMP_PROPERTY, 0L);
+        if (dumpSeconds > 0) {
+            metrics.startPeriodicDump(dumpSeconds, System.out::print);
         }
     }
 
-    private void addSampleData(Library library) {
+    /**
+     * Serves the library over HTTP on localhost while the window is open, when the
+     * {@value #HTTP_PORT_PROPERTY} system property is set to a port
+     *
+     * @param library The library to serve
+     */
+    private void startHttpServer(Library library) {
+        Integer port = Integer.getInteger(HTTP_PORT_PROPERTY);
+        if (port == null) {
+            return;
+        }
         try {
-            DataLoader dataLoader = new DataLoader();
-
-            loadFromJsonStructure(library, dataLoader);
-
-            System.out.println("Total books loaded: " + library.getCatalogue().size());
-        } catch (Exception e) {
-            System.err.println("Failed to load sample data: " + e.getMessage());
+            new LibraryHttpServer(library, new InetSocketAddress(InetAddress.getLoopbackAddress(), port)).start();
+        } catch (IOException e) {
+            LOG.warn("Failed to start the HTTP API on port " + port + ": " + e.getMessage());
         }
     }
 
-    private void loadFromJsonStructure(Library library, DataLoader dataLoader) {
-        try {
-            FileManager fileManager = new FileManager();
-            String resourcesPath = fileManager.getResourcesPath();
-            String booksRootPath = resourcesPath + File.separator + "data" + File.separator + "books";
+    /**
+     * Fills the library off the Event Dispatch Thread; the interface follows the library's
+     * change events and this worker only reports progress
+     */
+    private static class LibraryLoadWorker extends SwingWorker<Integer, Void> {
+        private final Library library;
+        private final Interface ui;
+        private final long start = System.nanoTime();
+
+        LibraryLoadWorker(Library library, Interface ui) {
+            this.library = library;
+            this.ui = ui;
+            addPropertyChangeListener(event -> {
+                if ("progress".equals(event.getPropertyName())) {
+                    ui.setLoadingProgress((Integer) event.getNewValue());
+                }
+            });
+        }
 
-            File booksRoot = new File(booksRootPath);
-            System.out.println("Looking for books in: " + booksRoot.getAbsolutePath());
+        @Override
+        protected Integer doInBackground() {
+            if (loadSnapshot()) {
+                return library.getTotalBooks();
+            }
 
-            if (!booksRoot.exists() || !booksRoot.isDirectory()) {
-                System.err.println("Books directory not found: " + booksRoot.getAbsolutePath());
-                return;
+            try {
+                DataLoader dataLoader = new DataLoader();
+                LibraryLoader loader = new LibraryLoader(dataLoader);
+                Path booksRoot = LibraryLoader.getDefaultBooksRoot();
+                IngestManifest manifest = IngestManifest.open(booksRoot);
+                loader.setManifest(manifest);
+                loader.loadBooks(booksRoot, (book, seriesProcessed, seriesTotal) -> {
+                    library.addBook(book);
+                    setProgress(seriesProcessed * 100 / seriesTotal);
+                });
+                saveManifest(manifest);
+                startWatcher(booksRoot, dataLoader);
+            } catch (Exception e) {
+                LOG.error("Failed to load sample data", e);
             }
+            return library.getTotalBooks();
+        }
 
-            File[] bookTypeDirectories = booksRoot.listFiles(File::isDirectory);
-            if (bookTypeDirectories == null) {
-                System.err.println("No book type directories found");
+        private void saveManifest(IngestManifest manifest) {
+            try {
+                manifest.save();
+            } catch (FileOperationException e) {
+                LOG.warn("The next start will parse the books tree again: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Keeps the library in step with a books tree on disk, unless the {@value #WATCH_PROPERTY}
+         * system property is set to false
+         */
+        private void startWatcher(Path booksRoot, DataLoader dataLoader) {
+            if (!Boolean.parseBoolean(System.getProperty(WATCH_PROPERTY, "true"))
+                    || booksRoot.getFileSystem() != FileSystems.getDefault()) {
                 return;
             }
+            try {
+                new LibraryWatcher(booksRoot, library, dataLoader).start();
+            } catch (FileOperationException e) {
+                LOG.warn("Changes to the books tree will not be picked up: " + e.getMessage());
+            }
+        }
 
-            System.out.println("Found " + bookTypeDirectories.length + " book type directories");
-
-            for (File bookTypeDir : bookTypeDirectories) {
-                System.out.println("Processing book type directory: " + bookTypeDir.getName());
-                File[] bookSeriesDirs = bookTypeDir.listFiles(File::isDirectory);
-                if (bookSeriesDirs == null) continue;
-
-                System.out.println("Found " + bookSeriesDirs.length + " book series directories in " + bookTypeDir.getName());
-                for (File seriesDir : bookSeriesDirs) {
-                    System.out.println("Processing series directory: " + seriesDir.getName());
-                    File infoDir = new File(seriesDir, "information");
-                    if (!infoDir.exists() || !infoDir.isDirectory()) {
-                        System.out.println("No information directory found in: " + seriesDir.getAbsolutePath());
-                        continue;
-                    }
-
-                    File[] infoFiles = infoDir.listFiles((dir, name) -> name.endsWith(".json"));
-                    if (infoFiles == null || infoFiles.length == 0) {
-                        System.out.println("No info files found in: " + infoDir.getAbsolutePath());
-                        continue;
-                    }
-
-                    System.out.println("Loading book from: " + infoFiles[0].getAbsolutePath());
-                    Book book = dataLoader.loadBookFromFile(infoFiles[0].getPath());
-
-                    File chaptersDir = new File(seriesDir, "chapters");
-                    if (chaptersDir.exists() && chaptersDir.isDirectory()) {
-                        File[] chapterFiles = chaptersDir.listFiles((dir, name) -> name.endsWith(".json"));
-                        if (chapterFiles != null) {
-                            System.out.println("Found " + chapterFiles.length + " chapter files");
-                            for (File chapterFile : chapterFiles) {
-                                try {
-                                    TextChapter chapter = dataLoader.loadChapterFromFile(chapterFile.getPath());
-                                    book.addChapter(chapter);
-                                } catch (FileOperationException e) {
-                                    System.err.println("Error loading chapter from " + chapterFile.getPath() + ": " + e.getMessage());
-                                }
-                            }
-                        }
-                    }
+        private boolean loadSnapshot() {
+            FileManager fileManager = new FileManager();
+            Library snapshot;
+            try {
+                snapshot = fileManager.loadLibrary();
+            } catch (FileOperationException e) {
+                LOG.info("No library snapshot, loading the books tree: " + e.getMessage());
+                return false;
+            }
 
-                    library.addBook(book);
-                    System.out.println("Added book to library: " + book.getTitle());
-                }
+            List<Book> books = snapshot.getCatalogue();
+            if (books.isEmpty()) {
+                return false;
             }
 
-            System.out.println("Total books loaded: " + library.getCatalogue().size());
-        } catch (Exception e) {
-            System.err.println("Error loading from JSON structure: " + e.getMessage());
-            e.printStackTrace();
+            for (int start = 0; start < books.size(); start += SNAPSHOT_BATCH_SIZE) {
+                List<Book> batch = books.subList(start, Math.min(start + SNAPSHOT_BATCH_SIZE, books.size()));
+                library.addBooks(batch);
+                setProgress((start + batch.size()) * 100 / books.size());
+            }
+            return true;
         }
-    }
 
-}
\ No newline at end of file
+        @Override
+        protected void done() {
+            try {
+                get();
+            } catch (InterruptedException | ExecutionException e) {
+                LOG.error("Library loading failed", e);
+            }
+            LOG.info("Library ready with " + library.getTotalBooks() + " books after "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            ui.loadingFinished();
+        }
+    }
+}
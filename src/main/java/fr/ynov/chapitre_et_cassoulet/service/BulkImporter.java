@@ -0,0 +1,404 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.service;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.exception.BookNotFoundException;
+import main.java.fr.ynov.chapitre_et_cassoulet.exception.FileOperationException;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.Counter;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Chapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.TextChapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Imports a whole catalogue from one file of newline-delimited JSON records instead of a tree of small files.
+ * <p>
+ * Each line holds one record: a book, with the fields of an information file and {@code "record":"book"},
+ * or a chapter, with the fields of a chapter file, {@code "record":"chapter"} and the {@code bookId} of a
+ * book that appears earlier in the stream or is already in the library. Blank lines are ignored.
+ * The file may be plain ({@code .ndjson}, {@code .jsonl}), gzip-compressed ({@code .gz}) or a ZIP archive
+ * whose record entries are read in archive order.
+ * <p>
+ * The input is decoded and split into lines incrementally, so only the current record and the current
+ * batch are held besides the library itself, however large the file is. Books are handed to the library
+ * with {@link Library#addBooks(java.util.Collection)}, which updates its index and announces them once
+ * per batch. Records that cannot be parsed are skipped and reported, like unreadable files of a tree.
+ */
+public class BulkImporter {
+    /** Default number of records parsed before they are handed to the library */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    /** Longest record accepted, in characters; longer lines are skipped without being held in memory */
+    public static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * Receives the records that could not be imported
+     */
+    @FunctionalInterface
+    public interface ErrorListener {
+        /**
+         * Called once per record that was skipped
+         *
+         * @param source The file, or archive entry, the record was read from
+         * @param line The line number of the record in its source, starting at 1
+         * @param error Why the record could not be imported
+         */
+        void recordFailed(String source, long line, FileOperationException error);
+    }
+
+    /**
+     * Outcome of an import
+     *
+     * @param books Number of books added
+     * @param chapters Number of chapters added
+     * @param skipped Number of records skipped
+     * @param bytes Number of bytes read from the file, compressed if it is
+     * @param nanos Time spent importing
+     */
+    public record Result(int books, int chapters, int skipped, long bytes, long nanos) {
+    }
+
+    private static final Logger LOG = Logger.getLogger(BulkImporter.class);
+    private static final Counter BOOKS_LOADED = MetricsRegistry.getInstance().counter("ingest.books");
+    private static final Counter CHAPTERS_LOADED = MetricsRegistry.getInstance().counter("ingest.chapters");
+    private static final Counter LOAD_ERRORS = MetricsRegistry.getInstance().counter("ingest.errors");
+    private static final Counter BYTES_READ = MetricsRegistry.getInstance().counter("ingest.bytesRead");
+    private static final LatencyHistogram BATCH_TIME = MetricsRegistry.getInstance().histogram("ingest.import.batch");
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final DataLoader dataLoader;
+    private final Library library;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private ErrorListener errorListener;
+
+    /**
+     * Creates an importer adding to the given library
+     *
+     * @param dataLoader The parser for book and chapter records
+     * @param library The library receiving the imported books
+     */
+    public BulkImporter(DataLoader dataLoader, Library library) {
+        this.dataLoader = dataLoader;
+        this.library = library;
+    }
+
+    /**
+     * Sets how many records are parsed before they are handed to the library
+     *
+     * @param batchSize The number of records per batch
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the listener told about every record that is skipped because it cannot be imported
+     *
+     * @param errorListener The listener, or null to only log the errors
+     */
+    public void setErrorListener(ErrorListener errorListener) {
+        this.errorListener = errorListener;
+    }
+
+    /**
+     * Imports every record of a file, choosing how to read it from its extension
+     *
+     * @param file A {@code .zip}, {@code .gz} or plain record file
+     * @return What was imported
+     * @throws FileOperationException If the file cannot be read; records imported before the failure are kept
+     */
+    public Result importFile(Path file) throws FileOperationException {
+        long start = System.nanoTime();
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        ImportRun run = new ImportRun();
+        try (CountingInputStream in = new CountingInputStream(
+                new BufferedInputStream(Files.newInputStream(file), INPUT_BUFFER_SIZE))) {
+            try {
+                if (name.endsWith(".zip")) {
+                    ZipInputStream zip = new ZipInputStream(in, StandardCharsets.UTF_8);
+                    ZipEntry entry;
+                    while ((entry = zip.getNextEntry()) != null) {
+                        if (!entry.isDirectory() && isRecordFile(entry.getName())) {
+                            run.read(zip, file + "!" + entry.getName());
+                        }
+                    }
+                } else if (name.endsWith(".gz")) {
+                    run.read(new GZIPInputStream(in, INPUT_BUFFER_SIZE), file.toString());
+                } else {
+                    run.read(in, file.toString());
+                }
+            } finally {
+                run.flush();
+                BYTES_READ.add(in.count);
+            }
+            return run.finish(in.count, start, file.toString());
+        } catch (IOException e) {
+            throw new FileOperationException("Error importing " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Imports every record of an uncompressed stream, such as standard input. The stream is not closed.
+     *
+     * @param in The UTF-8 records
+     * @param source Name of the stream used in error reports
+     * @return What was imported
+     * @throws FileOperationException If the stream cannot be read; records imported before the failure are kept
+     */
+    public Result importStream(InputStream in, String source) throws FileOperationException {
+        long start = System.nanoTime();
+        ImportRun run = new ImportRun();
+        CountingInputStream counted = new CountingInputStream(in);
+        try {
+            run.read(counted, source);
+        } catch (IOException e) {
+            throw new FileOperationException("Error importing " + source + ": " + e.getMessage(), e);
+        } finally {
+            run.flush();
+            BYTES_READ.add(counted.count);
+        }
+        return run.finish(counted.count, start, source);
+    }
+
+    private static boolean isRecordFile(String entryName) {
+        String lowerName = entryName.toLowerCase(Locale.ROOT);
+        return lowerName.endsWith(".ndjson") || lowerName.endsWith(".jsonl") || lowerName.endsWith(".json");
+    }
+
+    /**
+     * State of one import: the batch not yet handed to the library, and running totals
+     */
+    private final class ImportRun {
+        private final List<Book> pendingBooks = new ArrayList<>();
+        private final Map<Integer, Book> pendingById = new HashMap<>();
+        private final Map<Book, List<Chapter>> pendingNewChapters = new HashMap<>();
+        private final Map<Book, List<Chapter>> pendingChapters = new LinkedHashMap<>();
+        private int pendingRecords;
+        private int pendingChapterCount;
+        private int books;
+        private int chapters;
+        private int skipped;
+
+        void read(InputStream in, String source) throws IOException {
+            RecordReader records = new RecordReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String record;
+            while ((record = records.next()) != null) {
+                if (records.truncated) {
+                    skip(source, records.line, new FileOperationException(
+                            "Record longer than " + MAX_RECORD_LENGTH + " characters"));
+                } else if (!record.isBlank()) {
+                    try {
+                        add(record);
+                    } catch (FileOperationException e) {
+                        skip(source, records.line, e);
+                    }
+                }
+            }
+        }
+
+        private void add(String record) throws FileOperationException {
+            String type = dataLoader.parseRecordType(record);
+            if ("book".equals(type)) {
+                Book book = dataLoader.parseBook(record);
+                pendingBooks.add(book);
+                pendingById.putIfAbsent(book.getId(), book);
+                books++;
+            } else if ("chapter".equals(type)) {
+                int bookId = dataLoader.parseBookId(record);
+                TextChapter chapter = dataLoader.parseChapter(record);
+                Book book = pendingById.get(bookId);
+                if (book != null) {
+                    // Not in the library yet, so the chapters are attached before the book is published
+                    pendingNewChapters.computeIfAbsent(book, key -> new ArrayList<>()).add(chapter);
+                } else {
+                    book = findBook(bookId);
+                    pendingChapters.computeIfAbsent(book, key -> new ArrayList<>()).add(chapter);
+                }
+                chapters++;
+                pendingChapterCount++;
+            } else {
+                throw new FileOperationException("Unknown record type: " + type);
+            }
+            if (++pendingRecords >= batchSize) {
+                flush();
+            }
+        }
+
+        private Book findBook(int bookId) throws FileOperationException {
+            try {
+                return library.getBookById(bookId);
+            } catch (BookNotFoundException e) {
+                throw new FileOperationException("Chapter of unknown book " + bookId, e);
+            }
+        }
+
+        private void skip(String source, long line, FileOperationException error) {
+            skipped++;
+            LOAD_ERRORS.increment();
+            LOG.warn("Skipped record at " + source + ":" + line + ": " + error.getMessage());
+            if (errorListener != null) {
+                errorListener.recordFailed(source, line, error);
+            }
+        }
+
+        /**
+         * Hands the batch to the library: one index update and one event batch for the books,
+         * then one per book for chapters of books imported by earlier batches
+         */
+        void flush() {
+            if (pendingRecords == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            for (Map.Entry<Book, List<Chapter>> entry : pendingNewChapters.entrySet()) {
+                entry.getKey().addChapters(entry.getValue());
+            }
+            library.addBooks(pendingBooks);
+            for (Map.Entry<Book, List<Chapter>> entry : pendingChapters.entrySet()) {
+                library.addChapters(entry.getKey(), entry.getValue());
+            }
+            BATCH_TIME.recordSince(start);
+            BOOKS_LOADED.add(pendingBooks.size());
+            CHAPTERS_LOADED.add(pendingChapterCount);
+            pendingBooks.clear();
+            pendingById.clear();
+            pendingNewChapters.clear();
+            pendingChapters.clear();
+            pendingRecords = 0;
+            pendingChapterCount = 0;
+        }
+
+        Result finish(long bytes, long start, String source) {
+            Result result = new Result(books, chapters, skipped, bytes, System.nanoTime() - start);
+            LOG.info("Imported " + books + " books and " + chapters + " chapters from " + source + " in "
+                    + result.nanos() / 1_000_000 + " ms (" + skipped + " records skipped)");
+            return result;
+        }
+    }
+
+    /**
+     * Splits decoded text into lines without ever holding more than one line, dropping the content of
+     * lines longer than {@link #MAX_RECORD_LENGTH}
+     */
+    private static final class RecordReader {
+        private final Reader reader;
+        private final char[] buffer = new char[INPUT_BUFFER_SIZE];
+        private final StringBuilder record = new StringBuilder();
+        private int position;
+        private int limit;
+        private long line;
+        private boolean truncated;
+
+        RecordReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Reads the next line, without its line break
+         *
+         * @return The line, empty if it was truncated, or null at the end of the input
+         */
+        String next() throws IOException {
+            record.setLength(0);
+            truncated = false;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        if (record.isEmpty() && !truncated) {
+                            return null;
+                        }
+                        line++;
+                        return record.toString();
+                    }
+                }
+                int end = position;
+                while (end < limit && buffer[end] != '\n') {
+                    end++;
+                }
+                append(position, end);
+                if (end < limit) {
+                    position = end + 1;
+                    line++;
+                    int length = record.length();
+                    if (length > 0 && record.charAt(length - 1) == '\r') {
+                        record.setLength(length - 1);
+                    }
+                    return record.toString();
+                }
+                position = limit;
+            }
+        }
+
+        private void append(int from, int to) {
+            if (truncated) {
+                return;
+            }
+            if (record.length() + (to - from) > MAX_RECORD_LENGTH) {
+                truncated = true;
+                record.setLength(0);
+                return;
+            }
+            record.append(buffer, from, to - from);
+        }
+    }
+
+    /**
+     * Counts the bytes read from a stream
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
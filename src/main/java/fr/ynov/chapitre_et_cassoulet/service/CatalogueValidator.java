@@ -0,0 +1,109 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.service;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.exception.ChapterContentException;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Chapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.TextChapter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks a loaded library for data problems that the loader tolerates but that show up as
+ * confusing behaviour later: duplicate identifiers, books without a title or status, duplicate
+ * chapter numbers, empty chapters and missing covers.
+ */
+public class CatalogueValidator {
+
+    /**
+     * How serious an issue is
+     */
+    public enum Severity {
+        /** The data works but is probably incomplete */
+        WARNING,
+        /** The data is wrong and some of it cannot be shown or reached */
+        ERROR
+    }
+
+    /**
+     * One problem found in the data
+     *
+     * @param severity How serious the problem is
+     * @param code Stable identifier of the kind of problem, such as {@code DUPLICATE_BOOK_ID}
+     * @param location The book, chapter or file concerned
+     * @param message Human-readable description
+     */
+    public record Issue(Severity severity, String code, String location, String message) {
+    }
+
+    /**
+     * Validates every book of a library
+     *
+     * @param library The library to check
+     * @return The issues found, in catalogue order
+     */
+    public List<Issue> validate(Library library) {
+        List<Issue> issues = new ArrayList<>();
+        Map<Integer, Book> booksById = new HashMap<>();
+
+        for (Book book : library.getCatalogue()) {
+            String location = "book " + book.getId();
+            Book previous = booksById.putIfAbsent(book.getId(), book);
+            if (previous != null) {
+                issues.add(new Issue(Severity.ERROR, "DUPLICATE_BOOK_ID", location,
+                        "\"" + book.getTitle() + "\" has the same ID as \"" + previous.getTitle() + "\""));
+            }
+            if (isBlank(book.getTitle())) {
+                issues.add(new Issue(Severity.ERROR, "MISSING_TITLE", location, "Book has no title"));
+            }
+            if (isBlank(book.getStatus())) {
+                issues.add(new Issue(Severity.WARNING, "MISSING_STATUS", location, "Book has no status"));
+            }
+            validateCover(book, location, issues);
+            validateChapters(book, location, issues);
+        }
+        return issues;
+    }
+
+    private void validateCover(Book book, String location, List<Issue> issues) {
+        Path cover = book.getCoverPath();
+        if (cover == null) {
+            issues.add(new Issue(Severity.WARNING, "NO_COVER", location, "Book has no cover image"));
+        } else if (!Files.isRegularFile(cover)) {
+            issues.add(new Issue(Severity.ERROR, "COVER_NOT_FOUND", location, "Cover image " + cover + " does not exist"));
+        }
+    }
+
+    private void validateChapters(Book book, String location, List<Issue> issues) {
+        if (book.getChapters().isEmpty()) {
+            issues.add(new Issue(Severity.WARNING, "NO_CHAPTERS", location, "Book has no chapters"));
+            return;
+        }
+
+        Set<Integer> numbers = new HashSet<>();
+        for (Chapter chapter : book.getChapters()) {
+            String chapterLocation = location + " chapter " + chapter.getNumOrder();
+            if (!numbers.add(chapter.getNumOrder())) {
+                issues.add(new Issue(Severity.ERROR, "DUPLICATE_CHAPTER_NUMBER", chapterLocation,
+                        "Several chapters are numbered " + chapter.getNumOrder()));
+            }
+            if (chapter instanceof TextChapter textChapter) {
+                try {
+                    textChapter.validateContent();
+                } catch (ChapterContentException e) {
+                    issues.add(new Issue(Severity.ERROR, "EMPTY_CHAPTER", chapterLocation, e.getMessage()));
+                }
+            }
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
@@ -2,38 +2,96 @@ package main.java.fr.ynov.chapitre_et_cassoulet.service;
 
 import main.java.fr.ynov.chapitre_et_cassoulet.exception.ChapterContentException;
 import main.java.fr.ynov.chapitre_et_cassoulet.exception.FileOperationException;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.BookIngestedEvent;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.ChapterParsedEvent;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.Counter;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
 import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
 import main.java.fr.ynov.chapitre_et_cassoulet.model.Novel;
 import main.java.fr.ynov.chapitre_et_cassoulet.model.Roman;
 import main.java.fr.ynov.chapitre_et_cassoulet.model.TextChapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public class DataLoader {
+    private static final String COVER_IMAGE_DIRECTORY = "coverImage";
+    private static final Logger LOG = Logger.getLogger(DataLoader.class);
+
+    private static final LatencyHistogram READ_TIME = MetricsRegistry.getInstance().histogram("ingest.read");
+    private static final Counter BYTES_READ = MetricsRegistry.getInstance().counter("ingest.bytesRead");
+    private static final LatencyHistogram BOOK_PARSE_TIME = MetricsRegistry.getInstance().histogram("ingest.parse.book");
+    private static final LatencyHistogram CHAPTER_PARSE_TIME =
+            MetricsRegistry.getInstance().histogram("ingest.parse.chapter");
+    private static final byte[] UTF8_BYTE_ORDER_MARK = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    private IngestStatistics statistics;
+
+    /**
+     * Sets the statistics that file reads and parses are recorded into
+     *
+     * @param statistics The statistics to update, or null to stop recording
+     */
+    public void setStatistics(IngestStatistics statistics) {
+        this.statistics = statistics;
+    }
 
     /**
-     * Reads file content as string
+     * Reads the bytes of a book or chapter file, from any file system, recording the read
+     *
+     * @param filePath The file to read
+     * @param chapter Whether the file is a chapter file, for the statistics
+     * @return The content of the file
+     * @throws FileOperationException If the file cannot be read
      */
-    private String readFile(String filePath) throws FileOperationException {
+    byte[] readFileBytes(Path filePath, boolean chapter) throws FileOperationException {
         try {
-            return new String(Files.readAllBytes(Paths.get(filePath)));
+            long start = System.nanoTime();
+            byte[] bytes = Files.readAllBytes(filePath);
+            long elapsed = System.nanoTime() - start;
+            READ_TIME.record(elapsed);
+            BYTES_READ.add(bytes.length);
+            if (statistics != null) {
+                statistics.addRead(elapsed, bytes.length, chapter);
+            }
+            return bytes;
         } catch (IOException e) {
             throw new FileOperationException("Error reading file: " + filePath, e);
         }
     }
 
+    /**
+     * Decodes file content as UTF-8 whatever the platform encoding, dropping a leading byte order mark
+     */
+    private static String decode(byte[] bytes) {
+        int offset = hasByteOrderMark(bytes) ? UTF8_BYTE_ORDER_MARK.length : 0;
+        return new String(bytes, offset, bytes.length - offset, StandardCharsets.UTF_8);
+    }
+
+    private static boolean hasByteOrderMark(byte[] bytes) {
+        return bytes.length >= UTF8_BYTE_ORDER_MARK.length
+                && Arrays.equals(bytes, 0, UTF8_BYTE_ORDER_MARK.length, UTF8_BYTE_ORDER_MARK, 0, UTF8_BYTE_ORDER_MARK.length);
+    }
+
     /**
      * Parse chapter information from JSON string
      */
-    private TextChapter parseChapter(String json) throws FileOperationException {
+    public TextChapter parseChapter(String json) throws FileOperationException {
         try {
             int id = extractIntField(json, "id");
             String title = extractStringField(json, "title");
@@ -55,6 +113,26 @@ public class DataLoader {
         }
     }
 
+    /**
+     * Gets the kind of record a line of a bulk import holds
+     *
+     * @param json The record
+     * @return The value of its {@code record} field, or null if it has none
+     */
+    public String parseRecordType(String json) {
+        return extractStringField(json, "record");
+    }
+
+    /**
+     * Gets the book a chapter record of a bulk import belongs to
+     *
+     * @param json The chapter record
+     * @return The value of its {@code bookId} field, or 0 if it has none
+     */
+    public int parseBookId(String json) {
+        return extractIntField(json, "bookId");
+    }
+
     /**
      * Extract a string field from JSON
      */
@@ -76,7 +154,7 @@ public class DataLoader {
 
         char firstChar = json.charAt(valueStartIndex);
         if (firstChar != '"') {
-            if (json.substring(valueStartIndex).startsWith("null")) {
+            if (json.startsWith("null", valueStartIndex)) {
                 return null;
             }
 
@@ -98,28 +176,69 @@ public class DataLoader {
 
         valueStartIndex++;
 
-        boolean escaped = false;
-        int valueEndIndex = -1;
-        for (int i = valueStartIndex; i < json.length(); i++) {
-            char c = json.charAt(i);
-            if (c == '"' && !escaped) {
-                valueEndIndex = i;
-                break;
-            }
-            escaped = (c == '\\' && !escaped);
-        }
-
+        int valueEndIndex = findClosingQuote(json, valueStartIndex);
         if (valueEndIndex == -1) {
             return null;
         }
 
-        String value = json.substring(valueStartIndex, valueEndIndex);
-        return value.replace("\\\"", "\"")
-                .replace("\\\\", "\\")
-                .replace("\\/", "/")
-                .replace("\\n", "\n")
-                .replace("\\r", "\r")
-                .replace("\\t", "\t");
+        return unescape(json, valueStartIndex, valueEndIndex);
+    }
+
+    /**
+     * Finds the quote ending a string value. Quotes are searched with {@link String#indexOf(int, int)},
+     * which scans many characters at a time; a quote preceded by an odd number of backslashes is escaped.
+     *
+     * @return The index of the closing quote, or -1 if the string is not terminated
+     */
+    private static int findClosingQuote(String json, int valueStartIndex) {
+        int quote = json.indexOf('"', valueStartIndex);
+        while (quote != -1) {
+            int backslashes = 0;
+            while (quote - backslashes - 1 >= valueStartIndex && json.charAt(quote - backslashes - 1) == '\\') {
+                backslashes++;
+            }
+            if (backslashes % 2 == 0) {
+                return quote;
+            }
+            quote = json.indexOf('"', quote + 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the escape sequences of a JSON string in one pass, so that an escaped backslash
+     * is never mistaken for the start of another sequence
+     */
+    private static String unescape(String json, int start, int end) {
+        int backslash = json.indexOf('\\', start, end);
+        if (backslash == -1) {
+            return json.substring(start, end);
+        }
+        StringBuilder value = new StringBuilder(end - start);
+        int runStart = start;
+        for (int i = backslash; i != -1 && i < end - 1; i = json.indexOf('\\', i + 1, end)) {
+            value.append(json, runStart, i);
+            char escaped = json.charAt(++i);
+            switch (escaped) {
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'u' -> {
+                    if (i + 4 < end) {
+                        value.append((char) Integer.parseInt(json, i + 1, i + 5, 16));
+                        i += 4;
+                    } else {
+                        value.append(escaped);
+                    }
+                }
+                default -> value.append(escaped);
+            }
+            runStart = i + 1;
+        }
+        value.append(json, runStart, end);
+        return value.toString();
     }
 
     /**
@@ -190,8 +309,8 @@ public class DataLoader {
 
         for (String element : elements) {
             element = element.trim();
-            if (element.startsWith("\"") && element.endsWith("\"")) {
-                element = element.substring(1, element.length() - 1);
+            if (element.length() >= 2 && element.startsWith("\"") && element.endsWith("\"")) {
+                element = unescape(element, 1, element.length() - 1);
             }
             result.add(element);
         }
@@ -230,14 +349,161 @@ public class DataLoader {
     }
 
     public Book loadBookFromFile(String filePath) throws FileOperationException {
-        String jsonContent = readFile(filePath);
-        return parseBook(jsonContent);
+        return loadBookFromFile(Paths.get(filePath));
+    }
+
+    public Book loadBookFromFile(Path filePath) throws FileOperationException {
+        BookIngestedEvent event = new BookIngestedEvent();
+        event.begin();
+        return loadBook(filePath, readFileBytes(filePath, false), event);
+    }
+
+    /**
+     * Parses a book from the content of its information file, already read with {@link #readFileBytes}
+     *
+     * @param filePath The information file, whose directory holds the cover
+     * @param content The content of the file
+     * @return The book, without chapters
+     * @throws FileOperationException If the content cannot be parsed
+     */
+    Book loadBookFromFile(Path filePath, byte[] content) throws FileOperationException {
+        BookIngestedEvent event = new BookIngestedEvent();
+        event.begin();
+        return loadBook(filePath, content, event);
+    }
+
+    private Book loadBook(Path filePath, byte[] content, BookIngestedEvent event) throws FileOperationException {
+        String json = decode(content);
+        long parseStart = System.nanoTime();
+        Book book = parseBook(json);
+        long parseEnd = System.nanoTime();
+        BOOK_PARSE_TIME.record(parseEnd - parseStart);
+
+        book.setCoverPath(resolveCoverPath(filePath, book.getCoverImagePath()));
+        if (statistics != null) {
+            statistics.addParse(parseEnd - parseStart);
+            statistics.addAssemble(System.nanoTime() - parseEnd);
+        }
+
+        if (event.shouldCommit()) {
+            event.setPath(filePath.toString());
+            event.setBytes(content.length);
+            event.setParseTime(parseEnd - parseStart);
+            event.setBook(book.getId(), book.getTitle());
+            event.commit();
+        }
+        return book;
+    }
+
+    /**
+     * Looks up the cover image of a book again, such as a book read from a cache whose cover may have changed
+     *
+     * @param book The book
+     * @param infoFile The information file the book was read from
+     */
+    public void resolveCover(Book book, Path infoFile) {
+        book.setCoverPath(resolveCoverPath(infoFile, book.getCoverImagePath()));
+    }
+
+    /**
+     * Resolves the cover image of a book relative to the coverImage directory next to its info file.
+     * The declared file name is preferred; otherwise the first image found in the directory is used.
+     *
+     * @param infoFile The info file the book was loaded from
+     * @param declaredCover The cover image declared in the info file, may be null
+     * @return The canonical path of the cover image, or null if none exists
+     */
+    private Path resolveCoverPath(Path infoFile, String declaredCover) {
+        Path coverDirectory = infoFile.toAbsolutePath().resolveSibling(COVER_IMAGE_DIRECTORY);
+        if (!Files.isDirectory(coverDirectory)) {
+            return null;
+        }
+
+        try {
+            if (declaredCover != null && !declaredCover.isEmpty()) {
+                Path declared = coverDirectory.resolve(fileName(declaredCover));
+                if (Files.isRegularFile(declared)) {
+                    return declared.toRealPath();
+                }
+            }
+
+            try (Stream<Path> files = Files.list(coverDirectory)) {
+                Optional<Path> firstImage = files
+                        .filter(Files::isRegularFile)
+                        .filter(file -> isImageFile(file.getFileName().toString()))
+                        .sorted()
+                        .findFirst();
+                return firstImage.isPresent() ? firstImage.get().toRealPath() : null;
+            }
+        } catch (IOException | InvalidPathException e) {
+            LOG.warn("Could not resolve cover image in " + coverDirectory + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gets the last segment of a declared path, whichever separator it uses, so it can be resolved on any file system
+     */
+    private static String fileName(String declaredPath) {
+        int separator = Math.max(declaredPath.lastIndexOf('/'), declaredPath.lastIndexOf('\\'));
+        return declaredPath.substring(separator + 1);
+    }
+
+    private boolean isImageFile(String fileName) {
+        String lowerName = fileName.toLowerCase();
+        return lowerName.endsWith(".jpg") || lowerName.endsWith(".jpeg") || lowerName.endsWith(".png");
     }
 
     public TextChapter loadChapterFromFile(String filePath) throws FileOperationException {
+        return loadChapterFromFile(Paths.get(filePath));
+    }
+
+    public TextChapter loadChapterFromFile(Path filePath) throws FileOperationException {
+        ChapterParsedEvent event = new ChapterParsedEvent();
+        event.begin();
+        byte[] content;
+        try {
+            content = readFileBytes(filePath, true);
+        } catch (FileOperationException e) {
+            throw new ChapterContentException("Failed to load chapter content from " + filePath, e);
+        }
+        return loadChapter(filePath, content, event);
+    }
+
+    /**
+     * Parses a chapter from the content of its file, already read with {@link #readFileBytes}
+     *
+     * @param filePath The chapter file
+     * @param content The content of the file
+     * @return The chapter
+     * @throws FileOperationException If the content cannot be parsed
+     */
+    TextChapter loadChapterFromFile(Path filePath, byte[] content) throws FileOperationException {
+        ChapterParsedEvent event = new ChapterParsedEvent();
+        event.begin();
+        return loadChapter(filePath, content, event);
+    }
+
+    private TextChapter loadChapter(Path filePath, byte[] content, ChapterParsedEvent event)
+            throws FileOperationException {
         try {
-            String jsonContent = readFile(filePath);
-            return parseChapter(jsonContent);
+            String json = decode(content);
+            long parseStart = System.nanoTime();
+            TextChapter chapter = parseChapter(json);
+            long parseTime = System.nanoTime() - parseStart;
+            CHAPTER_PARSE_TIME.record(parseTime);
+            if (statistics != null) {
+                statistics.addParse(parseTime);
+            }
+
+            if (event.shouldCommit()) {
+                event.setPath(filePath.toString());
+                event.setBytes(content.length);
+                event.setParseTime(parseTime);
+                event.setChapter(chapter.getNumOrder(), chapter.getContentText().length());
+                event.commit();
+            }
+            return chapter;
         } catch (FileOperationException e) {
             if (e instanceof ChapterContentException) {
                 throw e;
@@ -288,7 +554,7 @@ public class DataLoader {
                     Date dateAdded = dateFormat.parse(dateAddedStr);
                     book.setDateAdded(dateAdded);
                 } catch (ParseException e) {
-                    System.err.println("Invalid date format: " + dateAddedStr);
+                    LOG.warn("Invalid date format: " + dateAddedStr);
                 }
             }
             for (String genre : genres) {
@@ -1,16 +1,41 @@
 package main.java.fr.ynov.chapitre_et_cassoulet.service;
 
 import main.java.fr.ynov.chapitre_et_cassoulet.exception.FileOperationException;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
 
 import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Handles file operations for the application, including saving and loading
- * the library data.
+ * the library data, and locating the books tree, which may be a directory,
+ * a ZIP or JAR archive, or a directory of the classpath.
  */
 public class FileManager {
+    private static final Logger LOG = Logger.getLogger(FileManager.class);
     private static final String LIBRARY_FILE = "library.dat";
     private static final String DATA_DIRECTORY = "src" + File.separator + "resources" + File.separator + "data";
+    /** Prefix of a books location naming a directory of the classpath, such as {@code classpath:/data/books} */
+    public static final String CLASSPATH_PREFIX = "classpath:";
+    /** Directories looked for inside an archive, in order, before falling back to its root */
+    private static final String[] ARCHIVE_BOOK_ROOTS = {"data/books", "books"};
+    private static final LatencyHistogram SNAPSHOT_LOAD_TIME = MetricsRegistry.getInstance().histogram("snapshot.load");
+    private static final LatencyHistogram SNAPSHOT_SAVE_TIME = MetricsRegistry.getInstance().histogram("snapshot.save");
 
     /**
      * Loads the library from a file
@@ -19,20 +44,98 @@ public class FileManager {
      * @throws FileOperationException If the library cannot be loaded
      */
     public Library loadLibrary() throws FileOperationException {
-        File file = new File(LIBRARY_FILE);
+        return loadLibrary(new File(LIBRARY_FILE));
+    }
 
+    /**
+     * Loads the library from the given snapshot file
+     *
+     * @param file The snapshot file
+     * @return The loaded library
+     * @throws FileOperationException If the library cannot be loaded
+     */
+    public Library loadLibrary(File file) throws FileOperationException {
         if (file.exists()) {
+            long start = System.nanoTime();
             try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
                 Library library = (Library) in.readObject();
-                System.out.println("Library loaded successfully from " + LIBRARY_FILE);
-                System.out.println("Loaded " + library.getCatalogue().size() + " books");
+                reopenCovers(library);
+                SNAPSHOT_LOAD_TIME.recordSince(start);
+                LOG.info("Loaded " + library.getTotalBooks() + " books from " + file.getPath() + " in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
                 return library;
             } catch (IOException | ClassNotFoundException e) {
                 throw new FileOperationException("Failed to load library: " + e.getMessage(), e);
             }
         } else {
-            throw new FileOperationException("Library file not found: " + LIBRARY_FILE);
+            throw new FileOperationException("Library file not found: " + file.getPath());
+        }
+    }
+
+    /**
+     * Resolves the cover locations of books read from a snapshot, opening the archives that hold them.
+     * Each archive is opened once; when it cannot be, the books it holds keep their cover URI but have no cover path.
+     *
+     * @param library The deserialized library
+     */
+    private static void reopenCovers(Library library) {
+        Map<String, Boolean> archives = new HashMap<>();
+        for (Book book : library.getCatalogue()) {
+            String cover = book.getCoverUri();
+            if (cover == null) {
+                continue;
+            }
+            if (cover.startsWith("jar:")) {
+                String archive = archiveOf(cover);
+                Boolean open = archives.get(archive);
+                if (open == null) {
+                    try {
+                        openArchive(URI.create(archive));
+                        open = true;
+                    } catch (FileOperationException | IllegalArgumentException e) {
+                        LOG.warn("Covers stored in " + archive + " are unavailable: " + e.getMessage());
+                        open = false;
+                    }
+                    archives.put(archive, open);
+                }
+                if (!open) {
+                    continue;
+                }
+            }
+            try {
+                book.setCoverPath(Paths.get(URI.create(cover)));
+            } catch (IllegalArgumentException | FileSystemNotFoundException e) {
+                LOG.debug("Cover " + cover + " of book " + book.getId() + " is unavailable: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the URI of the archive a {@code jar:} URI points into
+     *
+     * @param uri A URI such as {@code jar:file:/books.zip!/data/books}
+     * @return The archive URI, such as {@code file:/books.zip}
+     */
+    private static String archiveOf(String uri) {
+        int separator = uri.indexOf("!/");
+        return uri.substring("jar:".length(), separator >= 0 ? separator : uri.length());
+    }
+
+    /**
+     * Saves the library to the given snapshot file
+     *
+     * @param library The library to save
+     * @param file The snapshot file
+     * @throws FileOperationException If the library cannot be saved
+     */
+    public void saveLibrary(Library library, File file) throws FileOperationException {
+        long start = System.nanoTime();
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(library);
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to save library: " + e.getMessage(), e);
         }
+        SNAPSHOT_SAVE_TIME.recordSince(start);
     }
 
     /**
@@ -41,16 +144,111 @@ public class FileManager {
      * @return The absolute path to the resources directory
      */
     public String getResourcesPath() {
-        File resourcesDir = new File("src/resources");
-        if (!resourcesDir.exists()) {
-            resourcesDir = new File("../src/resources");
-            if (!resourcesDir.exists()) {
-                resourcesDir = new File(System.getProperty("user.dir"), "src/resources");
-                if (!resourcesDir.exists()) {
-                    System.err.println("Could not locate resources directory");
+        File resourcesDir = findResourcesDirectory();
+        if (resourcesDir == null) {
+            LOG.error("Could not locate resources directory");
+            resourcesDir = new File(System.getProperty("user.dir"), "src/resources");
+        }
+        return resourcesDir.getAbsolutePath();
+    }
+
+    /**
+     * Looks for the resources directory of a source checkout
+     *
+     * @return The resources directory, or null if the application does not run from a checkout
+     */
+    public File findResourcesDirectory() {
+        File[] candidates = {new File("src/resources"), new File("../src/resources"),
+                new File(System.getProperty("user.dir"), "src/resources")};
+        for (File candidate : candidates) {
+            if (candidate.isDirectory()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolves a books location to the root of a books tree. The location may be a directory,
+     * a {@code .zip} or {@code .jar} archive, read in place, or {@value #CLASSPATH_PREFIX} followed
+     * by a resource directory. Archive file systems stay open so that the paths of loaded books,
+     * such as their covers, remain readable.
+     *
+     * @param location The books location
+     * @return The root directory of the books tree
+     * @throws FileOperationException If the location does not exist or the archive cannot be opened
+     */
+    public Path resolveBooksRoot(String location) throws FileOperationException {
+        if (location.startsWith(CLASSPATH_PREFIX)) {
+            String resource = location.substring(CLASSPATH_PREFIX.length());
+            Path root = findClasspathDirectory(resource.startsWith("/") ? resource : "/" + resource);
+            if (root == null) {
+                throw new FileOperationException("Books directory not found on the classpath: " + resource);
+            }
+            return root;
+        }
+
+        Path path = Paths.get(location);
+        if (Files.isDirectory(path)) {
+            return path;
+        }
+        if (Files.isRegularFile(path) && isArchive(path)) {
+            FileSystem archive = openArchive(path.toAbsolutePath().toUri());
+            for (String candidate : ARCHIVE_BOOK_ROOTS) {
+                Path root = archive.getPath(candidate);
+                if (Files.isDirectory(root)) {
+                    return root;
                 }
             }
+            return archive.getPath("/");
         }
-        return resourcesDir.getAbsolutePath();
+        throw new FileOperationException("Books directory or archive not found: " + location);
+    }
+
+    /**
+     * Finds a directory among the application's resources, inside its JAR when it is packaged
+     *
+     * @param resource The absolute resource name, such as {@code /data/books}
+     * @return The directory, or null if there is no such resource directory
+     * @throws FileOperationException If the archive holding the resource cannot be opened
+     */
+    public Path findClasspathDirectory(String resource) throws FileOperationException {
+        URL url = FileManager.class.getResource(resource);
+        if (url == null) {
+            return null;
+        }
+        try {
+            URI uri = url.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                openArchive(URI.create(archiveOf(uri.toString())));
+            }
+            Path directory = Paths.get(uri);
+            return Files.isDirectory(directory) ? directory : null;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new FileOperationException("Cannot read resource " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens an archive as a read-only file system, or returns the one already open for it
+     *
+     * @param archive The URI of the archive file
+     * @return The archive's file system
+     * @throws FileOperationException If the archive cannot be opened
+     */
+    public static FileSystem openArchive(URI archive) throws FileOperationException {
+        URI uri = URI.create("jar:" + archive);
+        try {
+            return FileSystems.newFileSystem(uri, Map.of("accessMode", "readOnly"));
+        } catch (FileSystemAlreadyExistsException e) {
+            return FileSystems.getFileSystem(uri);
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to open archive " + archive + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isArchive(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".jar");
     }
 }
\ No newline at end of file
@@ -0,0 +1,359 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.service;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.exception.FileOperationException;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Chapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Novel;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Roman;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.TextChapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates how much heap a {@link Library} retains by walking
+ * {@code Library → Book → Chapter} and sizing every object it reaches.
+ * <p>
+ * Sizes follow the layout of a 64-bit HotSpot JVM with compressed references: 12-byte object
+ * headers, 4-byte references, 8-byte alignment, compact Latin-1 strings. Objects reachable from
+ * several books, such as shared genre strings, are counted once, for the first book that reaches
+ * them. The catalogue list is sized as grown by successive adds, while chapter lists are sized exactly,
+ * since a book replaces its chapter list with an exact-capacity copy on every change. The transient
+ * sorted-chapter cache and cover path of each book, and the unmodifiable view returned by
+ * {@link Book#getChapters()}, are not counted. Use the startup benchmark to measure real retained heap;
+ * this estimator tells where the bytes go.
+ */
+public class FootprintEstimator {
+
+    /**
+     * What the estimated bytes are used for
+     */
+    public enum Category {
+        /** Book, Novel and Roman objects themselves */
+        BOOK_OBJECTS,
+        /** Titles, descriptions, statuses, artists, cover paths and other book strings */
+        BOOK_STRINGS,
+        /** Date added */
+        DATES,
+        /** Genre sets, including their hash tables and the genre strings */
+        GENRES,
+        /** Chapter objects and the chapter lists holding them */
+        CHAPTER_OBJECTS,
+        /** Chapter titles */
+        CHAPTER_TITLES,
+        /** Chapter text */
+        CHAPTER_TEXT,
+        /** The catalogue list of the library */
+        CATALOGUE
+    }
+
+    /**
+     * Estimated footprint of one book
+     *
+     * @param bookId The book identifier
+     * @param title The book title
+     * @param chapters Number of chapters
+     * @param bytes Bytes retained by the book, its genres and its chapters
+     * @param chapterTextBytes Part of {@code bytes} spent on chapter text
+     */
+    public record BookFootprint(int bookId, String title, int chapters, long bytes, long chapterTextBytes) {
+    }
+
+    /**
+     * Result of an estimate
+     *
+     * @param totalBytes Bytes retained by the whole library
+     * @param bytesByCategory Bytes per category, summing to {@code totalBytes}
+     * @param books Per-book footprints, largest first
+     * @param stringCount Number of distinct string instances reached
+     * @param stringBytes Bytes used by those strings
+     * @param duplicateStringCount Strings whose content equals an earlier, different instance
+     * @param duplicateStringBytes Bytes that deduplicating those strings would save
+     */
+    public record Report(long totalBytes, Map<Category, Long> bytesByCategory, List<BookFootprint> books,
+                         long stringCount, long stringBytes, long duplicateStringCount,
+                         long duplicateStringBytes) {
+
+        /**
+         * Gets the share of string bytes spent on duplicated content
+         *
+         * @return A ratio between 0 and 1
+         */
+        public double duplicateStringRatio() {
+            return stringBytes == 0 ? 0 : (double) duplicateStringBytes / stringBytes;
+        }
+
+        /**
+         * Formats the report as text
+         *
+         * @param topBooks Number of largest books to list
+         * @return The formatted report
+         */
+        public String format(int topBooks) {
+            StringBuilder text = new StringBuilder(2048);
+            text.append(String.format(Locale.ROOT, "Estimated library footprint: %s for %d books%n",
+                    formatBytes(totalBytes), books.size()));
+            for (Map.Entry<Category, Long> entry : bytesByCategory.entrySet()) {
+                text.append(String.format(Locale.ROOT, "  %-16s %12s %5.1f%%%n", entry.getKey(),
+                        formatBytes(entry.getValue()), totalBytes == 0 ? 0 : entry.getValue() * 100.0 / totalBytes));
+            }
+            text.append(String.format(Locale.ROOT,
+                    "Strings: %d instances, %s; %d duplicates wasting %s (%.1f%%)%n",
+                    stringCount, formatBytes(stringBytes), duplicateStringCount,
+                    formatBytes(duplicateStringBytes), duplicateStringRatio() * 100));
+            text.append(String.format(Locale.ROOT, "Largest books:%n"));
+            for (BookFootprint book : books.subList(0, Math.min(topBooks, books.size()))) {
+                text.append(String.format(Locale.ROOT, "  %12s  %4d chapters  %5.1f%% text  #%d %s%n",
+                        formatBytes(book.bytes()), book.chapters(),
+                        book.bytes() == 0 ? 0 : book.chapterTextBytes() * 100.0 / book.bytes(),
+                        book.bookId(), book.title()));
+            }
+            return text.toString();
+        }
+    }
+
+    private static final int HEADER = 12;
+    private static final int REFERENCE = 4;
+    private static final int ARRAY_HEADER = 16;
+    private static final int STRING_SHELL = 24;
+    private static final int DATE_SHELL = 24;
+    private static final int ARRAY_LIST_SHELL = 24;
+    private static final int HASH_SET_SHELL = 16;
+    private static final int HASH_MAP_SHELL = 48;
+    private static final int HASH_MAP_NODE = 32;
+    private static final int BOOK_SHELL = align(HEADER + 4 + 11 * REFERENCE);
+    private static final int BOOK_SUBCLASS_SHELL = align(HEADER + 4 + 13 * REFERENCE);
+    private static final int CHAPTER_SHELL = align(HEADER + 4 + REFERENCE + 4);
+    private static final int TEXT_CHAPTER_SHELL = align(HEADER + 4 + REFERENCE + 4 + REFERENCE);
+
+    private final Map<Object, Boolean> visited = new IdentityHashMap<>();
+    private final Set<String> seenContents = new HashSet<>();
+    private long stringCount;
+    private long stringBytes;
+    private long duplicateStringCount;
+    private long duplicateStringBytes;
+
+    /**
+     * Estimates the footprint of a library.
+     * An estimator instance should be used for a single estimate.
+     *
+     * @param library The library to measure
+     * @return The report
+     */
+    public Report estimate(Library library) {
+        List<Book> catalogue = library.getCatalogue();
+        Map<Category, Long> byCategory = new EnumMap<>(Category.class);
+        for (Category category : Category.values()) {
+            byCategory.put(category, 0L);
+        }
+        byCategory.put(Category.CATALOGUE, arrayListBytes(catalogue.size()));
+
+        List<BookFootprint> books = new ArrayList<>(catalogue.size());
+        for (Book book : catalogue) {
+            books.add(estimateBook(book, byCategory));
+        }
+        books.sort(Comparator.comparingLong(BookFootprint::bytes).reversed());
+
+        long total = 0;
+        for (long bytes : byCategory.values()) {
+            total += bytes;
+        }
+        return new Report(total, Collections.unmodifiableMap(byCategory), Collections.unmodifiableList(books),
+                stringCount, stringBytes, duplicateStringCount, duplicateStringBytes);
+    }
+
+    private BookFootprint estimateBook(Book book, Map<Category, Long> byCategory) {
+        long bookObjects = book instanceof Novel || book instanceof Roman ? BOOK_SUBCLASS_SHELL : BOOK_SHELL;
+
+        long bookStrings = stringBytes(book.getTitle()) + stringBytes(book.getDescription())
+                + stringBytes(book.getCoverImagePath()) + stringBytes(book.getStatus())
+                + stringBytes(book.getArtist()) + stringBytes(book.getCoverUri());
+        if (book instanceof Novel novel) {
+            bookStrings += stringBytes(novel.getOrigin()) + stringBytes(novel.getTranslator());
+        } else if (book instanceof Roman roman) {
+            bookStrings += stringBytes(roman.getSeries()) + stringBytes(roman.getIllustrator());
+        }
+
+        long dates = book.getDateAdded() != null && firstVisit(book.getDateAdded()) ? DATE_SHELL : 0;
+
+        Set<String> genres = book.getGenres();
+        long genreBytes = HASH_SET_SHELL + HASH_MAP_SHELL
+                + align(ARRAY_HEADER + (long) REFERENCE * hashTableCapacity(genres.size()))
+                + (long) HASH_MAP_NODE * genres.size();
+        for (String genre : genres) {
+            genreBytes += stringBytes(genre);
+        }
+
+        List<Chapter> chapters = book.getChapters();
+        long chapterObjects = copiedArrayListBytes(chapters.size());
+        long chapterTitles = 0;
+        long chapterText = 0;
+        for (Chapter chapter : chapters) {
+            chapterTitles += stringBytes(chapter.getTitle());
+            if (chapter instanceof TextChapter textChapter) {
+                chapterObjects += TEXT_CHAPTER_SHELL;
+                chapterText += stringBytes(textChapter.getContentText());
+            } else {
+                chapterObjects += CHAPTER_SHELL;
+            }
+        }
+
+        byCategory.merge(Category.BOOK_OBJECTS, bookObjects, Long::sum);
+        byCategory.merge(Category.BOOK_STRINGS, bookStrings, Long::sum);
+        byCategory.merge(Category.DATES, dates, Long::sum);
+        byCategory.merge(Category.GENRES, genreBytes, Long::sum);
+        byCategory.merge(Category.CHAPTER_OBJECTS, chapterObjects, Long::sum);
+        byCategory.merge(Category.CHAPTER_TITLES, chapterTitles, Long::sum);
+        byCategory.merge(Category.CHAPTER_TEXT, chapterText, Long::sum);
+
+        long total = bookObjects + bookStrings + dates + genreBytes + chapterObjects + chapterTitles + chapterText;
+        return new BookFootprint(book.getId(), book.getTitle(), chapters.size(), total, chapterText);
+    }
+
+    /**
+     * Sizes a string the first time this instance is reached and tracks duplicated contents
+     */
+    private long stringBytes(String value) {
+        if (value == null || !firstVisit(value)) {
+            return 0;
+        }
+        long bytes = stringShellBytes(value);
+        stringCount++;
+        stringBytes += bytes;
+        if (!seenContents.add(value)) {
+            duplicateStringCount++;
+            duplicateStringBytes += bytes;
+        }
+        return bytes;
+    }
+
+    private boolean firstVisit(Object value) {
+        return visited.put(value, Boolean.TRUE) == null;
+    }
+
+    private static long stringShellBytes(String value) {
+        int bytesPerChar = 1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytesPerChar = 2;
+                break;
+            }
+        }
+        return STRING_SHELL + align(ARRAY_HEADER + (long) value.length() * bytesPerChar);
+    }
+
+    /**
+     * Sizes an ArrayList filled by successive adds, which grows its array by half from 10
+     */
+    private static long arrayListBytes(int size) {
+        int capacity = 0;
+        if (size > 0) {
+            capacity = 10;
+            while (capacity < size) {
+                capacity += capacity >> 1;
+            }
+        }
+        return ARRAY_LIST_SHELL + align(ARRAY_HEADER + (long) REFERENCE * capacity);
+    }
+
+    /**
+     * Sizes an ArrayList created with exactly the capacity it holds; an empty one shares the empty array
+     */
+    private static long copiedArrayListBytes(int size) {
+        if (size == 0) {
+            return ARRAY_LIST_SHELL;
+        }
+        return ARRAY_LIST_SHELL + align(ARRAY_HEADER + (long) REFERENCE * size);
+    }
+
+    /**
+     * Gets the table size of a HashMap grown from the default capacity to hold the given entries
+     */
+    private static int hashTableCapacity(int size) {
+        if (size == 0) {
+            return 0;
+        }
+        int capacity = 16;
+        while (size > capacity * 3 / 4) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Formats a byte count with a binary unit
+     *
+     * @param bytes The byte count
+     * @return The formatted size, such as {@code 12.3 MB}
+     */
+    public static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+        }
+        if (bytes < 1024L * 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024));
+        }
+        return String.format(Locale.ROOT, "%.2f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+
+    /**
+     * Prints the footprint report without starting the user interface.
+     * Usage: {@code FootprintEstimator [--snapshot library.dat | --books <directory or archive>] [--top N]};
+     * by default the snapshot is used when present, otherwise the bundled books tree.
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) throws FileOperationException {
+        System.setProperty("java.awt.headless", "true");
+        File snapshot = null;
+        String booksRoot = null;
+        int top = 10;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--snapshot" -> snapshot = new File(args[++i]);
+                case "--books" -> booksRoot = args[++i];
+                case "--top" -> top = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        Library library;
+        FileManager fileManager = new FileManager();
+        if (snapshot != null) {
+            library = fileManager.loadLibrary(snapshot);
+        } else if (booksRoot == null && new File("library.dat").exists()) {
+            library = fileManager.loadLibrary();
+        } else {
+            Library loaded = new Library();
+            new LibraryLoader(new DataLoader()).loadBooks(
+                    booksRoot != null ? fileManager.resolveBooksRoot(booksRoot) : LibraryLoader.getDefaultBooksRoot(),
+                    (book, seriesProcessed, seriesTotal) -> loaded.addBook(book));
+            library = loaded;
+        }
+
+        Logger.flush();
+        System.out.print(new FootprintEstimator().estimate(library).format(top));
+    }
+}
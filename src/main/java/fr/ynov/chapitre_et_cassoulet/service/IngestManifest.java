@@ -0,0 +1,398 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.service;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.exception.FileOperationException;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.Counter;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.TextChapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Remembers what every file of a books tree parsed to, so that the next load only parses the files
+ * that are new or changed.
+ * <p>
+ * Each file is recorded with its size, modification time and SHA-256 digest, next to the book or
+ * chapter it parsed to. Chapters are stored as plain UTF-8 rather than serialized objects, so reading
+ * the manifest back costs little more than reading the text. A file whose size and modification time
+ * are unchanged is not read at all. When they differ, the file is read once and hashed, and the same bytes
+ * are parsed only if the digest changed, so a copied or touched tree is still reused and a stored digest
+ * always describes the content its record was parsed from. Covers are not part of the manifest: a book's cover is
+ * looked up again on every load, so a replaced image shows without editing the information file.
+ * Files modified within a couple of seconds of the previous
+ * save are always hashed, as a later write in the same clock tick would not change their time.
+ * <p>
+ * One manifest is kept per books root under {@value #CACHE_DIRECTORY}. Files that were not loaded
+ * again are dropped when it is saved. A manifest that cannot be read is ignored and rebuilt.
+ */
+public class IngestManifest {
+    private static final Logger LOG = Logger.getLogger(IngestManifest.class);
+    private static final String CACHE_DIRECTORY = "cache" + File.separator + "manifests";
+    private static final int FORMAT_VERSION = 1;
+    private static final byte BOOK_RECORD = 0;
+    private static final byte CHAPTER_RECORD = 1;
+    private static final int DIGEST_LENGTH = 32;
+    /** Files modified this close to the previous save are hashed even if their time did not change */
+    private static final long RACY_MILLIS = 2000;
+    private static final Counter REUSED = MetricsRegistry.getInstance().counter("ingest.manifest.reused");
+    private static final Counter PARSED = MetricsRegistry.getInstance().counter("ingest.manifest.parsed");
+
+    private final Path booksRoot;
+    private final Path file;
+    private final long previousSave;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new HashMap<>();
+    private int reused;
+    private boolean changed;
+
+    /**
+     * What one file parsed to
+     *
+     * @param size The file size in bytes
+     * @param modified The modification time in milliseconds
+     * @param digest The SHA-256 digest of the content
+     * @param record The serialized book, without chapters, or the chapter
+     */
+    private record Entry(long size, long modified, byte[] digest, Object record) {
+    }
+
+    /**
+     * Reads the content of a file whose size or modification time changed
+     */
+    @FunctionalInterface
+    private interface Reader {
+        byte[] read(Path file) throws FileOperationException;
+    }
+
+    /**
+     * Parses content read from a file when the manifest cannot provide it
+     */
+    @FunctionalInterface
+    private interface Parser<T> {
+        T parse(Path file, byte[] content) throws FileOperationException;
+    }
+
+    /**
+     * Converts between what a file parses to and what the manifest stores
+     */
+    private interface RecordType<T> {
+        boolean matches(Object stored);
+
+        Object store(T parsed) throws FileOperationException;
+
+        T restore(Object stored) throws FileOperationException;
+    }
+
+    private static final RecordType<Book> BOOKS = new RecordType<>() {
+        @Override
+        public boolean matches(Object stored) {
+            return stored instanceof byte[];
+        }
+
+        @Override
+        public Object store(Book parsed) throws FileOperationException {
+            return serialize(parsed);
+        }
+
+        @Override
+        public Book restore(Object stored) throws FileOperationException {
+            return deserialize((byte[]) stored);
+        }
+    };
+
+    private static final RecordType<TextChapter> CHAPTERS = new RecordType<>() {
+        @Override
+        public boolean matches(Object stored) {
+            return stored instanceof TextChapter;
+        }
+
+        @Override
+        public Object store(TextChapter parsed) {
+            return parsed;
+        }
+
+        @Override
+        public TextChapter restore(Object stored) {
+            return (TextChapter) stored;
+        }
+    };
+
+    private IngestManifest(Path booksRoot, Path file, long previousSave, Map<String, Entry> previous) {
+        this.booksRoot = booksRoot;
+        this.file = file;
+        this.previousSave = previousSave;
+        this.previous = previous;
+    }
+
+    /**
+     * Opens the manifest of a books root, or starts an empty one when there is none yet
+     *
+     * @param booksRoot The books root directory
+     * @return The manifest
+     */
+    public static IngestManifest open(Path booksRoot) {
+        return open(booksRoot, Path.of(CACHE_DIRECTORY, manifestName(booksRoot)));
+    }
+
+    /**
+     * Opens a manifest of a books root stored in the given file, or starts an empty one when it does not exist
+     *
+     * @param booksRoot The books root directory
+     * @param file The manifest file
+     * @return The manifest
+     */
+    public static IngestManifest open(Path booksRoot, Path file) {
+        if (!Files.isRegularFile(file)) {
+            return new IngestManifest(booksRoot, file, 0, new HashMap<>());
+        }
+        long start = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                LOG.info("Ignoring " + file + ", written by another version");
+                return new IngestManifest(booksRoot, file, 0, new HashMap<>());
+            }
+            long savedAt = in.readLong();
+            int count = in.readInt();
+            Map<String, Entry> entries = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                byte[] digest = new byte[DIGEST_LENGTH];
+                in.readFully(digest);
+                entries.put(key, new Entry(size, modified, digest, readRecord(in)));
+            }
+            LOG.info("Read the manifest of " + count + " files from " + file + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return new IngestManifest(booksRoot, file, savedAt, entries);
+        } catch (IOException e) {
+            LOG.warn("Ignoring unreadable manifest " + file + ": " + e.getMessage());
+            return new IngestManifest(booksRoot, file, 0, new HashMap<>());
+        }
+    }
+
+    /**
+     * Gets the book of an information file, parsing the file only if it changed
+     *
+     * @param infoFile The information file
+     * @param dataLoader Parses the file when needed
+     * @return A new book without chapters
+     * @throws FileOperationException If the file cannot be read or parsed
+     */
+    public Book loadBook(Path infoFile, DataLoader dataLoader) throws FileOperationException {
+        // The manifest keeps the book serialized, so the chapters the caller attaches never reach it
+        Book book = load(infoFile, BOOKS, file -> dataLoader.readFileBytes(file, false),
+                dataLoader::loadBookFromFile);
+        dataLoader.resolveCover(book, infoFile);
+        return book;
+    }
+
+    /**
+     * Gets the chapter of a chapter file, parsing the file only if it changed
+     *
+     * @param chapterFile The chapter file
+     * @param dataLoader Parses the file when needed
+     * @return The chapter
+     * @throws FileOperationException If the file cannot be read or parsed
+     */
+    public TextChapter loadChapter(Path chapterFile, DataLoader dataLoader) throws FileOperationException {
+        return load(chapterFile, CHAPTERS, file -> dataLoader.readFileBytes(file, true),
+                dataLoader::loadChapterFromFile);
+    }
+
+    private <T> T load(Path path, RecordType<T> type, Reader reader, Parser<T> parser) throws FileOperationException {
+        String key = booksRoot.relativize(path).toString();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new FileOperationException("Error reading file: " + path, e);
+        }
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+
+        Entry entry = previous.get(key);
+        boolean known = entry != null && type.matches(entry.record());
+        if (known && entry.size() == size && entry.modified() == modified && modified < previousSave - RACY_MILLIS) {
+            return reuse(key, entry, type);
+        }
+
+        // The digest and the record come from the same bytes; the time was taken before reading them,
+        // so a write that lands meanwhile leaves a newer time on disk and the file is checked again next load
+        byte[] content = reader.read(path);
+        byte[] digest = sha256().digest(content);
+        if (known && Arrays.equals(digest, entry.digest())) {
+            changed |= entry.size() != content.length || entry.modified() != modified;
+            return reuse(key, new Entry(content.length, modified, digest, entry.record()), type);
+        }
+
+        T parsed = parser.parse(path, content);
+        current.put(key, new Entry(content.length, modified, digest, type.store(parsed)));
+        PARSED.increment();
+        changed = true;
+        return parsed;
+    }
+
+    private <T> T reuse(String key, Entry entry, RecordType<T> type) throws FileOperationException {
+        current.put(key, entry);
+        reused++;
+        REUSED.increment();
+        return type.restore(entry.record());
+    }
+
+    /**
+     * Saves the files loaded since the manifest was opened, unless nothing changed
+     *
+     * @throws FileOperationException If the manifest cannot be written
+     */
+    public void save() throws FileOperationException {
+        if (!changed && current.size() == previous.size()) {
+            LOG.info("Reused all " + reused + " files of " + booksRoot + " from the manifest");
+            return;
+        }
+        long start = System.nanoTime();
+        Path partial = file.resolveSibling(file.getFileName() + ".part");
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(partial), 1 << 16))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(current.size());
+                for (Map.Entry<String, Entry> item : current.entrySet()) {
+                    Entry entry = item.getValue();
+                    out.writeUTF(item.getKey());
+                    out.writeLong(entry.size());
+                    out.writeLong(entry.modified());
+                    out.write(entry.digest());
+                    writeRecord(out, entry.record());
+                }
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+                // Reported below
+            }
+            throw new FileOperationException("Failed to save the ingest manifest " + file + ": " + e.getMessage(), e);
+        }
+        LOG.info("Reused " + reused + " of " + current.size() + " files of " + booksRoot + "; saved the manifest in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Gets the number of files taken from the manifest instead of being parsed
+     *
+     * @return The number of files reused since the manifest was opened
+     */
+    public int getReusedCount() {
+        return reused;
+    }
+
+    private static void writeRecord(DataOutputStream out, Object record) throws IOException {
+        if (record instanceof byte[] book) {
+            out.writeByte(BOOK_RECORD);
+            writeBytes(out, book);
+        } else {
+            TextChapter chapter = (TextChapter) record;
+            out.writeByte(CHAPTER_RECORD);
+            out.writeInt(chapter.getId());
+            out.writeInt(chapter.getNumOrder());
+            out.writeBoolean(chapter.getTitle() != null);
+            if (chapter.getTitle() != null) {
+                writeBytes(out, chapter.getTitle().getBytes(StandardCharsets.UTF_8));
+            }
+            writeBytes(out, chapter.getContentText().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Object readRecord(DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        if (kind == BOOK_RECORD) {
+            return readBytes(in);
+        }
+        if (kind != CHAPTER_RECORD) {
+            throw new IOException("Unknown record type " + kind);
+        }
+        int id = in.readInt();
+        int numOrder = in.readInt();
+        String title = in.readBoolean() ? new String(readBytes(in), StandardCharsets.UTF_8) : null;
+        TextChapter chapter = new TextChapter(id, title, numOrder);
+        chapter.setContentText(new String(readBytes(in), StandardCharsets.UTF_8));
+        return chapter;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt record length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static byte[] serialize(Book book) throws FileOperationException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(book);
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to store book " + book.getId() + ": " + e.getMessage(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Book deserialize(byte[] bytes) throws FileOperationException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Book) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            throw new FileOperationException("Failed to restore a book from the manifest: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Names the manifest of a books root after a digest of its location
+     */
+    private static String manifestName(Path booksRoot) {
+        String location = booksRoot.getFileSystem() == FileSystems.getDefault()
+                ? booksRoot.toAbsolutePath().normalize().toString() : booksRoot.toUri().toString();
+        byte[] digest = sha256().digest(location.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest, 0, 8) + ".dat";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.service;
+
+/**
+ * Accumulates time and volume spent in each phase of loading the books tree.
+ * An instance is attached to a {@link LibraryLoader}; it is not thread-safe and is meant to be
+ * read once loading has finished.
+ */
+public class IngestStatistics {
+    private long walkNanos;
+    private long readNanos;
+    private long parseNanos;
+    private long assembleNanos;
+    private long filesRead;
+    private long bytesRead;
+    private long chapterBytesRead;
+
+    /**
+     * Records time spent listing directories
+     *
+     * @param nanos Elapsed time in nanoseconds
+     */
+    public void addWalk(long nanos) {
+        walkNanos += nanos;
+    }
+
+    /**
+     * Records one file read from disk and decoded to text
+     *
+     * @param nanos Elapsed time in nanoseconds
+     * @param bytes Size of the file in bytes
+     * @param chapter Whether the file is a chapter file
+     */
+    public void addRead(long nanos, long bytes, boolean chapter) {
+        readNanos += nanos;
+        filesRead++;
+        bytesRead += bytes;
+        if (chapter) {
+            chapterBytesRead += bytes;
+        }
+    }
+
+    /**
+     * Records time spent turning JSON text into model objects
+     *
+     * @param nanos Elapsed time in nanoseconds
+     */
+    public void addParse(long nanos) {
+        parseNanos += nanos;
+    }
+
+    /**
+     * Records time spent attaching chapters and resolving covers
+     *
+     * @param nanos Elapsed time in nanoseconds
+     */
+    public void addAssemble(long nanos) {
+        assembleNanos += nanos;
+    }
+
+    /**
+     * Gets the time spent listing directories
+     *
+     * @return Time in nanoseconds
+     */
+    public long getWalkNanos() {
+        return walkNanos;
+    }
+
+    /**
+     * Gets the time spent reading and decoding files
+     *
+     * @return Time in nanoseconds
+     */
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    /**
+     * Gets the time spent parsing JSON
+     *
+     * @return Time in nanoseconds
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * Gets the time spent attaching chapters and resolving covers
+     *
+     * @return Time in nanoseconds
+     */
+    public long getAssembleNanos() {
+        return assembleNanos;
+    }
+
+    /**
+     * Gets the number of files read
+     *
+     * @return Number of files
+     */
+    public long getFilesRead() {
+        return filesRead;
+    }
+
+    /**
+     * Gets the number of bytes read from all files
+     *
+     * @return Number of bytes
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Gets the number of bytes read from chapter files
+     *
+     * @return Number of bytes
+     */
+    public long getChapterBytesRead() {
+        return chapterBytesRead;
+    }
+}
@@ -1,8 +1,16 @@
 package main.java.fr.ynov.chapitre_et_cassoulet.service;
 
+import main.java.fr.ynov.chapitre_et_cassoulet.events.LibraryEvent;
+import main.java.fr.ynov.chapitre_et_cassoulet.events.LibraryEventPublisher;
 import main.java.fr.ynov.chapitre_et_cassoulet.exception.BookNotFoundException;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.SearchExecutedEvent;
 import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Chapter;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.*;
@@ -11,18 +19,48 @@ import java.util.stream.Collectors;
 /**
  * Manages the library's book catalogue and provides methods
  * for adding, retrieving, and searching for books.
+ * The catalogue may be filled from a loader thread while the UI reads it,
+ * so every access goes through the library's monitor and readers work on copies.
+ * Books are also indexed by ID; the index is updated once per call, so adding books in batches
+ * with {@link #addBooks(Collection)} keeps lookups constant-time without per-book locking.
+ * Every change made through the library is announced by its {@link #getEvents() event publisher}.
  */
 public class Library implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
+    private static final LatencyHistogram LOOKUP_TIME = MetricsRegistry.getInstance().histogram("library.lookup");
+    /** Criteria a search may combine, in the order of their bit in a query shape */
+    private static final String[] QUERY_CRITERIA = {"keyword", "genre", "status", "type"};
+    private static final LatencyHistogram[] SEARCH_TIME = shapeHistograms("search.library.");
 
     private final List<Book> catalogue;
+    private transient Map<Integer, Book> booksById;
+    private transient volatile long version;
+    private transient volatile LibraryEventPublisher events;
 
     /**
      * Creates a new empty library
      */
     public Library() {
         catalogue = new ArrayList<>();
+        booksById = new HashMap<>();
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        booksById = new HashMap<>(catalogue.size() * 4 / 3 + 1);
+        index(catalogue);
+    }
+
+    /**
+     * Adds books to the ID index; with duplicate IDs the first book in the catalogue wins,
+     * as it would for a scan of the catalogue
+     */
+    private void index(Collection<? extends Book> books) {
+        for (Book book : books) {
+            booksById.putIfAbsent(book.getId(), book);
+        }
     }
 
     /**
@@ -30,7 +68,7 @@ public class Library implements Serializable {
      *
      * @return The full catalogue of books
      */
-    public List<Book> getCatalogue() {
+    public synchronized List<Book> getCatalogue() {
         return new ArrayList<>(catalogue);
     }
 
@@ -39,32 +77,218 @@ public class Library implements Serializable {
      *
      * @param book The book to add
      */
-    public void addBook(Book book) {
+    public synchronized void addBook(Book book) {
         catalogue.add(book);
+        booksById.putIfAbsent(book.getId(), book);
+        version++;
+        LibraryEventPublisher publisher = events;
+        if (publisher != null) {
+            publisher.publish(new LibraryEvent.BookAdded(book));
+        }
     }
 
     /**
-     * Gets a specific book by ID
+     * Adds several books to the catalogue at once, updating the index and announcing them in one step
      *
-     * @param id The ID of the book to retrieve
-     * @return The book with the matching ID
+     * @param books The books to add
+     */
+    public synchronized void addBooks(Collection<? extends Book> books) {
+        catalogue.addAll(books);
+        index(books);
+        version++;
+        LibraryEventPublisher publisher = events;
+        if (publisher != null && publisher.hasSubscribers()) {
+            List<LibraryEvent> added = new ArrayList<>(books.size());
+            for (Book book : books) {
+                added.add(new LibraryEvent.BookAdded(book));
+            }
+            publisher.publishAll(added);
+        }
+    }
+
+    /**
+     * Adds a chapter to a book of the catalogue
+     *
+     * @param book The book
+     * @param chapter The chapter to add
+     */
+    public synchronized void addChapter(Book book, Chapter chapter) {
+        book.addChapter(chapter);
+        version++;
+        LibraryEventPublisher publisher = events;
+        if (publisher != null) {
+            publisher.publish(new LibraryEvent.ChapterAdded(book, chapter));
+        }
+    }
+
+    /**
+     * Adds several chapters to a book of the catalogue at once
+     *
+     * @param book The book
+     * @param chapters The chapters to add
+     */
+    public synchronized void addChapters(Book book, Collection<? extends Chapter> chapters) {
+        if (chapters.isEmpty()) {
+            return;
+        }
+        book.addChapters(chapters);
+        version++;
+        LibraryEventPublisher publisher = events;
+        if (publisher != null && publisher.hasSubscribers()) {
+            List<LibraryEvent> added = new ArrayList<>(chapters.size());
+            for (Chapter chapter : chapters) {
+                added.add(new LibraryEvent.ChapterAdded(book, chapter));
+            }
+            publisher.publishAll(added);
+        }
+    }
+
+    /**
+     * Adds a chapter to a book of the catalogue, replacing the chapter with the same number if there is one
+     *
+     * @param book The book
+     * @param chapter The chapter to add
+     * @return The chapter that was replaced, or null if the chapter was added
+     */
+    public synchronized Chapter putChapter(Book book, Chapter chapter) {
+        for (Chapter previous : book.getChapters()) {
+            if (previous.getNumOrder() == chapter.getNumOrder()) {
+                book.replaceChapter(previous, chapter);
+                version++;
+                LibraryEventPublisher publisher = events;
+                if (publisher != null) {
+                    publisher.publish(new LibraryEvent.ChapterReplaced(book, chapter, previous));
+                }
+                return previous;
+            }
+        }
+        addChapter(book, chapter);
+        return null;
+    }
+
+    /**
+     * Updates the descriptive fields of a book of the catalogue from another version of it
+     *
+     * @param book The book
+     * @param details A book of the same type and ID holding the new values
+     */
+    public synchronized void updateBook(Book book, Book details) {
+        if (book.getId() != details.getId() || book.getClass() != details.getClass()) {
+            throw new IllegalArgumentException("Cannot update book " + book.getId() + " from a different book");
+        }
+        book.updateDetails(details);
+        version++;
+        LibraryEventPublisher publisher = events;
+        if (publisher != null) {
+            publisher.publish(new LibraryEvent.BookUpdated(book));
+        }
+    }
+
+    /**
+     * Changes the status of a book of the catalogue
+     *
+     * @param book The book
+     * @param status The new status
+     */
+    public synchronized void setStatus(Book book, String status) {
+        String previousStatus = book.getStatus();
+        if (Objects.equals(previousStatus, status)) {
+            return;
+        }
+        book.setStatus(status);
+        version++;
+        LibraryEventPublisher publisher = events;
+        if (publisher != null) {
+            publisher.publish(new LibraryEvent.StatusChanged(book, previousStatus));
+        }
+    }
+
+    /**
+     * Removes a book from the catalogue
+     *
+     * @param id The ID of the book to remove
+     * @return The removed book
      * @throws BookNotFoundException If no book with the given ID is found
      */
-    public Book getBookById(int id) throws BookNotFoundException {
-        for (Book book : catalogue) {
+    public synchronized Book removeBook(int id) throws BookNotFoundException {
+        Iterator<Book> books = catalogue.iterator();
+        while (books.hasNext()) {
+            Book book = books.next();
             if (book.getId() == id) {
+                books.remove();
+                if (booksById.get(id) == book) {
+                    booksById.remove(id);
+                    for (Book other : catalogue) {
+                        if (other.getId() == id) {
+                            booksById.put(id, other);
+                            break;
+                        }
+                    }
+                }
+                version++;
+                LibraryEventPublisher publisher = events;
+                if (publisher != null) {
+                    publisher.publish(new LibraryEvent.BookRemoved(book));
+                }
                 return book;
             }
         }
         throw new BookNotFoundException("Book with ID " + id + " not found");
     }
 
+    /**
+     * Gets the publisher of this library's changes.
+     * Changes made directly on a {@link Book}, such as {@link Book#addChapter(Chapter)}, are not announced;
+     * use {@link #addChapter(Book, Chapter)} and {@link #setStatus(Book, String)} instead.
+     *
+     * @return The event publisher
+     */
+    public LibraryEventPublisher getEvents() {
+        LibraryEventPublisher publisher = events;
+        if (publisher == null) {
+            synchronized (this) {
+                if (events == null) {
+                    events = new LibraryEventPublisher();
+                }
+                publisher = events;
+            }
+        }
+        return publisher;
+    }
+
+    /**
+     * Gets a number that changes every time the catalogue changes, so that readers can tell
+     * whether something they derived from the library is still current
+     *
+     * @return The catalogue version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets a specific book by ID
+     *
+     * @param id The ID of the book to retrieve
+     * @return The book with the matching ID
+     * @throws BookNotFoundException If no book with the given ID is found
+     */
+    public synchronized Book getBookById(int id) throws BookNotFoundException {
+        long start = System.nanoTime();
+        Book book = booksById.get(id);
+        LOOKUP_TIME.recordSince(start);
+        if (book != null) {
+            return book;
+        }
+        throw new BookNotFoundException("Book with ID " + id + " not found");
+    }
+
     /**
      * Gets all unique genres from all books in the catalogue
      *
      * @return A set of all genres
      */
-    public Set<String> getAllGenres() {
+    public synchronized Set<String> getAllGenres() {
         Set<String> allGenres = new HashSet<>();
         for (Book book : catalogue) {
             allGenres.addAll(book.getGenres());
@@ -77,7 +301,7 @@ public class Library implements Serializable {
      *
      * @return A set of all statuses
      */
-    public Set<String> getAllStatuses() {
+    public synchronized Set<String> getAllStatuses() {
         Set<String> allStatuses = new HashSet<>();
         for (Book book : catalogue) {
             allStatuses.add(book.getStatus());
@@ -95,12 +319,69 @@ public class Library implements Serializable {
      * @return A list of matching books
      */
     public List<Book> searchBooks(String keyword, String genre, String status, String type) {
-        return catalogue.stream()
+        SearchExecutedEvent event = new SearchExecutedEvent();
+        event.begin();
+        long start = System.nanoTime();
+        List<Book> results = getCatalogue().stream()
                 .filter(book -> isMatchingKeyword(book, keyword))
                 .filter(book -> isMatchingGenre(book, genre))
                 .filter(book -> isMatchingStatus(book, status))
                 .filter(book -> isMatchingType(book, type))
                 .collect(Collectors.toList());
+        SEARCH_TIME[queryShape(keyword, genre, status, type)].recordSince(start);
+
+        if (event.shouldCommit()) {
+            event.setEngine("library");
+            event.setCriteria("keyword=" + keyword + ", genre=" + genre + ", status=" + status + ", type=" + type);
+            event.setHits(results.size());
+            event.commit();
+        }
+        return results;
+    }
+
+    /**
+     * Identifies the combination of criteria actually in use, so that latency can be tracked per kind of query
+     */
+    private static int queryShape(String keyword, String genre, String status, String type) {
+        return queryShape(keyword != null && !keyword.isEmpty() && !keyword.equalsIgnoreCase("All"),
+                genre != null && !genre.isEmpty() && !genre.equalsIgnoreCase("All Genres"),
+                status != null && !status.isEmpty() && !status.equalsIgnoreCase("All Statuses"),
+                type != null && !type.isEmpty() && !type.equalsIgnoreCase("All Types"));
+    }
+
+    /**
+     * Gets the query shape of a combination of criteria, an index into the histograms of {@link #shapeHistograms}
+     *
+     * @param keyword Whether a keyword is searched
+     * @param genre Whether genres are filtered
+     * @param status Whether statuses are filtered
+     * @param type Whether the type is filtered
+     * @return The query shape, between 0 for no criteria and 15 for all of them
+     */
+    static int queryShape(boolean keyword, boolean genre, boolean status, boolean type) {
+        return (keyword ? 1 : 0) | (genre ? 2 : 0) | (status ? 4 : 0) | (type ? 8 : 0);
+    }
+
+    /**
+     * Creates one latency histogram per query shape, named after the criteria in use,
+     * such as {@code search.library.keyword+genre}, or {@code all} when there are none
+     *
+     * @param prefix The prefix of the histogram names
+     * @return The histograms, indexed by query shape
+     */
+    static LatencyHistogram[] shapeHistograms(String prefix) {
+        LatencyHistogram[] histograms = new LatencyHistogram[1 << QUERY_CRITERIA.length];
+        for (int shape = 0; shape < histograms.length; shape++) {
+            StringJoiner name = new StringJoiner("+", prefix, "");
+            name.setEmptyValue(prefix + "all");
+            for (int criterion = 0; criterion < QUERY_CRITERIA.length; criterion++) {
+                if ((shape & 1 << criterion) != 0) {
+                    name.add(QUERY_CRITERIA[criterion]);
+                }
+            }
+            histograms[shape] = MetricsRegistry.getInstance().histogram(name.toString());
+        }
+        return histograms;
     }
 
     private boolean isMatchingKeyword(Book book, String keyword) {
@@ -136,7 +417,7 @@ public class Library implements Serializable {
      *
      * @return The total number of books
      */
-    public int getTotalBooks() {
+    public synchronized int getTotalBooks() {
         return catalogue.size();
     }
 }
\ No newline at end of file
@@ -0,0 +1,631 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.service;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.exception.FileOperationException;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.Counter;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Chapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Novel;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Roman;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.TextChapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.JsonWriter;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exports books as newline-delimited JSON records, the format read by {@link BulkImporter},
+ * or as one EPUB file per book.
+ * <p>
+ * Both exports stream: records are encoded a few chapters at a time by a pool of worker threads and
+ * written in order, with a bounded number of encoded chunks waiting for the writer, and each EPUB is
+ * written chapter by chapter straight into its archive. Memory use therefore depends on the number
+ * of threads, not on the size of the library.
+ */
+public class LibraryExporter {
+    /** Approximate number of characters of chapter text encoded by one task */
+    private static final int CHUNK_CHARACTERS = 1024 * 1024;
+    /** Encoded chunks allowed to wait for the writer, per worker thread */
+    private static final int CHUNKS_IN_FLIGHT_PER_THREAD = 2;
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    private static final String XHTML_NAMESPACE = "http://www.w3.org/1999/xhtml";
+    private static final String TITLE_PAGE = "title.xhtml";
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    private static final Logger LOG = Logger.getLogger(LibraryExporter.class);
+    private static final Counter BOOKS_EXPORTED = MetricsRegistry.getInstance().counter("export.books");
+    private static final Counter BYTES_WRITTEN = MetricsRegistry.getInstance().counter("export.bytesWritten");
+    private static final LatencyHistogram EPUB_TIME = MetricsRegistry.getInstance().histogram("export.epub");
+
+    private final int threads;
+
+    /**
+     * Outcome of an export
+     *
+     * @param books Number of books written
+     * @param chapters Number of chapters written
+     * @param failed Number of books that could not be written
+     * @param bytes Number of bytes written
+     * @param nanos Time spent exporting
+     */
+    public record Result(int books, int chapters, int failed, long bytes, long nanos) {
+    }
+
+    /**
+     * A run of chapters of one book encoded by one task
+     *
+     * @param book The book
+     * @param chapters The chapters of the run, in reading order
+     * @param withBook True if the book record comes first
+     */
+    private record Chunk(Book book, List<Chapter> chapters, boolean withBook) {
+    }
+
+    /**
+     * Creates an exporter using one thread per available processor
+     */
+    public LibraryExporter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an exporter
+     *
+     * @param threads Number of books or chunks encoded at once
+     */
+    public LibraryExporter(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Writes books as records to a file, gzip-compressed when its name ends with {@code .gz}.
+     * The file is replaced only once the export is complete.
+     *
+     * @param books The books to export
+     * @param file The destination file
+     * @return What was written
+     * @throws FileOperationException If the file cannot be written
+     */
+    public Result exportRecords(List<Book> books, Path file) throws FileOperationException {
+        Path absolute = file.toAbsolutePath();
+        Path temporary = null;
+        try {
+            Files.createDirectories(absolute.getParent());
+            temporary = partFile(absolute);
+            Result result;
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz")) {
+                    try (GZIPOutputStream gzip = new GZIPOutputStream(out, OUTPUT_BUFFER_SIZE)) {
+                        result = exportRecords(books, gzip);
+                    }
+                } else {
+                    result = exportRecords(books, out);
+                }
+            }
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return result;
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to export to " + file + ": " + e.getMessage(), e);
+        } finally {
+            deleteQuietly(temporary);
+        }
+    }
+
+    /**
+     * Writes books as records to a stream, such as standard output. The stream is flushed, not closed.
+     *
+     * @param books The books to export
+     * @param out The destination of the UTF-8 records
+     * @return What was written
+     * @throws IOException If the stream cannot be written
+     */
+    public Result exportRecords(List<Book> books, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        ExecutorService executor = newExecutor();
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        int maxPending = threads * CHUNKS_IN_FLIGHT_PER_THREAD;
+        int chapters = 0;
+        long bytes = 0;
+        try {
+            OutputStream buffered = new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE);
+            for (Book book : books) {
+                for (Chunk chunk : split(book)) {
+                    if (pending.size() == maxPending) {
+                        bytes += write(pending.poll(), buffered);
+                    }
+                    pending.add(executor.submit(() -> encode(chunk)));
+                    chapters += chunk.chapters().size();
+                }
+                BOOKS_EXPORTED.increment();
+            }
+            while (!pending.isEmpty()) {
+                bytes += write(pending.poll(), buffered);
+            }
+            buffered.flush();
+        } finally {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+        }
+        BYTES_WRITTEN.add(bytes);
+        Result result = new Result(books.size(), chapters, 0, bytes, System.nanoTime() - start);
+        LOG.info("Exported " + books.size() + " books and " + chapters + " chapters as records in "
+                + result.nanos() / 1_000_000 + " ms");
+        return result;
+    }
+
+    /**
+     * Writes one EPUB file per book into a directory, named after the book's ID and title,
+     * with a numeric suffix when several books of the export would get the same name.
+     * A book that cannot be written is logged and counted as failed; the others are still exported.
+     *
+     * @param books The books to export
+     * @param directory The destination directory, created if needed
+     * @return What was written
+     * @throws FileOperationException If the directory cannot be created
+     */
+    public Result exportEpubs(List<Book> books, Path directory) throws FileOperationException {
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new FileOperationException("Failed to create " + directory + ": " + e.getMessage(), e);
+        }
+
+        ExecutorService executor = newExecutor();
+        List<Future<Long>> written = new ArrayList<>(books.size());
+        Set<String> fileNames = new HashSet<>(books.size() * 4 / 3 + 1);
+        try {
+            for (Book book : books) {
+                Path file = directory.resolve(uniqueFileName(epubFileName(book), fileNames));
+                written.add(executor.submit(() -> writeEpub(book, file)));
+            }
+            int exported = 0;
+            int chapters = 0;
+            long bytes = 0;
+            for (int i = 0; i < books.size(); i++) {
+                try {
+                    bytes += written.get(i).get();
+                    exported++;
+                    chapters += books.get(i).getChapters().size();
+                } catch (ExecutionException e) {
+                    LOG.warn("Failed to export \"" + books.get(i).getTitle() + "\" as EPUB: "
+                            + e.getCause().getMessage());
+                }
+            }
+            Result result = new Result(exported, chapters, books.size() - exported, bytes, System.nanoTime() - start);
+            LOG.info("Exported " + exported + " books as EPUB to " + directory + " in "
+                    + result.nanos() / 1_000_000 + " ms (" + result.failed() + " failed)");
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileOperationException("EPUB export interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ExecutorService newExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "export-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static long write(Future<byte[]> encoded, OutputStream out) throws IOException {
+        try {
+            byte[] bytes = encoded.get();
+            out.write(bytes);
+            return bytes.length;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to encode records: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Cuts a book into runs of chapters holding about {@link #CHUNK_CHARACTERS} of text each;
+     * the first run also carries the book record
+     */
+    private static List<Chunk> split(Book book) {
+        List<Chunk> chunks = new ArrayList<>();
+        List<Chapter> run = new ArrayList<>();
+        long runCharacters = 0;
+        for (Chapter chapter : book.getSortedChapters()) {
+            if (!run.isEmpty() && runCharacters >= CHUNK_CHARACTERS) {
+                chunks.add(new Chunk(book, run, chunks.isEmpty()));
+                run = new ArrayList<>();
+                runCharacters = 0;
+            }
+            run.add(chapter);
+            if (chapter instanceof TextChapter textChapter && textChapter.getContentText() != null) {
+                runCharacters += textChapter.getContentText().length();
+            }
+        }
+        chunks.add(new Chunk(book, run, chunks.isEmpty()));
+        return chunks;
+    }
+
+    /**
+     * Encodes a chunk as UTF-8 records, one per line, with the field names of the information
+     * and chapter files and the {@code record} field first
+     */
+    private static byte[] encode(Chunk chunk) {
+        StringBuilder records = new StringBuilder();
+        JsonWriter json;
+        Book book = chunk.book();
+        if (chunk.withBook()) {
+            json = new JsonWriter(records);
+            json.beginObject()
+                    .name("record").value("book")
+                    .name("id").value(book.getId())
+                    .name("type").value(book.getType())
+                    .name("title").value(book.getTitle())
+                    .name("description").value(book.getDescription())
+                    .name("coverImage").value(book.getCoverImagePath())
+                    .name("status").value(book.getStatus())
+                    .name("artist").value(book.getArtist());
+            if (book.getDateAdded() != null) {
+                json.name("dateAdded").value(DATE_FORMAT.format(
+                        book.getDateAdded().toInstant().atZone(ZoneId.systemDefault())));
+            }
+            if (book instanceof Novel novel) {
+                json.name("origin").value(novel.getOrigin())
+                        .name("translator").value(novel.getTranslator());
+            } else if (book instanceof Roman roman) {
+                json.name("series").value(roman.getSeries())
+                        .name("illustrator").value(roman.getIllustrator());
+            }
+            json.name("genres").beginArray();
+            for (String genre : new TreeSet<>(book.getGenres())) {
+                json.value(genre);
+            }
+            json.endArray().endObject();
+            records.append('\n');
+        }
+        for (Chapter chapter : chunk.chapters()) {
+            json = new JsonWriter(records);
+            json.beginObject()
+                    .name("record").value("chapter")
+                    .name("bookId").value(book.getId())
+                    .name("id").value(chapter.getId())
+                    .name("chapterNumber").value(chapter.getNumOrder())
+                    .name("title").value(chapter.getTitle());
+            if (chapter instanceof TextChapter textChapter) {
+                json.name("contentText").value(textChapter.getContentText());
+            }
+            json.endObject();
+            records.append('\n');
+        }
+        return records.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Names the EPUB of a book after its ID and title, keeping only ASCII letters and digits
+     */
+    private static String epubFileName(Book book) {
+        String title = book.getTitle() != null ? book.getTitle() : "";
+        String slug = Normalizer.normalize(title, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9]+", "-")
+                .replaceAll("^-|-$", "");
+        if (slug.length() > 60) {
+            slug = slug.substring(0, 60).replaceAll("-$", "");
+        }
+        return book.getId() + (slug.isEmpty() ? "" : "-" + slug) + ".epub";
+    }
+
+    /**
+     * Writes the EPUB 3 package of one book: the uncompressed {@code mimetype} entry first, the container,
+     * the package document, the navigation document, the cover when there is one, a title page and one XHTML
+     * document per chapter, written one at a time. The title page keeps the spine of a book without chapters
+     * from being empty.
+     *
+     * @return Size of the file in bytes
+     */
+    private static long writeEpub(Book book, Path file) throws IOException {
+        long start = System.nanoTime();
+        Path temporary = partFile(file);
+        try {
+            List<Chapter> chapters = book.getSortedChapters();
+            Path cover = book.getCoverPath();
+            String coverName = null;
+            if (cover != null && Files.isRegularFile(cover)) {
+                String lowerName = cover.getFileName().toString().toLowerCase(Locale.ROOT);
+                coverName = lowerName.endsWith(".png") ? "cover.png" : "cover.jpg";
+            }
+
+            try (ZipOutputStream zip = new ZipOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary), OUTPUT_BUFFER_SIZE),
+                    StandardCharsets.UTF_8)) {
+                byte[] mimetype = "application/epub+zip".getBytes(StandardCharsets.US_ASCII);
+                ZipEntry mimetypeEntry = new ZipEntry("mimetype");
+                CRC32 crc = new CRC32();
+                crc.update(mimetype);
+                mimetypeEntry.setMethod(ZipEntry.STORED);
+                mimetypeEntry.setSize(mimetype.length);
+                mimetypeEntry.setCompressedSize(mimetype.length);
+                mimetypeEntry.setCrc(crc.getValue());
+                zip.putNextEntry(mimetypeEntry);
+                zip.write(mimetype);
+                zip.closeEntry();
+
+                // Flushed after each entry and never closed, as closing it would close the archive
+                Writer text = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+                zip.putNextEntry(new ZipEntry("META-INF/container.xml"));
+                text.write("""
+                        <?xml version="1.0" encoding="UTF-8"?>
+                        <container version="1.0" xmlns="urn:oasis:names:tc:opendocument:xmlns:container">
+                          <rootfiles>
+                            <rootfile full-path="OEBPS/content.opf" media-type="application/oebps-package+xml"/>
+                          </rootfiles>
+                        </container>
+                        """);
+                text.flush();
+                zip.closeEntry();
+
+                zip.putNextEntry(new ZipEntry("OEBPS/content.opf"));
+                writePackage(text, book, chapters.size(), coverName);
+                text.flush();
+                zip.closeEntry();
+
+                zip.putNextEntry(new ZipEntry("OEBPS/nav.xhtml"));
+                writeNavigation(text, book, chapters);
+                text.flush();
+                zip.closeEntry();
+
+                if (coverName != null) {
+                    zip.putNextEntry(new ZipEntry("OEBPS/" + coverName));
+                    Files.copy(cover, zip);
+                    zip.closeEntry();
+                }
+
+                zip.putNextEntry(new ZipEntry("OEBPS/" + TITLE_PAGE));
+                writeTitlePage(text, book);
+                text.flush();
+                zip.closeEntry();
+
+                for (int i = 0; i < chapters.size(); i++) {
+                    zip.putNextEntry(new ZipEntry("OEBPS/" + chapterFileName(i)));
+                    writeChapter(text, chapters.get(i));
+                    text.flush();
+                    zip.closeEntry();
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            long size = Files.size(file);
+            BOOKS_EXPORTED.increment();
+            BYTES_WRITTEN.add(size);
+            EPUB_TIME.recordSince(start);
+            return size;
+        } finally {
+            deleteQuietly(temporary);
+        }
+    }
+
+    private static String chapterFileName(int index) {
+        return String.format(Locale.ROOT, "chapter-%04d.xhtml", index + 1);
+    }
+
+    private static void writePackage(Writer out, Book book, int chapterCount, String coverName) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<package xmlns=\"http://www.idpf.org/2007/opf\" version=\"3.0\" unique-identifier=\"book-id\">\n"
+                + "  <metadata xmlns:dc=\"http://purl.org/dc/elements/1.1/\">\n"
+                + "    <dc:identifier id=\"book-id\">urn:cassoulet:book:" + book.getId() + "</dc:identifier>\n"
+                + "    <dc:title>" + xml(book.getTitle() != null ? book.getTitle() : "Untitled") + "</dc:title>\n"
+                + "    <dc:language>und</dc:language>\n");
+        if (book.getArtist() != null && !book.getArtist().isBlank()) {
+            out.write("    <dc:creator>" + xml(book.getArtist()) + "</dc:creator>\n");
+        }
+        if (book.getDescription() != null && !book.getDescription().isBlank()) {
+            out.write("    <dc:description>" + xml(book.getDescription()) + "</dc:description>\n");
+        }
+        for (String genre : new TreeSet<>(book.getGenres())) {
+            out.write("    <dc:subject>" + xml(genre) + "</dc:subject>\n");
+        }
+        out.write("    <meta property=\"dcterms:modified\">"
+                + DateTimeFormatter.ISO_INSTANT.format(Instant.now().truncatedTo(ChronoUnit.SECONDS)) + "</meta>\n");
+        if (coverName != null) {
+            out.write("    <meta name=\"cover\" content=\"cover-image\"/>\n");
+        }
+        out.write("  </metadata>\n  <manifest>\n"
+                + "    <item id=\"nav\" href=\"nav.xhtml\" media-type=\"application/xhtml+xml\" properties=\"nav\"/>\n");
+        if (coverName != null) {
+            out.write("    <item id=\"cover-image\" href=\"" + coverName + "\" media-type=\""
+                    + (coverName.endsWith(".png") ? "image/png" : "image/jpeg") + "\" properties=\"cover-image\"/>\n");
+        }
+        out.write("    <item id=\"title-page\" href=\"" + TITLE_PAGE + "\" media-type=\"application/xhtml+xml\"/>\n");
+        for (int i = 0; i < chapterCount; i++) {
+            out.write("    <item id=\"chapter-" + (i + 1) + "\" href=\"" + chapterFileName(i)
+                    + "\" media-type=\"application/xhtml+xml\"/>\n");
+        }
+        out.write("  </manifest>\n  <spine>\n    <itemref idref=\"title-page\"/>\n");
+        for (int i = 0; i < chapterCount; i++) {
+            out.write("    <itemref idref=\"chapter-" + (i + 1) + "\"/>\n");
+        }
+        out.write("  </spine>\n</package>\n");
+    }
+
+    private static void writeNavigation(Writer out, Book book, List<Chapter> chapters) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<html xmlns=\"" + XHTML_NAMESPACE + "\" xmlns:epub=\"http://www.idpf.org/2007/ops\">\n"
+                + "<head><title>" + xml(book.getTitle()) + "</title></head>\n"
+                + "<body>\n<nav epub:type=\"toc\">\n<h1>" + xml(book.getTitle()) + "</h1>\n<ol>\n"
+                + "<li><a href=\"" + TITLE_PAGE + "\">" + xml(bookTitle(book)) + "</a></li>\n");
+        for (int i = 0; i < chapters.size(); i++) {
+            out.write("<li><a href=\"" + chapterFileName(i) + "\">" + xml(chapterTitle(chapters.get(i)))
+                    + "</a></li>\n");
+        }
+        out.write("</ol>\n</nav>\n</body>\n</html>\n");
+    }
+
+    /**
+     * Writes the title page: the title, the artist and the description of the book
+     */
+    private static void writeTitlePage(Writer out, Book book) throws IOException {
+        String title = bookTitle(book);
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<html xmlns=\"" + XHTML_NAMESPACE + "\">\n<head><title>" + xml(title) + "</title></head>\n"
+                + "<body>\n<h1>" + xml(title) + "</h1>\n");
+        if (book.getArtist() != null && !book.getArtist().isBlank()) {
+            out.write("<p>" + xml(book.getArtist()) + "</p>\n");
+        }
+        if (book.getDescription() != null && !book.getDescription().isBlank()) {
+            out.write("<p>" + xml(book.getDescription().strip()) + "</p>\n");
+        }
+        out.write("</body>\n</html>\n");
+    }
+
+    /**
+     * Writes a chapter as XHTML: blank lines separate paragraphs and other line breaks are kept,
+     * so both blank-line and hard-wrapped texts read as they do in the application
+     */
+    private static void writeChapter(Writer out, Chapter chapter) throws IOException {
+        String title = chapterTitle(chapter);
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<html xmlns=\"" + XHTML_NAMESPACE + "\">\n<head><title>" + xml(title) + "</title></head>\n"
+                + "<body>\n<h1>" + xml(title) + "</h1>\n");
+        if (chapter instanceof TextChapter textChapter && textChapter.getContentText() != null) {
+            String text = textChapter.getContentText();
+            boolean inParagraph = false;
+            int lineStart = 0;
+            while (lineStart <= text.length()) {
+                int lineEnd = text.indexOf('\n', lineStart);
+                if (lineEnd == -1) {
+                    lineEnd = text.length();
+                }
+                String line = text.substring(lineStart, lineEnd).strip();
+                if (line.isEmpty()) {
+                    if (inParagraph) {
+                        out.write("</p>\n");
+                        inParagraph = false;
+                    }
+                } else {
+                    out.write(inParagraph ? "<br/>\n" : "<p>");
+                    out.write(xml(line));
+                    inParagraph = true;
+                }
+                lineStart = lineEnd + 1;
+            }
+            if (inParagraph) {
+                out.write("</p>\n");
+            }
+        }
+        out.write("</body>\n</html>\n");
+    }
+
+    private static String bookTitle(Book book) {
+        return book.getTitle() != null && !book.getTitle().isBlank() ? book.getTitle() : "Untitled";
+    }
+
+    private static String chapterTitle(Chapter chapter) {
+        return chapter.getTitle() != null && !chapter.getTitle().isBlank()
+                ? chapter.getTitle() : "Chapter " + chapter.getNumOrder();
+    }
+
+    /**
+     * Escapes text for XML content and attributes, dropping the control characters XML cannot hold
+     */
+    private static String xml(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> escaped.append("&amp;");
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '"' -> escaped.append("&quot;");
+                default -> {
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Reserves a file name for this export, adding {@code -2}, {@code -3} and so on before the extension
+     * when the name is already taken, as it is by books sharing an ID and title
+     *
+     * @param fileName The preferred file name
+     * @param taken The names already used by this export, updated with the returned name
+     * @return The file name to use
+     */
+    private static String uniqueFileName(String fileName, Set<String> taken) {
+        if (taken.add(fileName)) {
+            return fileName;
+        }
+        int dot = fileName.lastIndexOf('.');
+        String base = dot >= 0 ? fileName.substring(0, dot) : fileName;
+        String extension = dot >= 0 ? fileName.substring(dot) : "";
+        for (int suffix = 2; ; suffix++) {
+            String candidate = base + "-" + suffix + extension;
+            if (taken.add(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * Names the file an export is written to before it replaces its destination
+     */
+    private static Path partFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".part");
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Could not delete " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.service;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.exception.FileOperationException;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.Counter;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.TextChapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads books from the JSON directory structure
+ * ({@code <type>/<series>/information/*.json} and {@code <type>/<series>/chapters/*.json}).
+ * Books are handed to a listener one at a time as soon as they are complete,
+ * so callers can publish them while the rest of the tree is still being read.
+ * The tree is read through {@link Path}s, so it may be a directory or live inside an archive
+ * or on the classpath; see {@link FileManager#resolveBooksRoot(String)}.
+ */
+public class LibraryLoader {
+
+    /**
+     * Receives books as they are loaded
+     */
+    @FunctionalInterface
+    public interface BookListener {
+        /**
+         * Called once per successfully loaded book, with all its chapters attached
+         *
+         * @param book The loaded book
+         * @param seriesProcessed Number of series directories processed so far
+         * @param seriesTotal Total number of series directories found
+         */
+        void bookLoaded(Book book, int seriesProcessed, int seriesTotal);
+    }
+
+    /**
+     * Receives the files that could not be loaded
+     */
+    @FunctionalInterface
+    public interface ErrorListener {
+        /**
+         * Called once per file that was skipped
+         *
+         * @param file The series directory or chapter file
+         * @param error Why the file could not be loaded
+         */
+        void loadFailed(Path file, FileOperationException error);
+    }
+
+    /** System property naming the books location used by default: a directory, an archive or a classpath directory */
+    public static final String BOOKS_PROPERTY = "cassoulet.books";
+
+    private static final Logger LOG = Logger.getLogger(LibraryLoader.class);
+    private static final String CLASSPATH_BOOKS_ROOT = "/data/books";
+    private static final LatencyHistogram SERIES_LOAD_TIME = MetricsRegistry.getInstance().histogram("ingest.series");
+    private static final Counter BOOKS_LOADED = MetricsRegistry.getInstance().counter("ingest.books");
+    private static final Counter CHAPTERS_LOADED = MetricsRegistry.getInstance().counter("ingest.chapters");
+    private static final Counter LOAD_ERRORS = MetricsRegistry.getInstance().counter("ingest.errors");
+
+    private final DataLoader dataLoader;
+    private IngestStatistics statistics;
+    private ErrorListener errorListener;
+    private IngestManifest manifest;
+
+    /**
+     * Creates a loader that parses files with the given data loader
+     *
+     * @param dataLoader The parser for book and chapter files
+     */
+    public LibraryLoader(DataLoader dataLoader) {
+        this.dataLoader = dataLoader;
+    }
+
+    /**
+     * Sets the statistics that the time spent in each loading phase is recorded into
+     *
+     * @param statistics The statistics to update, or null to stop recording
+     */
+    public void setStatistics(IngestStatistics statistics) {
+        this.statistics = statistics;
+        dataLoader.setStatistics(statistics);
+    }
+
+    /**
+     * Sets the listener told about every file that is skipped because it cannot be loaded
+     *
+     * @param errorListener The listener, or null to only log the errors
+     */
+    public void setErrorListener(ErrorListener errorListener) {
+        this.errorListener = errorListener;
+    }
+
+    /**
+     * Sets the manifest that files are taken from when they did not change since the previous load,
+     * and that records the files parsed
+     *
+     * @param manifest The manifest of the books root being loaded, or null to parse every file
+     */
+    public void setManifest(IngestManifest manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * Gets the default books root: the location named by {@value #BOOKS_PROPERTY} when set,
+     * otherwise the books tree of the resources directory, otherwise the one packaged on the classpath
+     *
+     * @return The books root directory
+     * @throws FileOperationException If the configured location or the packaged tree cannot be opened
+     */
+    public static Path getDefaultBooksRoot() throws FileOperationException {
+        FileManager fileManager = new FileManager();
+        String configured = System.getProperty(BOOKS_PROPERTY);
+        if (configured != null && !configured.isBlank()) {
+            return fileManager.resolveBooksRoot(configured);
+        }
+        if (fileManager.findResourcesDirectory() == null) {
+            Path packaged = fileManager.findClasspathDirectory(CLASSPATH_BOOKS_ROOT);
+            if (packaged != null) {
+                return packaged;
+            }
+        }
+        return Path.of(fileManager.getResourcesPath(), "data", "books");
+    }
+
+    /**
+     * Loads every book found under the books root
+     *
+     * @param booksRoot The root directory containing one directory per book type
+     * @param listener Receives each book as soon as it is loaded
+     * @return The number of books loaded
+     */
+    public int loadBooks(Path booksRoot, BookListener listener) {
+        if (!Files.isDirectory(booksRoot)) {
+            LOG.error("Books directory not found: " + describe(booksRoot));
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        long errorsBefore = LOAD_ERRORS.getCount();
+        long chaptersBefore = CHAPTERS_LOADED.getCount();
+
+        List<Path> bookTypeDirectories = listDirectories(booksRoot);
+        if (bookTypeDirectories == null) {
+            LOG.error("No book type directories found in " + describe(booksRoot));
+            return 0;
+        }
+
+        List<Path> seriesDirectories = new ArrayList<>();
+        for (Path bookTypeDir : bookTypeDirectories) {
+            List<Path> bookSeriesDirs = listDirectories(bookTypeDir);
+            if (bookSeriesDirs == null) continue;
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Found " + bookSeriesDirs.size() + " book series directories in " + bookTypeDir.getFileName());
+            }
+            seriesDirectories.addAll(bookSeriesDirs);
+        }
+        recordWalk(start);
+        LOG.info("Found " + seriesDirectories.size() + " series in " + bookTypeDirectories.size()
+                + " book types under " + describe(booksRoot) + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        int booksLoaded = 0;
+        int seriesProcessed = 0;
+        for (Path seriesDir : seriesDirectories) {
+            seriesProcessed++;
+            long seriesStart = System.nanoTime();
+            try {
+                Book book = loadSeries(seriesDir);
+                SERIES_LOAD_TIME.recordSince(seriesStart);
+                if (book != null) {
+                    booksLoaded++;
+                    BOOKS_LOADED.increment();
+                    listener.bookLoaded(book, seriesProcessed, seriesDirectories.size());
+                }
+            } catch (FileOperationException e) {
+                LOAD_ERRORS.increment();
+                LOG.warn("Error loading book from " + seriesDir + ": " + e.getMessage());
+                if (errorListener != null) {
+                    errorListener.loadFailed(seriesDir, e);
+                }
+            }
+        }
+
+        LOG.info("Loaded " + booksLoaded + " books and " + (CHAPTERS_LOADED.getCount() - chaptersBefore)
+                + " chapters in " + (System.nanoTime() - start) / 1_000_000 + " ms ("
+                + (LOAD_ERRORS.getCount() - errorsBefore) + " files skipped)");
+        return booksLoaded;
+    }
+
+    /**
+     * Loads a single book and its chapters from a series directory
+     *
+     * @param seriesDir The series directory
+     * @return The loaded book, or null if the directory holds no book information
+     * @throws FileOperationException If the information file cannot be read
+     */
+    public Book loadSeries(Path seriesDir) throws FileOperationException {
+        long walkStart = System.nanoTime();
+        Path infoDir = seriesDir.resolve("information");
+        if (!Files.isDirectory(infoDir)) {
+            LOG.debug("No information directory found in: " + describe(seriesDir));
+            return null;
+        }
+
+        List<Path> infoFiles = listJsonFiles(infoDir);
+        recordWalk(walkStart);
+        if (infoFiles == null || infoFiles.isEmpty()) {
+            LOG.debug("No info files found in: " + describe(infoDir));
+            return null;
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Loading book from: " + describe(infoFiles.get(0)));
+        }
+        Book book = manifest != null
+                ? manifest.loadBook(infoFiles.get(0), dataLoader) : dataLoader.loadBookFromFile(infoFiles.get(0));
+
+        Path chaptersDir = seriesDir.resolve("chapters");
+        if (Files.isDirectory(chaptersDir)) {
+            walkStart = System.nanoTime();
+            List<Path> chapterFiles = listJsonFiles(chaptersDir);
+            recordWalk(walkStart);
+            if (chapterFiles != null) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Found " + chapterFiles.size() + " chapter files in " + seriesDir.getFileName());
+                }
+                List<TextChapter> chapters = new ArrayList<>(chapterFiles.size());
+                for (Path chapterFile : chapterFiles) {
+                    try {
+                        chapters.add(manifest != null
+                                ? manifest.loadChapter(chapterFile, dataLoader) : dataLoader.loadChapterFromFile(chapterFile));
+                    } catch (FileOperationException e) {
+                        LOAD_ERRORS.increment();
+                        LOG.warn("Error loading chapter from " + chapterFile + ": " + e.getMessage());
+                        if (errorListener != null) {
+                            errorListener.loadFailed(chapterFile, e);
+                        }
+                    }
+                }
+                long assembleStart = System.nanoTime();
+                book.addChapters(chapters);
+                CHAPTERS_LOADED.add(chapters.size());
+                if (statistics != null) {
+                    statistics.addAssemble(System.nanoTime() - assembleStart);
+                }
+            }
+        }
+
+        return book;
+    }
+
+    /**
+     * Lists the subdirectories of a directory
+     *
+     * @return The subdirectories, or null if the directory cannot be read
+     */
+    private static List<Path> listDirectories(Path directory) {
+        List<Path> directories = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path entry : entries) {
+                directories.add(entry);
+            }
+            return directories;
+        } catch (IOException e) {
+            LOG.warn("Could not list " + describe(directory) + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Lists the JSON files of a directory
+     *
+     * @return The files, or null if the directory cannot be read
+     */
+    private static List<Path> listJsonFiles(Path directory) {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*.json")) {
+            for (Path entry : entries) {
+                files.add(entry);
+            }
+            return files;
+        } catch (IOException e) {
+            LOG.warn("Could not list " + describe(directory) + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Names a path for log messages, including the archive it belongs to
+     */
+    private static String describe(Path path) {
+        if (path.getFileSystem() == FileSystems.getDefault()) {
+            return path.toAbsolutePath().toString();
+        }
+        return path.toUri().toString();
+    }
+
+    private void recordWalk(long walkStart) {
+        if (statistics != null) {
+            statistics.addWalk(System.nanoTime() - walkStart);
+        }
+    }
+}
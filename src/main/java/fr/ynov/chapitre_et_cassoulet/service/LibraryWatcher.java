@@ -0,0 +1,449 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.service;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.exception.BookNotFoundException;
+import main.java.fr.ynov.chapitre_et_cassoulet.exception.FileOperationException;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.Counter;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Chapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.TextChapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.utils.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches a books tree on disk and applies new and changed files to a live {@link Library},
+ * so that a new chapter file shows up without restarting or reading the whole tree again.
+ * <p>
+ * Events are coalesced: once a file changes, the watcher waits until the tree has been quiet for a
+ * moment, or at most a few seconds during a long burst, then re-reads only the files that changed.
+ * A new information file adds its series as a new book with the chapters already present; a changed one
+ * updates the book in place. A chapter file replaces the chapter with the same number or adds a new one.
+ * Deleted files are ignored. When the operating system drops events, the files modified since the
+ * watcher started are compared with the versions already applied instead.
+ * <p>
+ * Changes are made through the library's mutators, so its index, version and change events follow.
+ * A file that cannot be parsed, for instance because it is still being written, is retried on its
+ * next change.
+ */
+public class LibraryWatcher implements Closeable {
+    /** Default time the tree must stay quiet before changes are applied */
+    public static final long DEFAULT_QUIET_MILLIS = 500;
+    /** Longest time changes wait while events keep arriving */
+    private static final long MAX_DELAY_NANOS = TimeUnit.SECONDS.toNanos(5);
+    /** Depth of the information and chapters directories below the books root */
+    private static final int CONTENT_DIRECTORY_DEPTH = 3;
+
+    private static final Logger LOG = Logger.getLogger(LibraryWatcher.class);
+    private static final Counter FILES_APPLIED = MetricsRegistry.getInstance().counter("watch.filesApplied");
+    private static final Counter WATCH_ERRORS = MetricsRegistry.getInstance().counter("watch.errors");
+    private static final LatencyHistogram APPLY_TIME = MetricsRegistry.getInstance().histogram("watch.apply");
+
+    private final Path booksRoot;
+    private final Library library;
+    private final DataLoader dataLoader;
+    private final LibraryLoader loader;
+    private final WatchService watchService;
+    private final long quietMillis;
+    private final FileTime startedAt = FileTime.fromMillis(System.currentTimeMillis());
+
+    // Only used by the watcher thread once it has started
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Map<Path, Integer> seriesBooks = new HashMap<>();
+    private final Map<Path, FileTime> appliedVersions = new HashMap<>();
+    private Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * Changed files of one series directory, with the modification time each had before it was read
+     */
+    private static final class SeriesChanges {
+        private Path informationFile;
+        private final List<Path> chapterFiles = new ArrayList<>();
+        private final Map<Path, FileTime> versions = new HashMap<>();
+    }
+
+    /**
+     * Creates a watcher with the default quiet period
+     *
+     * @param booksRoot The books root directory, which must be on the default file system
+     * @param library The library to keep up to date
+     * @param dataLoader The parser for book and chapter files
+     * @throws FileOperationException If the tree cannot be watched
+     */
+    public LibraryWatcher(Path booksRoot, Library library, DataLoader dataLoader) throws FileOperationException {
+        this(booksRoot, library, dataLoader, DEFAULT_QUIET_MILLIS);
+    }
+
+    /**
+     * Creates a watcher
+     *
+     * @param booksRoot The books root directory, which must be on the default file system
+     * @param library The library to keep up to date
+     * @param dataLoader The parser for book and chapter files
+     * @param quietMillis Time the tree must stay quiet before changes are applied
+     * @throws FileOperationException If the tree cannot be watched
+     */
+    public LibraryWatcher(Path booksRoot, Library library, DataLoader dataLoader, long quietMillis)
+            throws FileOperationException {
+        if (booksRoot.getFileSystem() != FileSystems.getDefault() || !Files.isDirectory(booksRoot)) {
+            throw new FileOperationException("Only a books directory on disk can be watched: " + booksRoot);
+        }
+        this.booksRoot = booksRoot.toAbsolutePath().normalize();
+        this.library = library;
+        this.dataLoader = dataLoader;
+        this.loader = new LibraryLoader(dataLoader);
+        this.quietMillis = quietMillis;
+        try {
+            this.watchService = this.booksRoot.getFileSystem().newWatchService();
+        } catch (IOException e) {
+            throw new FileOperationException("Cannot watch " + booksRoot + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Registers the directories of the tree and starts watching on a daemon thread
+     *
+     * @throws FileOperationException If the tree cannot be registered
+     */
+    public synchronized void start() throws FileOperationException {
+        if (thread != null) {
+            return;
+        }
+        try {
+            register(booksRoot, null);
+        } catch (IOException e) {
+            throw new FileOperationException("Cannot watch " + booksRoot + ": " + e.getMessage(), e);
+        }
+        thread = new Thread(this::watch, "library-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        LOG.info("Watching " + watchedDirectories.size() + " directories under " + booksRoot);
+    }
+
+    /**
+     * Stops watching
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close the watch service: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Registers a directory and the directories below it down to the chapter directories.
+     * When {@code found} is given, the JSON files already present are added to it, as they may have
+     * been written before the directory was registered.
+     */
+    private void register(Path directory, Set<Path> found) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory, CONTENT_DIRECTORY_DEPTH - depth(directory) + 1)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                int depth = depth(path);
+                if (Files.isDirectory(path) && depth <= CONTENT_DIRECTORY_DEPTH) {
+                    if (!watchedDirectories.containsValue(path)) {
+                        WatchKey key = path.register(watchService,
+                                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                        watchedDirectories.put(key, path);
+                    }
+                } else if (found != null && isContentFile(path)) {
+                    found.add(path);
+                }
+            }
+        }
+    }
+
+    private void watch() {
+        Set<Path> changed = new LinkedHashSet<>();
+        try {
+            while (!closed) {
+                WatchKey key = watchService.take();
+                long firstEvent = System.nanoTime();
+                boolean overflowed = false;
+                while (key != null) {
+                    overflowed |= collect(key, changed);
+                    if (System.nanoTime() - firstEvent >= MAX_DELAY_NANOS) {
+                        break;
+                    }
+                    key = watchService.poll(quietMillis, TimeUnit.MILLISECONDS);
+                }
+                if (overflowed) {
+                    LOG.warn("File events were lost; looking for files modified since the watcher started");
+                    findModifiedFiles(changed);
+                }
+                apply(changed);
+                changed.clear();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed
+        } catch (RuntimeException e) {
+            LOG.error("Library watcher stopped", e);
+        }
+    }
+
+    /**
+     * Adds the content files named by the events of a key to the changed set
+     *
+     * @return True if events were lost
+     */
+    private boolean collect(WatchKey key, Set<Path> changed) {
+        Path directory = watchedDirectories.get(key);
+        boolean overflowed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowed = true;
+                continue;
+            }
+            if (directory == null) {
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    register(path, changed);
+                } catch (IOException e) {
+                    WATCH_ERRORS.increment();
+                    LOG.warn("Cannot watch new directory " + path + ": " + e.getMessage());
+                }
+            } else if (isContentFile(path)) {
+                changed.add(path);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+        return overflowed;
+    }
+
+    private void findModifiedFiles(Set<Path> changed) {
+        try (Stream<Path> paths = Files.walk(booksRoot, CONTENT_DIRECTORY_DEPTH + 1)) {
+            paths.filter(this::isContentFile).forEach(path -> {
+                try {
+                    if (Files.getLastModifiedTime(path).compareTo(startedAt) >= 0) {
+                        changed.add(path);
+                    }
+                } catch (IOException e) {
+                    // Deleted meanwhile
+                }
+            });
+            register(booksRoot, null);
+        } catch (IOException e) {
+            WATCH_ERRORS.increment();
+            LOG.warn("Cannot scan " + booksRoot + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the changed files, series by series
+     */
+    private void apply(Set<Path> changed) {
+        long start = System.nanoTime();
+        Map<Path, SeriesChanges> bySeries = new LinkedHashMap<>();
+        for (Path file : changed) {
+            FileTime version = lastModified(file);
+            if (version == null || version.equals(appliedVersions.get(file))) {
+                continue;
+            }
+            SeriesChanges series = bySeries.computeIfAbsent(file.getParent().getParent(), key -> new SeriesChanges());
+            series.versions.put(file, version);
+            if (file.getParent().getFileName().toString().equals("information")) {
+                series.informationFile = file;
+            } else {
+                series.chapterFiles.add(file);
+            }
+        }
+        if (bySeries.isEmpty()) {
+            return;
+        }
+
+        int applied = 0;
+        for (Map.Entry<Path, SeriesChanges> entry : bySeries.entrySet()) {
+            applied += applySeries(entry.getKey(), entry.getValue());
+        }
+        FILES_APPLIED.add(applied);
+        APPLY_TIME.recordSince(start);
+        LOG.info("Applied " + applied + " changed files from " + bySeries.size() + " series in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Applies the changed files of one series
+     *
+     * @return The number of files applied
+     */
+    private int applySeries(Path seriesDir, SeriesChanges changes) {
+        Book book = findBook(seriesBooks.get(seriesDir));
+        if (book == null || changes.informationFile != null) {
+            Path informationFile = changes.informationFile != null
+                    ? changes.informationFile : firstInformationFile(seriesDir);
+            if (informationFile == null) {
+                // Chapters are read with the series once its information file appears
+                return 0;
+            }
+            Book details;
+            try {
+                details = dataLoader.loadBookFromFile(informationFile);
+            } catch (FileOperationException e) {
+                return failed(informationFile, e);
+            }
+            book = findBook(details.getId());
+            if (book == null || book.getClass() != details.getClass()) {
+                return loadSeries(seriesDir, book);
+            }
+            seriesBooks.put(seriesDir, book.getId());
+            if (changes.informationFile != null) {
+                library.updateBook(book, details);
+                markApplied(informationFile, changes.versions.get(informationFile));
+            }
+        }
+
+        int applied = changes.informationFile != null ? 1 : 0;
+        List<Chapter> added = new ArrayList<>();
+        Set<Integer> numbers = new HashSet<>();
+        for (Chapter chapter : book.getChapters()) {
+            numbers.add(chapter.getNumOrder());
+        }
+        for (Path chapterFile : changes.chapterFiles) {
+            TextChapter chapter;
+            try {
+                chapter = dataLoader.loadChapterFromFile(chapterFile);
+            } catch (FileOperationException e) {
+                failed(chapterFile, e);
+                continue;
+            }
+            if (numbers.add(chapter.getNumOrder())) {
+                added.add(chapter);
+            } else {
+                library.putChapter(book, chapter);
+            }
+            markApplied(chapterFile, changes.versions.get(chapterFile));
+            applied++;
+        }
+        library.addChapters(book, added);
+        return applied;
+    }
+
+    /**
+     * Reads a whole series as a new book, replacing a previous book of another type
+     *
+     * @return The number of files applied
+     */
+    private int loadSeries(Path seriesDir, Book previous) {
+        try {
+            // Taken before reading, so that a file written during the load is applied again on its event
+            Map<Path, FileTime> versions = new HashMap<>();
+            try (Stream<Path> files = Files.walk(seriesDir, 2)) {
+                for (Path file : (Iterable<Path>) files.filter(this::isContentFile)::iterator) {
+                    FileTime version = lastModified(file);
+                    if (version != null) {
+                        versions.put(file, version);
+                    }
+                }
+            }
+            Book book = loader.loadSeries(seriesDir);
+            if (book == null) {
+                return 0;
+            }
+            if (previous != null) {
+                library.removeBook(previous.getId());
+            }
+            library.addBook(book);
+            seriesBooks.put(seriesDir, book.getId());
+            appliedVersions.putAll(versions);
+            LOG.info("Added \"" + book.getTitle() + "\" with " + book.getChapters().size() + " chapters from " + seriesDir);
+            return versions.size();
+        } catch (FileOperationException e) {
+            return failed(seriesDir, e);
+        } catch (BookNotFoundException | IOException e) {
+            WATCH_ERRORS.increment();
+            LOG.warn("Failed to reload " + seriesDir + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private Book findBook(Integer id) {
+        if (id == null) {
+            return null;
+        }
+        try {
+            return library.getBookById(id);
+        } catch (BookNotFoundException e) {
+            return null;
+        }
+    }
+
+    private Path firstInformationFile(Path seriesDir) {
+        Path informationDir = seriesDir.resolve("information");
+        if (!Files.isDirectory(informationDir)) {
+            return null;
+        }
+        try (Stream<Path> files = Files.list(informationDir)) {
+            return files.filter(this::isContentFile).findFirst().orElse(null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private int failed(Path file, FileOperationException error) {
+        WATCH_ERRORS.increment();
+        LOG.warn("Could not apply " + file + ", will retry on its next change: " + error.getMessage());
+        return 0;
+    }
+
+    /**
+     * Records the version of a file that was applied, as read before parsing it, so that a later write is not
+     * mistaken for it
+     */
+    private void markApplied(Path file, FileTime version) {
+        if (version != null) {
+            appliedVersions.put(file, version);
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether a path is an information or chapter file of a series
+     */
+    private boolean isContentFile(Path path) {
+        if (depth(path) != CONTENT_DIRECTORY_DEPTH + 1 || !path.getFileName().toString().endsWith(".json")) {
+            return false;
+        }
+        String directory = path.getParent().getFileName().toString();
+        return (directory.equals("information") || directory.equals("chapters")) && Files.isRegularFile(path);
+    }
+
+    private int depth(Path path) {
+        return booksRoot.relativize(path).getNameCount() - (path.equals(booksRoot) ? 1 : 0);
+    }
+}
@@ -1,15 +1,25 @@
 package main.java.fr.ynov.chapitre_et_cassoulet.service;
 
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.Counter;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.LatencyHistogram;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.MetricsRegistry;
+import main.java.fr.ynov.chapitre_et_cassoulet.metrics.SearchExecutedEvent;
 import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
 
 /**
  * Service class providing search and filtering capabilities for the library system.
  */
 public class Search {
+    private static final int INTERRUPT_CHECK_MASK = 0x3FF;
+    private static final LatencyHistogram[] SEARCH_TIME = Library.shapeHistograms("search.advanced.");
+    private static final Counter CANCELLED = MetricsRegistry.getInstance().counter("search.cancelled");
+
     private String keyword;
+    private String type;
     private List<String> genres;
     private List<String> status;
     private final Library library;
@@ -71,36 +81,107 @@ public class Search {
     }
 
     /**
-     * Performs an advanced search using all currently set criteria
+     * Sets the book type filter
+     *
+     * @param type The simple class name of the book type, or null for all types
+     */
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Performs an advanced search using all currently set criteria.
+     * The catalogue is scanned in a single pass; the scan checks the interrupt flag
+     * regularly so that a superseded search running on a worker thread stops early.
      *
      * @return List of books matching all criteria
+     * @throws CancellationException If the calling thread is interrupted during the scan
      */
     public List<Book> advancedSearch() {
-        List<Book> results = new ArrayList<>(library.getCatalogue());
-
-        if (keyword != null && !keyword.trim().isEmpty()) {
-            String searchTerm = keyword.toLowerCase();
-            results = results.stream()
-                    .filter(book ->
-                            book.getTitle().toLowerCase().contains(searchTerm) ||
-                                    (book.getDescription() != null &&
-                                            book.getDescription().toLowerCase().contains(searchTerm))
-                    )
-                    .collect(Collectors.toList());
+        SearchExecutedEvent event = new SearchExecutedEvent();
+        event.begin();
+        long start = System.nanoTime();
+        String searchTerm = searchTerm();
+        List<Book> results = new ArrayList<>();
+
+        int scanned = 0;
+        for (Book book : library.getCatalogue()) {
+            if ((++scanned & INTERRUPT_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                CANCELLED.increment();
+                commitEvent(event, results.size(), true);
+                throw new CancellationException("Search interrupted after " + scanned + " books");
+            }
+            if (isMatching(book, searchTerm)) {
+                results.add(book);
+            }
         }
 
-        if (!genres.isEmpty()) {
-            results = results.stream()
-                    .filter(book -> book.getGenres().stream().anyMatch(genres::contains))
-                    .collect(Collectors.toList());
+        SEARCH_TIME[Library.queryShape(searchTerm != null, !genres.isEmpty(), !status.isEmpty(), type != null)]
+                .recordSince(start);
+        commitEvent(event, results.size(), false);
+        return results;
+    }
+
+    /**
+     * Keeps the given books that match all currently set criteria, without scanning the catalogue.
+     * Used to place books added after a search into its results.
+     *
+     * @param books The books to filter
+     * @return The matching books, in the given order
+     */
+    public List<Book> filter(Collection<Book> books) {
+        String searchTerm = searchTerm();
+        List<Book> results = new ArrayList<>();
+        for (Book book : books) {
+            if (isMatching(book, searchTerm)) {
+                results.add(book);
+            }
         }
+        return results;
+    }
 
-        if (!status.isEmpty()) {
-            results = results.stream()
-                    .filter(book -> status.contains(book.getStatus()))
-                    .collect(Collectors.toList());
+    private String searchTerm() {
+        return keyword != null && !keyword.trim().isEmpty() ? keyword.toLowerCase() : null;
+    }
+
+    private boolean isMatching(Book book, String searchTerm) {
+        return isMatchingKeyword(book, searchTerm) && isMatchingGenres(book)
+                && isMatchingStatus(book) && isMatchingType(book);
+    }
+
+    private void commitEvent(SearchExecutedEvent event, int hits, boolean cancelled) {
+        if (event.shouldCommit()) {
+            event.setEngine("advanced");
+            event.setCriteria("keyword=" + keyword + ", genres=" + genres + ", status=" + status + ", type=" + type);
+            event.setHits(hits);
+            event.setCancelled(cancelled);
+            event.commit();
         }
+    }
 
-        return results;
+    private boolean isMatchingKeyword(Book book, String searchTerm) {
+        return searchTerm == null ||
+                book.getTitle().toLowerCase().contains(searchTerm) ||
+                (book.getDescription() != null && book.getDescription().toLowerCase().contains(searchTerm));
+    }
+
+    private boolean isMatchingGenres(Book book) {
+        if (genres.isEmpty()) {
+            return true;
+        }
+        for (String genre : book.getGenres()) {
+            if (genres.contains(genre)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isMatchingStatus(Book book) {
+        return status.isEmpty() || status.contains(book.getStatus());
+    }
+
+    private boolean isMatchingType(Book book) {
+        return type == null || book.getClass().getSimpleName().equals(type);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,108 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.utils;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Chapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Novel;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Roman;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.TextChapter;
+
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Writes books and chapters with a {@link JsonWriter}, using the same field names everywhere
+ * books leave the application as JSON
+ */
+public final class BookJson {
+
+    private BookJson() {
+    }
+
+    /**
+     * Writes the fields needed to list a book: identifier, title, type, status, genres and chapter count
+     *
+     * @param writer The destination writer
+     * @param book The book to write
+     */
+    public static void writeSummary(JsonWriter writer, Book book) {
+        writer.beginObject();
+        writeSummaryFields(writer, book);
+        writer.endObject();
+    }
+
+    /**
+     * Writes every field of a book and the list of its chapters, in reading order
+     *
+     * @param writer The destination writer
+     * @param book The book to write
+     * @param includeText True to include the text of each chapter
+     */
+    public static void writeBook(JsonWriter writer, Book book, boolean includeText) {
+        writer.beginObject();
+        writeSummaryFields(writer, book);
+        writer.name("description").value(book.getDescription())
+                .name("artist").value(book.getArtist())
+                .name("coverImagePath").value(book.getCoverImagePath());
+        if (book.getDateAdded() != null) {
+            writer.name("dateAdded").value(book.getDateAdded().getTime());
+        }
+        if (book instanceof Novel novel) {
+            writer.name("origin").value(novel.getOrigin())
+                    .name("translator").value(novel.getTranslator());
+        } else if (book instanceof Roman roman) {
+            writer.name("series").value(roman.getSeries())
+                    .name("illustrator").value(roman.getIllustrator());
+        }
+
+        writer.name("chapters").beginArray();
+        for (Chapter chapter : book.getSortedChapters()) {
+            writeChapter(writer, chapter, includeText);
+        }
+        writer.endArray().endObject();
+    }
+
+    /**
+     * Writes a chapter
+     *
+     * @param writer The destination writer
+     * @param chapter The chapter to write
+     * @param includeText True to include the chapter text
+     */
+    public static void writeChapter(JsonWriter writer, Chapter chapter, boolean includeText) {
+        writer.beginObject()
+                .name("id").value(chapter.getId())
+                .name("number").value(chapter.getNumOrder())
+                .name("title").value(chapter.getTitle());
+        if (includeText && chapter instanceof TextChapter textChapter) {
+            writer.name("text").value(textChapter.getContentText());
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Writes a list of books as a JSON array of summaries
+     *
+     * @param writer The destination writer
+     * @param books The books to write
+     */
+    public static void writeSummaries(JsonWriter writer, List<Book> books) {
+        writer.beginArray();
+        for (Book book : books) {
+            writeSummary(writer, book);
+        }
+        writer.endArray();
+    }
+
+    private static void writeSummaryFields(JsonWriter writer, Book book) {
+        writer.name("id").value(book.getId())
+                .name("title").value(book.getTitle())
+                .name("type").value(book.getType())
+                .name("status").value(book.getStatus());
+        writer.name("genres").beginArray();
+        for (String genre : new TreeSet<>(book.getGenres())) {
+            writer.value(genre);
+        }
+        writer.endArray()
+                .name("chapterCount").value(book.getChapters().size());
+    }
+}
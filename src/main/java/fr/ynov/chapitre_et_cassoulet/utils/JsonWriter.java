@@ -0,0 +1,239 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Minimal streaming JSON writer producing compact output.
+ * Values are written straight to the underlying {@link Appendable}, so arbitrarily large
+ * documents can be produced without building them in memory.
+ */
+public class JsonWriter {
+    private final Appendable out;
+    private final Deque<Boolean> firstElement;
+    private boolean afterName;
+
+    /**
+     * Creates a writer appending to the given output
+     *
+     * @param out The destination of the JSON text
+     */
+    public JsonWriter(Appendable out) {
+        this.out = out;
+        this.firstElement = new ArrayDeque<>();
+    }
+
+    /**
+     * Starts a JSON object
+     *
+     * @return This writer
+     */
+    public JsonWriter beginObject() {
+        beforeValue();
+        write('{');
+        firstElement.push(true);
+        return this;
+    }
+
+    /**
+     * Ends the current JSON object
+     *
+     * @return This writer
+     */
+    public JsonWriter endObject() {
+        firstElement.pop();
+        write('}');
+        return this;
+    }
+
+    /**
+     * Starts a JSON array
+     *
+     * @return This writer
+     */
+    public JsonWriter beginArray() {
+        beforeValue();
+        write('[');
+        firstElement.push(true);
+        return this;
+    }
+
+    /**
+     * Ends the current JSON array
+     *
+     * @return This writer
+     */
+    public JsonWriter endArray() {
+        firstElement.pop();
+        write(']');
+        return this;
+    }
+
+    /**
+     * Writes the name of the next object member
+     *
+     * @param name The member name
+     * @return This writer
+     */
+    public JsonWriter name(String name) {
+        beforeValue();
+        writeQuoted(name);
+        write(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value, or null
+     *
+     * @param value The value to write
+     * @return This writer
+     */
+    public JsonWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeQuoted(value);
+        return this;
+    }
+
+    /**
+     * Writes an integral value
+     *
+     * @param value The value to write
+     * @return This writer
+     */
+    public JsonWriter value(long value) {
+        beforeValue();
+        write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes a decimal value; non-finite values are written as null
+     *
+     * @param value The value to write
+     * @return This writer
+     */
+    public JsonWriter value(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return nullValue();
+        }
+        beforeValue();
+        write(Double.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes a boolean value
+     *
+     * @param value The value to write
+     * @return This writer
+     */
+    public JsonWriter value(boolean value) {
+        beforeValue();
+        write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes a null value
+     *
+     * @return This writer
+     */
+    public JsonWriter nullValue() {
+        beforeValue();
+        write("null");
+        return this;
+    }
+
+    /**
+     * Escapes a string for inclusion between double quotes in a JSON document.
+     * Non-ASCII characters are kept as is; control characters are escaped.
+     *
+     * @param value The raw string
+     * @param out The destination of the escaped text
+     * @throws IOException If the destination cannot be written
+     */
+    public static void escape(CharSequence value, Appendable out) throws IOException {
+        int length = value.length();
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String replacement = switch (c) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                default -> c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+            };
+            if (replacement != null) {
+                out.append(value, runStart, i).append(replacement);
+                runStart = i + 1;
+            }
+        }
+        out.append(value, runStart, length);
+    }
+
+    /**
+     * Quotes and escapes a string as a JSON string literal
+     *
+     * @param value The raw string
+     * @return The JSON string literal
+     */
+    public static String quote(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        builder.append('"');
+        try {
+            escape(value, builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.append('"').toString();
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (!firstElement.isEmpty()) {
+            if (firstElement.peek()) {
+                firstElement.pop();
+                firstElement.push(false);
+            } else {
+                write(',');
+            }
+        }
+    }
+
+    private void writeQuoted(String value) {
+        try {
+            out.append('"');
+            escape(value, out);
+            out.append('"');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(char c) {
+        try {
+            out.append(c);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(String text) {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
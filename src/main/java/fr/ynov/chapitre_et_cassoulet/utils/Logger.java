@@ -0,0 +1,339 @@
+package main.java.fr.ynov.chapitre_et_cassoulet.utils;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Small leveled logging facade that never blocks the calling thread on console I/O.
+ * Messages are placed in a bounded lock-free ring buffer and written by a single background
+ * thread, {@link Level#WARN} and above to standard error and the rest to standard output.
+ * The writer parks while the buffer is empty and is unparked by the next message logged.
+ * When the buffer is full, debug and info messages are dropped and the number of dropped messages
+ * is reported with the next write; warnings and errors are never dropped, the logging thread
+ * drains the buffer itself instead.
+ * <p>
+ * The threshold defaults to {@link Level#INFO} and can be changed with the
+ * {@value #LEVEL_PROPERTY} system property or {@link #setLevel(Level)}.
+ */
+public final class Logger {
+
+    /**
+     * Severity of a log message
+     */
+    public enum Level {
+        /** Detailed progress, such as one line per file */
+        DEBUG,
+        /** Normal operation, such as one summary line per phase */
+        INFO,
+        /** Recoverable problems */
+        WARN,
+        /** Failures */
+        ERROR
+    }
+
+    /**
+     * System property holding the initial threshold
+     */
+    public static final String LEVEL_PROPERTY = "cassoulet.log.level";
+
+    private static final int BUFFER_CAPACITY = 8192;
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("HH:mm:ss.SSS", Locale.ROOT).withZone(ZoneId.systemDefault());
+
+    private static final RingBuffer BUFFER = new RingBuffer(BUFFER_CAPACITY);
+    private static volatile Level threshold = initialLevel();
+    private static volatile Thread writer;
+    /** Set by the writer before it parks, so that producers only unpark it when it may be waiting */
+    private static volatile boolean writerParked;
+
+    private final String name;
+
+    private Logger(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets a logger named after a class
+     *
+     * @param type The class that logs
+     * @return The logger
+     */
+    public static Logger getLogger(Class<?> type) {
+        return new Logger(type.getSimpleName());
+    }
+
+    /**
+     * Sets the lowest level that is written
+     *
+     * @param level The new threshold
+     */
+    public static void setLevel(Level level) {
+        threshold = level;
+    }
+
+    /**
+     * Checks whether messages of a level are written
+     *
+     * @param level The level to check
+     * @return True if messages of this level are written
+     */
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0;
+    }
+
+    /**
+     * Checks whether debug messages are written; use it to skip building expensive messages
+     *
+     * @return True if debug messages are written
+     */
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    /**
+     * Logs a debug message
+     *
+     * @param message The message
+     */
+    public void debug(String message) {
+        log(Level.DEBUG, message, null);
+    }
+
+    /**
+     * Logs an informational message
+     *
+     * @param message The message
+     */
+    public void info(String message) {
+        log(Level.INFO, message, null);
+    }
+
+    /**
+     * Logs a warning
+     *
+     * @param message The message
+     */
+    public void warn(String message) {
+        log(Level.WARN, message, null);
+    }
+
+    /**
+     * Logs an error
+     *
+     * @param message The message
+     */
+    public void error(String message) {
+        log(Level.ERROR, message, null);
+    }
+
+    /**
+     * Logs an error with the exception that caused it
+     *
+     * @param message The message
+     * @param cause The exception, whose stack trace is written after the message
+     */
+    public void error(String message, Throwable cause) {
+        log(Level.ERROR, message, cause);
+    }
+
+    private void log(Level level, String message, Throwable cause) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        ensureWriterStarted();
+        Entry entry = new Entry(System.currentTimeMillis(), level, name, Thread.currentThread().getName(),
+                message, cause);
+        if (BUFFER.offer(entry)) {
+            wakeWriter();
+            return;
+        }
+        if (level.compareTo(Level.WARN) < 0) {
+            BUFFER.recordDropped();
+            wakeWriter();
+            return;
+        }
+        do {
+            drain();
+        } while (!BUFFER.offer(entry));
+    }
+
+    /**
+     * Waits until every message logged so far has been written
+     */
+    public static void flush() {
+        while (!BUFFER.isEmpty()) {
+            drain();
+            Thread.onSpinWait();
+        }
+        drain();
+    }
+
+    private static Level initialLevel() {
+        String value = System.getProperty(LEVEL_PROPERTY);
+        if (value != null) {
+            try {
+                return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown log level " + value + ", using INFO");
+            }
+        }
+        return Level.INFO;
+    }
+
+    private static void ensureWriterStarted() {
+        if (writer != null) {
+            return;
+        }
+        synchronized (Logger.class) {
+            if (writer != null) {
+                return;
+            }
+            Thread thread = new Thread(Logger::writeLoop, "log-writer");
+            thread.setDaemon(true);
+            thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(Logger::drain, "log-flush"));
+            writer = thread;
+        }
+    }
+
+    /**
+     * Drains the buffer, then parks until a producer unparks it. The parked flag is raised before the buffer
+     * is checked one last time, so a message offered meanwhile either is seen here or sees the flag and
+     * unparks the writer.
+     */
+    private static void writeLoop() {
+        while (true) {
+            if (drain()) {
+                continue;
+            }
+            writerParked = true;
+            if (BUFFER.isEmpty() && !BUFFER.hasDropped()) {
+                LockSupport.park(Logger.class);
+            }
+            writerParked = false;
+        }
+    }
+
+    private static void wakeWriter() {
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Writes every buffered message; only one thread drains at a time
+     *
+     * @return True if at least one message was written
+     */
+    private static synchronized boolean drain() {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        boolean wroteOut = false;
+        boolean wroteErr = false;
+
+        long dropped = BUFFER.takeDropped();
+        if (dropped > 0) {
+            err.println(TIME_FORMAT.format(Instant.now()) + " WARN  [log-writer] Logger - "
+                    + dropped + " log messages dropped because the buffer was full");
+            wroteErr = true;
+        }
+
+        Entry entry;
+        while ((entry = BUFFER.poll()) != null) {
+            PrintStream target = entry.level().compareTo(Level.WARN) >= 0 ? err : out;
+            target.println(format(entry));
+            if (entry.cause() != null) {
+                entry.cause().printStackTrace(target);
+            }
+            if (target == err) {
+                wroteErr = true;
+            } else {
+                wroteOut = true;
+            }
+        }
+
+        if (wroteOut) {
+            out.flush();
+        }
+        if (wroteErr) {
+            err.flush();
+        }
+        return wroteOut || wroteErr;
+    }
+
+    private static String format(Entry entry) {
+        return TIME_FORMAT.format(Instant.ofEpochMilli(entry.timestamp())) + " "
+                + String.format(Locale.ROOT, "%-5s", entry.level()) + " [" + entry.thread() + "] "
+                + entry.logger() + " - " + entry.message();
+    }
+
+    private record Entry(long timestamp, Level level, String logger, String thread, String message,
+                         Throwable cause) {
+    }
+
+    /**
+     * Bounded multi-producer, single-consumer queue.
+     * Producers claim a sequence number with a compare-and-set and then publish their entry in
+     * the matching slot; the consumer takes entries in sequence order and clears each slot before
+     * releasing it, so a claimed slot is always empty.
+     */
+    private static final class RingBuffer {
+        private final AtomicReferenceArray<Entry> slots;
+        private final int mask;
+        private final AtomicLong writeSequence = new AtomicLong();
+        private final AtomicLong readSequence = new AtomicLong();
+        private final LongAdder dropped = new LongAdder();
+
+        RingBuffer(int capacity) {
+            slots = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+        }
+
+        boolean offer(Entry entry) {
+            long sequence;
+            do {
+                sequence = writeSequence.get();
+                if (sequence - readSequence.get() >= slots.length()) {
+                    return false;
+                }
+            } while (!writeSequence.compareAndSet(sequence, sequence + 1));
+            slots.set((int) sequence & mask, entry);
+            return true;
+        }
+
+        void recordDropped() {
+            dropped.increment();
+        }
+
+        Entry poll() {
+            long sequence = readSequence.get();
+            int index = (int) sequence & mask;
+            Entry entry = slots.get(index);
+            if (entry == null) {
+                return null;
+            }
+            slots.set(index, null);
+            readSequence.set(sequence + 1);
+            return entry;
+        }
+
+        boolean isEmpty() {
+            return readSequence.get() == writeSequence.get();
+        }
+
+        long takeDropped() {
+            return dropped.sumThenReset();
+        }
+
+        boolean hasDropped() {
+            return dropped.sum() > 0;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package test.java.fr.ynov.chapitre_et_cassoulet.api;
+
+import main.java.fr.ynov.chapitre_et_cassoulet.api.ChapterTextStore;
+import main.java.fr.ynov.chapitre_et_cassoulet.api.LibraryHttpServer;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Book;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.Novel;
+import main.java.fr.ynov.chapitre_et_cassoulet.model.TextChapter;
+import main.java.fr.ynov.chapitre_et_cassoulet.service.Library;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Checks the HTTP caching and transfer behaviour of {@link LibraryHttpServer} against a server on localhost:
+ * ETag revalidation, gzip compression and byte ranges on chapter text.
+ * <p>
+ * The project has no test framework, so the checks run from {@link #main} and the process exits with
+ * status 1 on the first failure.
+ */
+public class LibraryHttpServerTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final String text;
+    private final String baseUri;
+
+    private LibraryHttpServerTest(int port, String text) {
+        this.baseUri = "http://127.0.0.1:" + port;
+        this.text = text;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path textDirectory = Files.createTempDirectory("cassoulet-http-test");
+        String text = "Le cassoulet mijote doucement, et la cuillère tient debout. ".repeat(200);
+
+        Library library = new Library();
+        Book book = new Novel(1, "Riséd", "A test novel", null);
+        TextChapter chapter = new TextChapter(1, "Chapitre 1", 1);
+        chapter.setContentText(text);
+        book.addChapter(chapter);
+        library.addBook(book);
+
+        LibraryHttpServer server = new LibraryHttpServer(library,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new ChapterTextStore(textDirectory));
+        server.start();
+        try {
+            LibraryHttpServerTest test = new LibraryHttpServerTest(server.getPort(), text);
+            test.notModifiedOnlyForExistingResources();
+            test.gzipWhenAccepted();
+            test.byteRanges();
+            System.out.println("LibraryHttpServerTest: all checks passed");
+        } catch (AssertionError e) {
+            System.err.println("LibraryHttpServerTest: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            server.stop();
+            deleteRecursively(textDirectory);
+        }
+    }
+
+    private void notModifiedOnlyForExistingResources() throws IOException, InterruptedException {
+        HttpResponse<byte[]> first = get("/books/1");
+        check(first.statusCode() == 200, "GET /books/1 returned " + first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElse(null);
+        check(etag != null, "GET /books/1 has no ETag");
+
+        HttpResponse<byte[]> revalidated = get("/books/1", "If-None-Match", etag);
+        check(revalidated.statusCode() == 304, "Revalidating /books/1 returned " + revalidated.statusCode());
+        check(revalidated.body().length == 0, "304 response has a body");
+
+        HttpResponse<byte[]> chapter = get("/books/1/chapters/1", "If-None-Match", etag);
+        check(chapter.statusCode() == 304, "Revalidating an uncached chapter returned " + chapter.statusCode());
+
+        HttpResponse<byte[]> missingBook = get("/books/99999", "If-None-Match", etag);
+        check(missingBook.statusCode() == 404, "Revalidating a missing book returned " + missingBook.statusCode());
+        HttpResponse<byte[]> missingRoute = get("/nope", "If-None-Match", etag);
+        check(missingRoute.statusCode() == 404, "Revalidating an unknown route returned " + missingRoute.statusCode());
+        HttpResponse<byte[]> badId = get("/books/abc", "If-None-Match", etag);
+        check(badId.statusCode() == 400, "Revalidating an invalid ID returned " + badId.statusCode());
+    }
+
+    private void gzipWhenAccepted() throws IOException, InterruptedException {
+        HttpResponse<byte[]> plain = get("/books/1/chapters/1");
+        check(plain.statusCode() == 200, "GET chapter returned " + plain.statusCode());
+        check(plain.headers().firstValue("Content-Encoding").isEmpty(), "Chapter compressed without Accept-Encoding");
+
+        HttpResponse<byte[]> compressed = get("/books/1/chapters/1", "Accept-Encoding", "gzip");
+        check(compressed.headers().firstValue("Content-Encoding").orElse("").equals("gzip"),
+                "Chapter not compressed for a client accepting gzip");
+        check(compressed.body().length < plain.body().length, "Compressed chapter is not smaller");
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.body()))) {
+            check(Arrays.equals(in.readAllBytes(), plain.body()), "Decompressed chapter differs from the plain one");
+        }
+    }
+
+    private void byteRanges() throws IOException, InterruptedException {
+        byte[] expected = text.getBytes(StandardCharsets.UTF_8);
+        HttpResponse<byte[]> whole = get("/books/1/chapters/1/text");
+        check(whole.statusCode() == 200, "GET chapter text returned " + whole.statusCode());
+        check(Arrays.equals(whole.body(), expected), "Chapter text differs from the stored text");
+        String etag = whole.headers().firstValue("ETag").orElse(null);
+        check(etag != null && !etag.startsWith("W/"), "Chapter text has no strong ETag: " + etag);
+
+        HttpResponse<byte[]> part = get("/books/1/chapters/1/text", "Range", "bytes=100-199");
+        check(part.statusCode() == 206, "Range request returned " + part.statusCode());
+        check(part.headers().firstValue("Content-Range").orElse("").equals("bytes 100-199/" + expected.length),
+                "Unexpected Content-Range " + part.headers().firstValue("Content-Range").orElse(null));
+        check(Arrays.equals(part.body(), Arrays.copyOfRange(expected, 100, 200)), "Range body differs");
+
+        HttpResponse<byte[]> suffix = get("/books/1/chapters/1/text", "Range", "bytes=-10");
+        check(suffix.statusCode() == 206
+                        && Arrays.equals(suffix.body(), Arrays.copyOfRange(expected, expected.length - 10, expected.length)),
+                "Suffix range returned " + suffix.statusCode());
+
+        HttpResponse<byte[]> resumed = get("/books/1/chapters/1/text",
+                "Range", "bytes=100-", "If-Range", etag);
+        check(resumed.statusCode() == 206 && resumed.body().length == expected.length - 100,
+                "Resuming with a matching If-Range returned " + resumed.statusCode());
+        HttpResponse<byte[]> changed = get("/books/1/chapters/1/text",
+                "Range", "bytes=100-", "If-Range", "\"stale\"");
+        check(changed.statusCode() == 200 && changed.body().length == expected.length,
+                "Resuming with a stale If-Range returned " + changed.statusCode());
+
+        HttpResponse<byte[]> pastEnd = get("/books/1/chapters/1/text", "Range", "bytes=" + expected.length + "-");
+        check(pastEnd.statusCode() == 416, "Range past the end returned " + pastEnd.statusCode());
+    }
+
+    private HttpResponse<byte[]> get(String path, String... headers) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUri + path)).GET();
+        if (headers.length > 0) {
+            request.headers(headers);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}